@@ -82,6 +82,16 @@ create table xiaowc.team
 )
     comment '队伍表';
 
+# 队伍名称和描述的全文索引，ngram分词(默认按2个字切分)，中文也能搜索，用于按关键词搜索队伍并按相关度排序
+# 已有的库执行：alter table xiaowc.team add fulltext index ft_name_description (name, description) with parser ngram;
+create fulltext index ft_name_description
+    on xiaowc.team (name, description) with parser ngram;
+
+# 查询未过期的队伍：status = ? and (expireTime > now() or expireTime is null)，已过期的队伍在索引中就被跳过了
+# 已有的库执行：alter table xiaowc.team add index idx_status_expireTime (status, expireTime);
+create index idx_status_expireTime
+    on xiaowc.team (status, expireTime);
+
 # 用户队伍关系表
 create table xiaowc.user_team
 (
@@ -117,6 +127,12 @@ create table xiaowc.user
 )
     default character set utf8  comment '用户表';
 
+# 用户名的全文索引，ngram分词，用于管理员按用户名搜索(中间匹配)并排序；普通索引用于短关键词的前缀匹配
+# 已有的库执行：alter table xiaowc.user add fulltext index ft_username (username) with parser ngram, add index idx_username (username);
+create fulltext index ft_username
+    on xiaowc.user (username) with parser ngram;
+create index idx_username on xiaowc.user (username);
+
 -- auto-generated definition
 create table user
 (
@@ -0,0 +1,80 @@
+package com.xiaowc.partnermatch.benchmark;
+
+import com.google.gson.Gson;
+import com.xiaowc.partnermatch.tag.TagCodec;
+import com.xiaowc.partnermatch.utils.AlgorithmUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编辑距离算法的基准测试：标签列表版本、标签id版本(匹配用户时用的)和字符串版本
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlgorithmBenchmark {
+
+    /**
+     * 每个用户的标签个数
+     */
+    @Param({"3", "8", "20"})
+    private int tagSize;
+
+    private List<String> tagList1;
+
+    private List<String> tagList2;
+
+    private int[] tagIds1;
+
+    private int[] tagIds2;
+
+    private String word1;
+
+    private String word2;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        tagList1 = BenchmarkData.randomTags(random, tagSize);
+        tagList2 = BenchmarkData.randomTags(random, tagSize);
+        TagCodec tagCodec = new TagCodec(1000, 1000);
+        // 和用户的标签一样通过解析加入字典(idsOf只查字典)
+        Gson gson = new Gson();
+        tagIds1 = tagCodec.parse(gson.toJson(tagList1));
+        tagIds2 = tagCodec.parse(gson.toJson(tagList2));
+        // 字符串版本用标签拼起来的字符串，长度和标签个数成正比
+        word1 = String.join("", tagList1);
+        word2 = String.join("", tagList2);
+    }
+
+    @Benchmark
+    public int minDistanceTags() {
+        return AlgorithmUtils.minDistance(tagList1, tagList2);
+    }
+
+    @Benchmark
+    public int minDistanceTagIds() {
+        return AlgorithmUtils.minDistance(tagIds1, tagIds2);
+    }
+
+    @Benchmark
+    public int minDistanceString() {
+        return AlgorithmUtils.minDistance(word1, word2);
+    }
+}
@@ -0,0 +1,55 @@
+package com.xiaowc.partnermatch.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试用的数据，用固定的随机种子生成，每次运行的数据都一样，结果才能对比
+ */
+public final class BenchmarkData {
+
+    /**
+     * 常见的用户标签
+     */
+    private static final List<String> TAGS = Arrays.asList(
+            "java", "python", "c++", "go", "javascript", "前端", "后端", "算法", "大一", "大二", "大三", "大四",
+            "研究生", "男", "女", "单身", "乐观", "emo", "学习", "考研", "考公", "健身", "篮球", "足球",
+            "羽毛球", "游戏", "音乐", "摄影", "旅行", "美食", "阅读", "电影", "编程", "求职", "实习", "创业");
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 生成一个标签列表(不重复)
+     * @param random 随机数
+     * @param size 标签个数
+     */
+    public static List<String> randomTags(Random random, int size) {
+        List<String> tags = new ArrayList<>(TAGS);
+        List<String> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (tags.isEmpty()) { // 标签库用完了，加上编号
+                result.add(TAGS.get(random.nextInt(TAGS.size())) + i);
+            } else {
+                result.add(tags.remove(random.nextInt(tags.size())));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 生成标签的json字符串，和数据库中tags字段的格式一样：["java","男"]
+     */
+    public static String toJson(List<String> tags) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < tags.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(tags.get(i)).append('"');
+        }
+        return json.append(']').toString();
+    }
+}
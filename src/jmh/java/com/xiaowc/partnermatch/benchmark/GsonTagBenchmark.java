@@ -0,0 +1,85 @@
+package com.xiaowc.partnermatch.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.tag.TagCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 标签json解析的基准测试
+ *   parseLikeService：和matchUsers、searchUsersByTags中的写法一样，每次new一个Gson和TypeToken
+ *   parseWithSharedGson：Gson和Type只创建一次
+ *   parseWithCodec：流式解析成标签id(TagCodec)
+ *   getFromCodecCache：没有修改过的用户直接取缓存的解析结果，也就是matchUsers中大部分用户的情况
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GsonTagBenchmark {
+
+    private static final Type TAG_LIST_TYPE = new TypeToken<List<String>>() {}.getType();
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * 每个用户的标签个数
+     */
+    @Param({"3", "8", "20"})
+    private int tagSize;
+
+    private String tagsJson;
+
+    private final TagCodec tagCodec = new TagCodec(1000, 1000);
+
+    private User user;
+
+    @Setup
+    public void setup() {
+        tagsJson = BenchmarkData.toJson(BenchmarkData.randomTags(new Random(42), tagSize));
+        user = new User();
+        user.setId(1L);
+        user.setTags(tagsJson);
+        user.setUpdateTime(new Date());
+    }
+
+    @Benchmark
+    public List<String> parseLikeService() {
+        Gson gson = new Gson();
+        return gson.fromJson(tagsJson, new TypeToken<List<String>>() {}.getType());
+    }
+
+    @Benchmark
+    public List<String> parseWithSharedGson() {
+        return GSON.fromJson(tagsJson, TAG_LIST_TYPE);
+    }
+
+    @Benchmark
+    public int[] parseWithCodec() {
+        return tagCodec.parse(tagsJson);
+    }
+
+    @Benchmark
+    public int[] getFromCodecCache() {
+        return tagCodec.get(user);
+    }
+}
@@ -0,0 +1,106 @@
+package com.xiaowc.partnermatch.benchmark;
+
+import com.xiaowc.partnermatch.convert.TeamConverter;
+import com.xiaowc.partnermatch.convert.UserConverter;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.model.vo.TeamUserVO;
+import com.xiaowc.partnermatch.model.vo.UserVO;
+import com.xiaowc.partnermatch.service.impl.UserServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.BeanUtils;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对象转换的基准测试：用户脱敏(getSafetyUser)，队伍和用户转换成VO
+ *   反射的BeanUtils.copyProperties和编译时生成的mapstruct转换代码对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    /**
+     * getSafetyUser()没有用到注入的属性，可以直接new出来
+     */
+    private final UserServiceImpl userService = new UserServiceImpl();
+
+    private User user;
+
+    private Team team;
+
+    @Setup
+    public void setup() {
+        user = new User();
+        user.setId(1L);
+        user.setUsername("xiaowc");
+        user.setUserAccount("xiaowc");
+        user.setAvatarUrl("https://img1.baidu.com/it/u=1295488586,3361919270&fm=253&fmt=auto&app=138&f=PNG?w=601&h=435");
+        user.setGender(0);
+        user.setUserPassword("b0dd3697a192885d7c055db46155b26a");
+        user.setEmail("123@qq.com");
+        user.setUserStatus(0);
+        user.setPhone("123");
+        user.setCreateTime(new Date());
+        user.setUpdateTime(new Date());
+        user.setIsDelete(0);
+        user.setUserRole(0);
+        user.setPlanetCode("11111111");
+        user.setTags(BenchmarkData.toJson(BenchmarkData.randomTags(new Random(42), 8)));
+        team = new Team();
+        team.setId(1L);
+        team.setName("xiaowc的队伍");
+        team.setDescription("一起学习java，一起刷算法题");
+        team.setMaxNum(5);
+        team.setExpireTime(new Date());
+        team.setUserId(1L);
+        team.setStatus(0);
+        team.setPassword("12345678");
+        team.setCreateTime(new Date());
+        team.setUpdateTime(new Date());
+        team.setIsDelete(0);
+    }
+
+    @Benchmark
+    public User getSafetyUser() {
+        return userService.getSafetyUser(user);
+    }
+
+    /**
+     * 原来listTeams中的写法：队伍和创建人都用BeanUtils.copyProperties转换
+     */
+    @Benchmark
+    public TeamUserVO teamToTeamUserVOReflective() {
+        TeamUserVO teamUserVO = new TeamUserVO();
+        BeanUtils.copyProperties(team, teamUserVO);
+        UserVO userVO = new UserVO();
+        BeanUtils.copyProperties(user, userVO);
+        teamUserVO.setCreateUser(userVO);
+        return teamUserVO;
+    }
+
+    /**
+     * 现在listTeams中的写法：mapstruct生成的转换代码
+     */
+    @Benchmark
+    public TeamUserVO teamToTeamUserVOGenerated() {
+        TeamUserVO teamUserVO = TeamConverter.INSTANCE.toTeamUserVO(team);
+        teamUserVO.setCreateUser(UserConverter.INSTANCE.toUserVO(user));
+        return teamUserVO;
+    }
+}
@@ -0,0 +1,166 @@
+package com.xiaowc.partnermatch.bulk;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量导入数据
+ *
+ * 为什么不用saveBatch？
+ *   mybatis-plus的saveBatch虽然是JDBC批处理，但发给数据库的还是一行一条insert语句，
+ *   每条语句都要被数据库单独解析、执行，数据量大的时候很慢
+ *
+ * 实现：
+ *   1.把很多行拼成一条多行insert语句：insert into user (...) values (...),(...),(...)
+ *   2.一条语句的大小不能超过数据库的max_allowed_packet，否则数据库会直接拒绝，
+ *     所以按照估算的字节数来切分语句，同时占位符的个数也不能超过65535
+ *   3.写入的线程数和数据库连接池的大小一致，线程再多也拿不到连接，只会在连接池上排队
+ *   4.线程池的队列是有界的，队列满了之后由提交任务的线程自己执行(背压)，生成数据的速度不会超过写入的速度
+ */
+@Slf4j
+public class BulkLoader {
+
+    /**
+     * 一条预编译语句最多的占位符个数
+     */
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    /**
+     * 查不到max_allowed_packet时使用的默认值(mysql5.7的默认值是4MB)
+     */
+    private static final long DEFAULT_MAX_ALLOWED_PACKET = 4L * 1024 * 1024;
+
+    private final DataSource dataSource;
+
+    private final int threads;
+
+    private final int maxRowsPerStatement;
+
+    /**
+     * 一条语句最多多少字节，0表示根据max_allowed_packet自动计算
+     */
+    private volatile long maxStatementBytes;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param dataSource 数据源
+     * @param threads 写入的线程数
+     * @param maxRowsPerStatement 一条语句最多多少行
+     * @param maxStatementBytes 一条语句最多多少字节，0表示根据max_allowed_packet自动计算
+     */
+    public BulkLoader(DataSource dataSource, int threads, int maxRowsPerStatement, long maxStatementBytes) {
+        this.dataSource = dataSource;
+        this.threads = threads;
+        this.maxRowsPerStatement = maxRowsPerStatement;
+        this.maxStatementBytes = maxStatementBytes;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 2), runnable -> {
+            Thread thread = new Thread(runnable, "bulk-loader-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 打开一个批量写入器，往里面一行一行地添加数据，攒够一条语句就交给线程池写入
+     * @param table 目标表
+     * @param listener 每条语句写入完成之后的回调，可以为空
+     */
+    public <T> BulkWriter<T> openWriter(BulkTable<T> table, BulkWriter.ChunkListener listener) {
+        long statementBytes = getMaxStatementBytes();
+        int rowsByPlaceholders = MAX_PLACEHOLDERS / table.getColumns().size();
+        return new BulkWriter<>(this, table, Math.min(maxRowsPerStatement, rowsByPlaceholders),
+                statementBytes - table.getInsertPrefixBytes(), listener);
+    }
+
+    /**
+     * 把所有数据写入数据库，写完才返回
+     * @return 写入的行数
+     */
+    public <T> long load(BulkTable<T> table, Iterable<T> items) {
+        try (BulkWriter<T> writer = openWriter(table, null)) {
+            for (T item : items) {
+                writer.add(item);
+            }
+            return writer.finish();
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * 用一条多行insert语句写入一批数据
+     */
+    void insert(BulkTable<?> table, List<Object[]> rows) throws SQLException {
+        String sql = table.buildInsertSql(rows.size());
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            int parameterIndex = 1;
+            for (Object[] row : rows) {
+                for (Object value : row) {
+                    preparedStatement.setObject(parameterIndex++, value);
+                }
+            }
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * 关闭写入的线程池，等已经提交的语句写完，spring容器关闭的时候会自动调用
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("bulk loader did not terminate in 30s, {} chunks still queued", executor.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long getMaxStatementBytes() {
+        if (maxStatementBytes <= 0) {
+            // 留20%的余量，估算的字节数不一定准确
+            maxStatementBytes = queryMaxAllowedPacket() * 8 / 10;
+        }
+        return maxStatementBytes;
+    }
+
+    private long queryMaxAllowedPacket() {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select @@max_allowed_packet")) {
+            if (resultSet.next()) {
+                long maxAllowedPacket = resultSet.getLong(1);
+                log.info("max_allowed_packet: {}", maxAllowedPacket);
+                return maxAllowedPacket;
+            }
+        } catch (SQLException e) {
+            log.warn("query max_allowed_packet error, use default {}", DEFAULT_MAX_ALLOWED_PACKET, e);
+        }
+        return DEFAULT_MAX_ALLOWED_PACKET;
+    }
+}
@@ -0,0 +1,108 @@
+package com.xiaowc.partnermatch.bulk;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 批量导入的目标表：表名、要插入的列，以及怎么把一个对象转换成一行数据
+ * @param <T> 要插入的对象类型
+ */
+public class BulkTable<T> {
+
+    /**
+     * 表名
+     */
+    private final String tableName;
+
+    /**
+     * 要插入的列，和rowMapper返回的数组一一对应
+     */
+    private final List<String> columns;
+
+    /**
+     * 把一个对象转换成一行数据(每一列的值)
+     */
+    private final Function<T, Object[]> rowMapper;
+
+    /**
+     * insert into `表名` (`列1`,`列2`) values
+     */
+    private final String insertPrefix;
+
+    /**
+     * 一行的占位符：(?,?)
+     */
+    private final String rowPlaceholders;
+
+    public BulkTable(String tableName, List<String> columns, Function<T, Object[]> rowMapper) {
+        this.tableName = tableName;
+        this.columns = Collections.unmodifiableList(columns);
+        this.rowMapper = rowMapper;
+        StringBuilder prefix = new StringBuilder("insert into `").append(tableName).append("` (");
+        StringBuilder placeholders = new StringBuilder("(");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                prefix.append(',');
+                placeholders.append(',');
+            }
+            prefix.append('`').append(columns.get(i)).append('`');
+            placeholders.append('?');
+        }
+        this.insertPrefix = prefix.append(") values ").toString();
+        this.rowPlaceholders = placeholders.append(')').toString();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    Object[] toRow(T item) {
+        return rowMapper.apply(item);
+    }
+
+    /**
+     * 生成一条插入rowCount行的多行insert语句
+     */
+    String buildInsertSql(int rowCount) {
+        StringBuilder sql = new StringBuilder(insertPrefix.length() + rowCount * (rowPlaceholders.length() + 1));
+        sql.append(insertPrefix);
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(rowPlaceholders);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 估算一行数据发送到数据库时占多少字节
+     *   mysql驱动默认在客户端把参数拼到sql中再发送，所以按照sql文本的长度估算：
+     *   字符串按utf8最坏情况每个字符3个字节，再加上引号和转义
+     */
+    long estimateRowBytes(Object[] row) {
+        long bytes = 3; // 括号和逗号
+        for (Object value : row) {
+            if (value == null) {
+                bytes += 5;
+            } else if (value instanceof CharSequence) {
+                bytes += ((CharSequence) value).length() * 3L + 3;
+            } else if (value instanceof Date) {
+                bytes += 30;
+            } else {
+                bytes += 21;
+            }
+        }
+        return bytes;
+    }
+
+    long getInsertPrefixBytes() {
+        return insertPrefix.length();
+    }
+}
@@ -0,0 +1,62 @@
+package com.xiaowc.partnermatch.bulk;
+
+import com.xiaowc.partnermatch.model.domain.Tag;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.model.domain.UserTeam;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * 可以批量导入的表
+ *   id为空时由数据库自增生成，不为空时直接写入(生成测试数据时需要提前知道id，用来关联队伍和成员)
+ */
+public final class BulkTables {
+
+    /**
+     * 用户表，userStatus不能为空，为空时取默认值0
+     */
+    public static final BulkTable<User> USER = new BulkTable<>("user",
+            Arrays.asList("id", "username", "userAccount", "avatarUrl", "gender", "userPassword", "email",
+                    "userStatus", "phone", "userRole", "planetCode", "tags"),
+            user -> new Object[]{user.getId(), user.getUsername(), user.getUserAccount(), user.getAvatarUrl(),
+                    user.getGender(), user.getUserPassword(), user.getEmail(),
+                    user.getUserStatus() == null ? 0 : user.getUserStatus(),
+                    user.getPhone(), user.getUserRole(), user.getPlanetCode(), user.getTags()});
+
+    /**
+     * 标签表
+     */
+    public static final BulkTable<Tag> TAG = new BulkTable<>("tag",
+            Arrays.asList("id", "tagName", "userId", "parentId", "isParent"),
+            tag -> new Object[]{tag.getId(), tag.getTagName(), tag.getUserId(), tag.getParentId(), tag.getIsParent()});
+
+    /**
+     * 队伍表
+     */
+    public static final BulkTable<Team> TEAM = new BulkTable<>("team",
+            Arrays.asList("id", "name", "description", "maxNum", "expireTime", "userId", "status", "password",
+                    "avatarUrl"),
+            team -> new Object[]{team.getId(), team.getName(), team.getDescription(), team.getMaxNum(),
+                    toTimestamp(team.getExpireTime()), team.getUserId(), team.getStatus(), team.getPassword(),
+                    team.getAvatarUrl()});
+
+    /**
+     * 用户队伍关系表
+     */
+    public static final BulkTable<UserTeam> USER_TEAM = new BulkTable<>("user_team",
+            Arrays.asList("userId", "teamId", "joinTime"),
+            userTeam -> new Object[]{userTeam.getUserId(), userTeam.getTeamId(), toTimestamp(userTeam.getJoinTime())});
+
+    private BulkTables() {
+    }
+
+    /**
+     * java.util.Date不是所有驱动都支持直接setObject，统一转换成java.sql.Timestamp
+     */
+    private static Timestamp toTimestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+}
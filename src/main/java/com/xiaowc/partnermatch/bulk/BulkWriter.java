@@ -0,0 +1,175 @@
+package com.xiaowc.partnermatch.bulk;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 批量写入器：攒够一条语句的数据(行数或者字节数达到上限)就交给线程池写入，不是线程安全的，只能在一个线程中使用
+ *
+ * 用法：
+ *   1.add()添加一行数据
+ *   2.mark()记录调用者自己的进度(比如表格的行号)，语句写入完成时会把当时的进度传给回调，可以用来做断点续传
+ *   3.finish()把剩下的数据写完，并等待所有语句写入完成，有语句写入失败会抛出异常
+ * @param <T> 要插入的对象类型
+ */
+@Slf4j
+public class BulkWriter<T> implements AutoCloseable {
+
+    /**
+     * 一条语句写入完成的回调
+     */
+    public interface ChunkListener {
+
+        /**
+         * 这个方法在写入的线程中调用，多条语句是并发写入的，完成的顺序不一定
+         * @param chunkSeq 语句的序号，从0开始连续递增
+         * @param rows 这条语句插入的行数
+         * @param previousMark 提交上一条语句时调用者记录的进度，这条语句的数据是在previousMark之后、mark之前add的
+         * @param mark 提交这条语句时调用者记录的进度
+         */
+        void onChunkWritten(long chunkSeq, int rows, long previousMark, long mark);
+    }
+
+    private final BulkLoader loader;
+
+    private final BulkTable<T> table;
+
+    private final int maxRows;
+
+    private final long maxBytes;
+
+    private final ChunkListener listener;
+
+    private List<Object[]> chunk = new ArrayList<>();
+
+    private long chunkBytes = 0;
+
+    private long chunkSeq = 0;
+
+    private long mark = -1;
+
+    /**
+     * 提交上一条语句时的进度
+     */
+    private long submittedMark = -1;
+
+    private boolean finished = false;
+
+    private final AtomicLong writtenRows = new AtomicLong();
+
+    /**
+     * 用来等待所有提交的语句写完，自己先注册一个
+     */
+    private final Phaser inFlight = new Phaser(1);
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    BulkWriter(BulkLoader loader, BulkTable<T> table, int maxRows, long maxBytes, ChunkListener listener) {
+        this.loader = loader;
+        this.table = table;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.listener = listener;
+    }
+
+    /**
+     * 添加一行数据
+     */
+    public void add(T item) {
+        checkFailure();
+        Object[] row = table.toRow(item);
+        long rowBytes = table.estimateRowBytes(row);
+        // 加上这一行就超过上限了，先把前面的写入
+        if (!chunk.isEmpty() && (chunk.size() >= maxRows || chunkBytes + rowBytes > maxBytes)) {
+            submit();
+        }
+        chunk.add(row);
+        chunkBytes += rowBytes;
+    }
+
+    /**
+     * 记录调用者的进度，表示这之前的数据都已经add了
+     */
+    public void mark(long mark) {
+        this.mark = mark;
+    }
+
+    /**
+     * 已经写入数据库的行数
+     */
+    public long getWrittenRows() {
+        return writtenRows.get();
+    }
+
+    /**
+     * 把剩下的数据写完，并等待所有语句写入完成
+     * @return 写入的行数
+     */
+    public long finish() {
+        if (!finished) {
+            finished = true;
+            // 最后一条语句就算没有数据也要提交，这样回调才能拿到最后的进度
+            if (failure.get() == null && (!chunk.isEmpty() || listener != null)) {
+                submit();
+            }
+            inFlight.arriveAndAwaitAdvance();
+        }
+        Throwable throwable = failure.get();
+        if (throwable != null) {
+            throw new IllegalStateException("bulk insert into " + table.getTableName() + " failed", throwable);
+        }
+        return writtenRows.get();
+    }
+
+    /**
+     * 没有调用finish()就关闭时(比如读数据的时候出了异常)，也要等已经提交的语句写完
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            finish();
+        }
+    }
+
+    private void submit() {
+        final long seq = chunkSeq++;
+        final long previousMark = submittedMark;
+        final long chunkMark = mark;
+        submittedMark = mark;
+        final List<Object[]> rows = chunk;
+        chunk = new ArrayList<>(Math.min(maxRows, rows.size() * 2));
+        chunkBytes = 0;
+        inFlight.register();
+        loader.execute(() -> {
+            try {
+                if (failure.get() != null) { // 前面已经有语句失败了，后面的就不写了
+                    return;
+                }
+                if (!rows.isEmpty()) {
+                    loader.insert(table, rows);
+                    writtenRows.addAndGet(rows.size());
+                }
+                if (listener != null) {
+                    listener.onChunkWritten(seq, rows.size(), previousMark, chunkMark);
+                }
+            } catch (Throwable e) {
+                log.error("bulk insert chunk {} into {} error", seq, table.getTableName(), e);
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.arriveAndDeregister();
+            }
+        });
+    }
+
+    private void checkFailure() {
+        Throwable throwable = failure.get();
+        if (throwable != null) {
+            throw new IllegalStateException("bulk insert into " + table.getTableName() + " failed", throwable);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.xiaowc.partnermatch.cache;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.xiaowc.partnermatch.common.FieldSelection;
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.model.domain.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推荐用户的redis缓存，key：xiaowc:user:recommend:版本号:userId:pageNum:pageSize[:fields]
+ * 指定了返回字段(fields)时key中带上排好序的字段，不同字段的结果分开缓存
+ *
+ * 推荐的结果和所有用户有关，任何一个用户修改了，所有缓存都可能过期，一个个删除key太慢了，
+ * 所以在key中带上版本号：用户有变化时版本号+1，旧版本的key不会再被读到，等过期时间到了自动删除
+ *   1.版本号存在redis中，所有服务器共用，由发生修改的服务器+1
+ *   2.本服务器缓存一份版本号，收到用户变化的事件(包括其他服务器发来的)时重新从redis中读，
+ *     redis的发布订阅可能会丢消息，所以每隔几秒也会重新读一次，漏掉的修改最多晚这么久生效
+ *   3.查数据库之前先取版本号，查完之后用这个版本号写缓存(和ResponseCache的代数一样)：
+ *     查询期间用户有变化的话，结果写在旧版本的key中不会再被读到，不会把旧数据写到新版本的key中
+ */
+@Component
+@Slf4j
+public class RecommendUserCache {
+
+    private static final String KEY_PREFIX = "xiaowc:user:recommend:";
+
+    private static final String VERSION_KEY = "xiaowc:user:recommend:version";
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 缓存的过期时间(秒)，用户变化时通过版本号失效，过期时间只是兜底
+     */
+    @Value("${xiaowc.user.recommend-cache-seconds:3600}")
+    private long ttlSeconds;
+
+    /**
+     * 本服务器缓存的版本号多久(毫秒)重新从redis中读一次，收不到事件时最多晚这么久看到新版本
+     */
+    @Value("${xiaowc.user.recommend-version-refresh-millis:5000}")
+    private long versionRefreshMillis;
+
+    /**
+     * 本服务器缓存的版本号，为空表示要重新从redis中读
+     */
+    private volatile String version;
+
+    /**
+     * 上次从redis中读版本号的时间
+     */
+    private volatile long versionReadAt;
+
+    /**
+     * 读缓存，redis出错时返回null，当作没有缓存
+     * @param version 请求开始时的版本号，见version()
+     */
+    @SuppressWarnings("unchecked")
+    public Page<User> get(String version, long userId, long pageNum, long pageSize, FieldSelection fieldSelection) {
+        try {
+            return (Page<User>) redisTemplate.opsForValue().get(key(version, userId, pageNum, pageSize, fieldSelection));
+        } catch (Exception e) {
+            log.error("redis get key error", e);
+            return null;
+        }
+    }
+
+    /**
+     * 写缓存，查询期间版本号已经变了就不写，写了也不会再被读到
+     * @param version 查数据库之前的版本号，见version()
+     */
+    public void put(String version, long userId, long pageNum, long pageSize, FieldSelection fieldSelection,
+                    Page<User> userPage) {
+        if (!version.equals(version())) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(key(version, userId, pageNum, pageSize, fieldSelection), userPage,
+                    ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.error("redis set key error", e);
+        }
+    }
+
+    /**
+     * 用户有变化，版本号+1，只由发生修改的服务器+1，其他服务器重新读取版本号
+     */
+    @EventListener
+    public void onDomainEvent(DomainEvent event) {
+        if (!event.getType().isUserEvent()) {
+            return;
+        }
+        if (event.isLocal()) {
+            try {
+                stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+            } catch (Exception e) {
+                log.error("redis incr key error", e);
+            }
+        }
+        version = null;
+    }
+
+    /**
+     * 当前的版本号，查数据库之前取一次，读写缓存都用这个版本号
+     * redis出错时返回上次读到的版本号，一次都没读到过就返回"0"
+     */
+    public String version() {
+        String current = version;
+        long now = System.currentTimeMillis();
+        if (current == null || now - versionReadAt >= versionRefreshMillis) {
+            try {
+                String latest = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+                current = latest == null ? "0" : latest;
+                version = current;
+                versionReadAt = now;
+            } catch (Exception e) {
+                log.error("redis get key error", e);
+                if (current == null) {
+                    current = "0";
+                }
+            }
+        }
+        return current;
+    }
+
+    private String key(String version, long userId, long pageNum, long pageSize, FieldSelection fieldSelection) {
+        String key = KEY_PREFIX + version + ":" + userId + ":" + pageNum + ":" + pageSize;
+        return fieldSelection.isAll() ? key : key + ":" + fieldSelection;
+    }
+}
@@ -0,0 +1,269 @@
+package com.xiaowc.partnermatch.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.team.TeamExpiryListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 热点GET接口的响应缓存：缓存序列化好的json字节(以及gzip压缩后的字节)和ETag
+ *
+ * 为什么需要？
+ *   默认的队伍列表、推荐用户、队伍详情这些接口大部分时间返回的内容都不变，但每次请求都要重新组装对象、序列化成json
+ *
+ * 实现：
+ *   1.key：接口 + 排序后的参数 + 可见范围(不同用户看到的内容不同时带上用户id)，见ResponseCacheFilter
+ *   2.失效：用户或者队伍有变化时(领域事件、队伍到期)，把相关接口的缓存全部删除
+ *   3.每个接口有一个代数，删除缓存时+1，请求开始时记下代数，写入缓存前代数变了说明这期间数据有变化，就不写入，
+ *     避免把失效之前查出来的旧数据写进缓存
+ *   4.容量按字节算(原始的加上压缩后的)：队伍列表按用户缓存，每个都有几十KB，按个数限制的话占用的内存没有上限
+ */
+@Slf4j
+public class ResponseCache implements TeamExpiryListener {
+
+    /**
+     * 可以缓存的接口
+     */
+    public enum Route {
+        /**
+         * 队伍列表，每个用户看到的"是否已加入"不同，按用户区分
+         */
+        TEAM_LIST("/team/list", Visibility.PER_USER),
+        /**
+         * 队伍详情，所有人看到的都一样
+         */
+        TEAM_GET("/team/get", Visibility.PUBLIC),
+        /**
+         * 推荐用户，需要登录
+         */
+        USER_RECOMMEND("/user/recommend", Visibility.LOGGED_IN);
+
+        private final String path;
+
+        private final Visibility visibility;
+
+        Route(String path, Visibility visibility) {
+            this.path = path;
+            this.visibility = visibility;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Visibility getVisibility() {
+            return visibility;
+        }
+    }
+
+    /**
+     * 响应内容的可见范围
+     */
+    public enum Visibility {
+        /**
+         * 所有人看到的都一样
+         */
+        PUBLIC,
+        /**
+         * 登录的用户看到的都一样，未登录的不缓存
+         */
+        LOGGED_IN,
+        /**
+         * 每个用户看到的不一样
+         */
+        PER_USER
+    }
+
+    /**
+     * key -> 缓存的响应
+     */
+    private final Cache<String, Entry> cache;
+
+    /**
+     * 小于这个大小(字节)的响应不压缩
+     */
+    private final int gzipMinBytes;
+
+    /**
+     * 每个接口的代数，删除缓存时+1
+     */
+    private final Map<Route, AtomicLong> generations = new EnumMap<>(Route.class);
+
+    /**
+     * @param maximumBytes 缓存的响应最多占用多少字节
+     * @param ttlSeconds 过期时间(秒)
+     * @param gzipMinBytes 小于这个大小(字节)的响应不压缩
+     */
+    public ResponseCache(long maximumBytes, long ttlSeconds, int gzipMinBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((String key, Entry entry) -> entry.weight())
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS) // 兜底，正常情况下通过事件失效
+                .recordStats()
+                .build();
+        this.gzipMinBytes = gzipMinBytes;
+        for (Route route : Route.values()) {
+            generations.put(route, new AtomicLong());
+        }
+    }
+
+    public Entry get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * 当前的代数，请求开始时记下来，写入缓存时传进来
+     */
+    public long generation(Route route) {
+        return generations.get(route).get();
+    }
+
+    /**
+     * 创建缓存的响应，代数没变时才放入缓存
+     * @param route 接口
+     * @param key 缓存的key
+     * @param generation 请求开始时的代数
+     * @param body 序列化好的响应
+     * @param contentType 响应类型
+     * @return 创建的响应，没有放入缓存也会返回
+     */
+    public Entry put(Route route, String key, long generation, byte[] body, String contentType) {
+        byte[] gzipBody = gzip(body);
+        String md5 = DigestUtils.md5DigestAsHex(body);
+        // 压缩和不压缩的响应是不同的字节，强ETag必须不同，压缩的加上-gzip后缀
+        Entry entry = new Entry(body, gzipBody, "\"" + md5 + "\"",
+                gzipBody == null ? null : "\"" + md5 + "-gzip\"", contentType);
+        if (generations.get(route).get() == generation) {
+            cache.put(key, entry);
+            // 写入之后再检查一次，写入的同时被删除了的话，把刚写入的也删掉
+            if (generations.get(route).get() != generation) {
+                cache.invalidate(key);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * 删除一个接口的所有缓存
+     */
+    public void invalidate(Route route) {
+        generations.get(route).incrementAndGet();
+        String prefix = route.getPath() + "?";
+        cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    @EventListener
+    public void onDomainEvent(DomainEvent event) {
+        if (event.getType().isTeamEvent()) {
+            invalidate(Route.TEAM_LIST);
+            invalidate(Route.TEAM_GET);
+        } else {
+            invalidate(Route.TEAM_LIST); // 队伍列表中有创建人的信息
+            invalidate(Route.USER_RECOMMEND);
+        }
+    }
+
+    @Override
+    public void onTeamExpired(long teamId) {
+        invalidate(Route.TEAM_LIST);
+    }
+
+    /**
+     * 缓存的响应当前占用的字节数
+     */
+    public long weightedSize() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    public void bindMetrics(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "responseCache");
+    }
+
+    private byte[] gzip(byte[] body) {
+        if (body.length < gzipMinBytes) {
+            return null;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(body);
+        } catch (IOException e) { // 内存中压缩，不会出现
+            log.error("gzip response error", e);
+            return null;
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 缓存的响应
+     */
+    public static final class Entry {
+
+        private final byte[] body;
+
+        /**
+         * gzip压缩后的响应，太小的响应不压缩，为空
+         */
+        private final byte[] gzipBody;
+
+        /**
+         * 强ETag，响应内容的md5
+         */
+        private final String etag;
+
+        /**
+         * gzip压缩后的响应的强ETag，响应内容的md5加上-gzip后缀，不压缩时为空
+         */
+        private final String gzipEtag;
+
+        private final String contentType;
+
+        private Entry(byte[] body, byte[] gzipBody, String etag, String gzipEtag, String contentType) {
+            this.body = body;
+            this.gzipBody = gzipBody;
+            this.etag = etag;
+            this.gzipEtag = gzipEtag;
+            this.contentType = contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public byte[] getGzipBody() {
+            return gzipBody;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getGzipEtag() {
+            return gzipEtag;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * 占用的字节数，key和ETag很小，只算响应内容
+         */
+        private int weight() {
+            long weight = (long) body.length + (gzipBody == null ? 0 : gzipBody.length);
+            return (int) Math.min(weight, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.xiaowc.partnermatch.cache;
+
+import com.xiaowc.partnermatch.datasource.ReadWriteContext;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.service.LoginStateService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 响应缓存过滤器：命中缓存时直接返回缓存的字节，不进入controller；客户端带的ETag没变时返回304，不返回内容
+ *
+ * 只缓存成功的响应(状态码200，并且业务状态码code为0)，失败的响应每次都重新处理
+ * 没有命中时查询走主库，不把从库上还没同步的旧数据放进缓存
+ * 响应头带上 Cache-Control: private, no-cache，浏览器每次都会带着ETag来校验，数据变了马上就能看到
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    /**
+     * 成功的响应的开头，BaseResponse的第一个字段是code
+     */
+    private static final byte[] SUCCESS_PREFIX = "{\"code\":0,".getBytes(StandardCharsets.UTF_8);
+
+    private final ResponseCache responseCache;
+
+    private final LoginStateService loginStateService;
+
+    public ResponseCacheFilter(ResponseCache responseCache, LoginStateService loginStateService) {
+        this.responseCache = responseCache;
+        this.loginStateService = loginStateService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ResponseCache.Route route = HttpMethod.GET.matches(request.getMethod()) ? findRoute(request) : null;
+        String key = route == null ? null : buildKey(route, request);
+        if (key == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        // 1.命中缓存
+        ResponseCache.Entry entry = responseCache.get(key);
+        if (entry != null) {
+            writeEntry(entry, request, response);
+            return;
+        }
+        // 2.没有命中，记下代数再处理请求，把响应内容拦截下来
+        long generation = responseCache.generation(route);
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        // 查出来的要放进缓存，代数已经是修改之后的了，从延迟的从库读到修改之前的数据就会一直缓存着，
+        // 而且/team/get是所有人共用的，修改的人自己也会看到旧的，所以没命中时走主库
+        Exception[] failure = new Exception[1];
+        ReadWriteContext.runOnPrimary(() -> {
+            try {
+                filterChain.doFilter(request, responseWrapper);
+            } catch (IOException | ServletException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] instanceof IOException) {
+            throw (IOException) failure[0];
+        }
+        if (failure[0] != null) {
+            throw (ServletException) failure[0];
+        }
+        byte[] body = responseWrapper.getContentAsByteArray();
+        if (responseWrapper.getStatus() != HttpServletResponse.SC_OK || !startsWith(body, SUCCESS_PREFIX)) {
+            responseWrapper.copyBodyToResponse();
+            return;
+        }
+        entry = responseCache.put(route, key, generation, body, responseWrapper.getContentType());
+        writeEntry(entry, request, response);
+    }
+
+    private ResponseCache.Route findRoute(HttpServletRequest request) {
+        String path = request.getServletPath();
+        for (ResponseCache.Route route : ResponseCache.Route.values()) {
+            if (route.getPath().equals(path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * key：接口?参数(按名称排序)|可见范围
+     * @return 不能缓存时返回null
+     */
+    private String buildKey(ResponseCache.Route route, HttpServletRequest request) {
+        String visibility;
+        if (route.getVisibility() == ResponseCache.Visibility.PUBLIC) {
+            visibility = "public";
+        } else {
+            User loginUser;
+            try {
+                loginUser = loginStateService.getLoginUser(request);
+            } catch (Exception e) {
+                loginUser = null;
+            }
+            if (loginUser != null) {
+                visibility = route.getVisibility() == ResponseCache.Visibility.PER_USER ? "user:" + loginUser.getId() : "login";
+            } else if (route.getVisibility() == ResponseCache.Visibility.PER_USER) {
+                visibility = "anonymous";
+            } else {
+                return null; // 未登录的请求会失败，不用缓存
+            }
+        }
+        StringBuilder key = new StringBuilder(route.getPath()).append('?');
+        Map<String, String[]> parameterMap = new TreeMap<>(request.getParameterMap());
+        for (Map.Entry<String, String[]> parameter : parameterMap.entrySet()) {
+            String[] values = parameter.getValue().clone();
+            Arrays.sort(values);
+            key.append(parameter.getKey()).append('=').append(String.join(",", values)).append('&');
+        }
+        return key.append('|').append(visibility).toString();
+    }
+
+    private void writeEntry(ResponseCache.Entry entry, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        // 先确定返回哪个版本，ETag和If-None-Match都按这个版本比较
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = entry.getGzipBody() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? entry.getGzipEtag() : entry.getEtag();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(entry.getContentType());
+        byte[] body = entry.getBody();
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            body = entry.getGzipBody();
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * If-None-Match 中可能有多个ETag，用逗号分隔；弱ETag(W/开头)也按内容比较
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (!StringUtils.hasText(ifNoneMatch)) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || etag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] body, byte[] prefix) {
+        if (body.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (body[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -32,6 +32,7 @@ public enum ErrorCode {
     NOT_LOGIN(40100, "未登录", ""),
     NO_AUTH(40101, "无权限", ""),
     FORBIDDEN(40301, "禁止操作", ""),
+    TOO_MANY_REQUESTS(42900, "请求太多，请稍后再试", ""),
     SYSTEM_ERROR(50000, "系统内部异常", "");
 
     /**
@@ -55,6 +56,20 @@ public enum ErrorCode {
         this.description = description;
     }
 
+    /**
+     * 根据错误码找到对应的枚举值
+     * @param code 错误码
+     * @return 找不到时返回null
+     */
+    public static ErrorCode getEnumByCode(int code) {
+        for (ErrorCode errorCode : values()) {
+            if (errorCode.code == code) {
+                return errorCode;
+            }
+        }
+        return null;
+    }
+
     public int getCode() {
         return code;
     }
@@ -0,0 +1,116 @@
+package com.xiaowc.partnermatch.common;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+
+/**
+ * 稀疏字段：前端通过 fields=id,username,avatarUrl 只要部分字段
+ *   1.返回的json中只有这些字段(见FieldSelectionAdvice)
+ *   2.查询数据库时只查这些字段对应的列(列名和字段名相同)，只能查白名单中的列，防止查出密码等字段
+ */
+public class FieldSelection {
+
+    /**
+     * 用户(User、UserVO)序列化时的过滤器id，见@JsonFilter
+     */
+    public static final String USER_FILTER = "userFields";
+
+    /**
+     * 队伍(Team、TeamUserVO)序列化时的过滤器id，见@JsonFilter
+     */
+    public static final String TEAM_FILTER = "teamFields";
+
+    /**
+     * 没有指定fields，返回全部字段
+     */
+    public static final FieldSelection ALL = new FieldSelection(null);
+
+    /**
+     * 请求的字段，为空表示全部字段
+     */
+    private final Set<String> fields;
+
+    private FieldSelection(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * 解析请求中的fields参数
+     * @param fields 逗号分隔的字段名，为空表示全部字段
+     * @return
+     */
+    public static FieldSelection parse(String fields) {
+        if (StringUtils.isBlank(fields)) {
+            return ALL;
+        }
+        Set<String> fieldSet = new TreeSet<>();
+        for (String field : fields.split(",")) {
+            if (StringUtils.isNotBlank(field)) {
+                fieldSet.add(field.trim());
+            }
+        }
+        return fieldSet.isEmpty() ? ALL : new FieldSelection(Collections.unmodifiableSet(fieldSet));
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    /**
+     * 是否需要返回这个字段
+     */
+    public boolean contains(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    /**
+     * 请求的字段，全部字段时为空
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * 要查询的列：白名单中被请求的列，再加上业务必须要用的列
+     * @param allowedColumns 白名单，没有指定fields时查全部白名单中的列
+     * @param requiredColumns 必须要查的列(比如id、计算要用的列)
+     * @return
+     */
+    public String[] columns(String[] allowedColumns, String... requiredColumns) {
+        if (fields == null) {
+            return allowedColumns;
+        }
+        Set<String> columns = new LinkedHashSet<>(Arrays.asList(requiredColumns));
+        for (String column : allowedColumns) {
+            if (fields.contains(column)) {
+                columns.add(column);
+            }
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    /**
+     * 序列化用的过滤器：这个过滤器id的类只输出请求的字段，其他类型输出全部字段
+     * @param filterId 过滤器id，见USER_FILTER、TEAM_FILTER
+     * @return
+     */
+    public FilterProvider filters(String filterId) {
+        SimpleFilterProvider filterProvider = new SimpleFilterProvider().setFailOnUnknownId(false);
+        if (fields != null) {
+            filterProvider.addFilter(filterId, SimpleBeanPropertyFilter.filterOutAllExcept(fields));
+        }
+        return filterProvider;
+    }
+
+    /**
+     * 排好序的字段，可以作为缓存key的一部分
+     */
+    @Override
+    public String toString() {
+        return fields == null ? "*" : String.join(",", fields);
+    }
+}
@@ -0,0 +1,70 @@
+package com.xiaowc.partnermatch.common;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+/**
+ * 稀疏字段：请求中带了fields参数时，序列化成json时只输出这些字段
+ *
+ * 实现：
+ *   1.User、UserVO、Team、TeamUserVO上有@JsonFilter，默认的过滤器不存在，输出全部字段(见JacksonConfig)
+ *   2.接口的返回值类型中(包括泛型参数，比如BaseResponse<List<User>>)有@JsonFilter的类，
+ *     才给这次序列化设置过滤器，只保留请求的字段
+ *   3.嵌套的其他类型(比如TeamUserVO中的创建人createUser)不过滤，输出全部字段
+ */
+@RestControllerAdvice
+public class FieldSelectionAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    public static final String FIELDS_PARAM = "fields";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return super.supports(returnType, converterType) && findFilterId(ResolvableType.forMethodParameter(returnType)) != null;
+    }
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest)) {
+            return;
+        }
+        FieldSelection fieldSelection = FieldSelection.parse(
+                ((ServletServerHttpRequest) request).getServletRequest().getParameter(FIELDS_PARAM));
+        if (fieldSelection.isAll()) {
+            return;
+        }
+        bodyContainer.setFilters(fieldSelection.filters(findFilterId(ResolvableType.forMethodParameter(returnType))));
+    }
+
+    /**
+     * 在类型及其泛型参数中找@JsonFilter的过滤器id
+     * @return 没有找到返回null
+     */
+    static String findFilterId(ResolvableType type) {
+        Class<?> clazz = type.resolve();
+        if (clazz == null) {
+            return null;
+        }
+        JsonFilter jsonFilter = clazz.getAnnotation(JsonFilter.class);
+        if (jsonFilter != null) {
+            return jsonFilter.value();
+        }
+        for (ResolvableType generic : type.getGenerics()) {
+            String filterId = findFilterId(generic);
+            if (filterId != null) {
+                return filterId;
+            }
+        }
+        return null;
+    }
+}
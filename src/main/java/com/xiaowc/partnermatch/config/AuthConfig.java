@@ -0,0 +1,48 @@
+package com.xiaowc.partnermatch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 登录态的配置
+ *   mode = session：登录态存在session中(redis)，默认
+ *   mode = token：登录时签发一个签名令牌，之后每个请求在本地校验令牌，不用访问redis
+ * 两种方式可以通过配置切换，方便对比接口延迟和redis的压力
+ */
+@Configuration
+@ConfigurationProperties(prefix = "xiaowc.auth") // 从application.yml这个配置中读取
+@Data
+public class AuthConfig {
+
+    /**
+     * 登录态的存储方式：session 或 token
+     */
+    private String mode = "session";
+
+    /**
+     * 令牌签名密钥，没有默认值，从环境变量XIAOWC_AUTH_TOKEN_SECRET中读取
+     * 令牌模式下密钥为空、少于32字节或者是占位符时启动失败
+     */
+    private String tokenSecret;
+
+    /**
+     * 令牌有效期(秒)，默认和session的失效时间一样
+     */
+    private long tokenExpireSeconds = 86400;
+
+    /**
+     * 请求头中携带令牌的字段名，格式：Bearer 令牌
+     */
+    private String tokenHeader = "Authorization";
+
+    /**
+     * 存放令牌的cookie名称，前端不用改代码，浏览器会自动带上cookie
+     */
+    private String tokenCookieName = "xiaowc_token";
+
+    /**
+     * 本地缓存登录用户信息的时间(秒)，用户信息修改后通过领域事件删除，这里只是兜底
+     */
+    private long userCacheSeconds = 600;
+}
@@ -0,0 +1,64 @@
+package com.xiaowc.partnermatch.config;
+
+import com.xiaowc.partnermatch.bulk.BulkLoader;
+import com.xiaowc.partnermatch.datasource.Workload;
+import com.xiaowc.partnermatch.datasource.WorkloadRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 批量导入配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "xiaowc.bulk") // 从application.yml这个配置中读取
+@Data
+@Slf4j
+public class BulkLoadConfig {
+
+    /**
+     * 写入的线程数，0表示和数据库连接池的大小保持一致
+     */
+    private int threads = 0;
+
+    /**
+     * 按连接池大小计算线程数时，给接口请求预留的连接数(批量任务有单独的连接池时不需要预留，见WorkloadConfig)
+     */
+    private int reservedConnections = 2;
+
+    /**
+     * 一条insert语句最多多少行
+     */
+    private int maxRowsPerStatement = 5000;
+
+    /**
+     * 一条insert语句最多多少字节，0表示根据数据库的max_allowed_packet自动计算
+     */
+    private long maxStatementBytes = 0;
+
+    @Bean
+    public BulkLoader bulkLoader(DataSource dataSource, ObjectProvider<WorkloadRoutingDataSource> workloadRoutingDataSource) {
+        // 批量任务有单独的连接池时直接用这个连接池，不会占用接口请求的连接
+        WorkloadRoutingDataSource workloadDataSource = workloadRoutingDataSource.getIfAvailable();
+        int reserved = reservedConnections;
+        if (workloadDataSource != null) {
+            dataSource = workloadDataSource.getDataSource(Workload.BATCH);
+            reserved = 0;
+        }
+        int loaderThreads = threads;
+        if (loaderThreads <= 0) {
+            // 线程数超过连接数没有意义，多出来的线程只会在连接池上排队
+            int poolSize = dataSource instanceof HikariDataSource
+                    ? ((HikariDataSource) dataSource).getMaximumPoolSize() : Runtime.getRuntime().availableProcessors();
+            loaderThreads = Math.max(1, poolSize - reserved);
+        }
+        log.info("bulk loader threads: {}", loaderThreads);
+        return new BulkLoader(dataSource, loaderThreads, maxRowsPerStatement, maxStatementBytes);
+    }
+}
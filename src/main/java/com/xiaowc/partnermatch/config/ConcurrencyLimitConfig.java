@@ -0,0 +1,96 @@
+package com.xiaowc.partnermatch.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaowc.partnermatch.limit.AimdLimiter;
+import com.xiaowc.partnermatch.limit.ConcurrencyLimitFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按路由组的自适应并发限制配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "xiaowc.concurrency-limit") // 从application.yml这个配置中读取
+@ConditionalOnProperty(prefix = "xiaowc.concurrency-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+@Data
+public class ConcurrencyLimitConfig {
+
+    /**
+     * 是否开启并发限制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 路由组名称 -> 配置，同一组的接口共用一个并发限制
+     */
+    private Map<String, Group> groups = new LinkedHashMap<>();
+
+    @Data
+    public static class Group {
+
+        /**
+         * 这一组的接口路径
+         */
+        private List<String> paths = new ArrayList<>();
+
+        /**
+         * 初始的并发上限
+         */
+        private int initialLimit = 20;
+
+        /**
+         * 最小的并发上限
+         */
+        private int minLimit = 8;
+
+        /**
+         * 最大的并发上限
+         */
+        private int maxLimit = 200;
+
+        /**
+         * 耗时超过这个值(毫秒)认为过载了，减小上限
+         */
+        private long latencyThresholdMillis = 1000;
+
+        /**
+         * 过载时上限乘以这个系数
+         */
+        private double backoffRatio = 0.9;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(ObjectMapper objectMapper,
+                                                                                 MeterRegistry meterRegistry)
+            throws IOException {
+        Map<String, AimdLimiter> limiters = new HashMap<>();
+        groups.forEach((name, group) -> {
+            AimdLimiter limiter = new AimdLimiter(name, group.getInitialLimit(), group.getMinLimit(),
+                    group.getMaxLimit(), group.getLatencyThresholdMillis(), group.getBackoffRatio());
+            limiter.bindMetrics(meterRegistry);
+            group.getPaths().forEach(path -> limiters.put(path, limiter));
+        });
+        FilterRegistrationBean<ConcurrencyLimitFilter> registrationBean =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(limiters, objectMapper));
+        if (limiters.isEmpty()) {
+            registrationBean.setEnabled(false);
+        } else {
+            limiters.keySet().forEach(registrationBean::addUrlPatterns);
+        }
+        registrationBean.setOrder(Ordered.LOWEST_PRECEDENCE); // 在响应缓存过滤器后面，命中缓存的请求不受限制
+        return registrationBean;
+    }
+}
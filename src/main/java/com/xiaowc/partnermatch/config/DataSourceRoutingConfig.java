@@ -0,0 +1,146 @@
+package com.xiaowc.partnermatch.config;
+
+import com.xiaowc.partnermatch.datasource.ReadWriteRoutingDataSource;
+import com.xiaowc.partnermatch.datasource.ReadWriteRoutingInterceptor;
+import com.xiaowc.partnermatch.datasource.ReadYourWritesFilter;
+import com.xiaowc.partnermatch.datasource.WorkloadRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Data;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 读写分离的配置：配置了从库并且开启之后，只读的查询走从库，写操作走主库
+ *
+ * 主库见WorkloadConfig，从库的连接池参数(spring.datasource.hikari)和主库接口请求的连接池一样，
+ * 没有开启时不会创建这些bean，数据源由WorkloadConfig提供
+ */
+@Configuration
+@ConfigurationProperties(prefix = "xiaowc.datasource") // 从application.yml这个配置中读取
+@ConditionalOnProperty(prefix = "xiaowc.datasource", name = "read-write-splitting", havingValue = "true")
+@Data
+public class DataSourceRoutingConfig {
+
+    /**
+     * 是否开启读写分离
+     */
+    private boolean readWriteSplitting = false;
+
+    /**
+     * 从库
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * 从库延迟超过这个值(毫秒)就不走这个从库，改走主库
+     */
+    private long maxLagMillis = 1000;
+
+    /**
+     * 用户写过数据之后多久(毫秒)之内都走主库(读己之写)，要大于从库正常的延迟
+     */
+    private long stickyMillis = 5000;
+
+    /**
+     * 多久检查一次从库的延迟(毫秒)
+     */
+    private long lagCheckIntervalMillis = 1000;
+
+    /**
+     * 查询从库延迟的sql，mysql8.0.22之后可以用 SHOW REPLICA STATUS
+     */
+    private String lagQuery = "SHOW SLAVE STATUS";
+
+    /**
+     * 延迟(秒)所在的列，SHOW REPLICA STATUS 对应 Seconds_Behind_Source
+     */
+    private String lagColumn = "Seconds_Behind_Master";
+
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(HikariDataSource interactiveDataSource,
+                                                                 ObjectProvider<WorkloadRoutingDataSource> workloadRoutingDataSource) {
+        Map<String, DataSource> replicaDataSources = new LinkedHashMap<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            String name = "replica-" + i;
+            HikariDataSource replicaDataSource = new HikariDataSource();
+            interactiveDataSource.copyStateTo(replicaDataSource); // 连接池参数和主库接口请求的连接池一样
+            replicaDataSource.setJdbcUrl(replica.getUrl());
+            replicaDataSource.setUsername(replica.getUsername());
+            replicaDataSource.setPassword(replica.getPassword());
+            replicaDataSource.setPoolName(name);
+            replicaDataSource.setReadOnly(true);
+            replicaDataSources.put(name, replicaDataSource);
+        }
+        // 主库按工作负载选择连接池(见WorkloadConfig)，从库只有一个连接池
+        DataSource primaryDataSource = workloadRoutingDataSource.getIfAvailable();
+        if (primaryDataSource == null) {
+            primaryDataSource = interactiveDataSource;
+        }
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSources, maxLagMillis, lagQuery, lagColumn);
+    }
+
+    /**
+     * 监控指标：从库的延迟和路由次数，从库连接池的指标(从库不是bean，spring boot不会自动监控)
+     * 用MeterBinder而不是直接注入MeterRegistry，因为创建MeterRegistry时要先创建数据源，直接注入会循环依赖
+     */
+    @Bean
+    public MeterBinder readWriteRoutingMetrics(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return meterRegistry -> {
+            readWriteRoutingDataSource.bindMetrics(meterRegistry);
+            for (DataSource replicaDataSource : readWriteRoutingDataSource.getReplicaDataSources()) {
+                HikariDataSource hikariDataSource = (HikariDataSource) replicaDataSource;
+                if (hikariDataSource.getMetricsTrackerFactory() == null) {
+                    hikariDataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+                }
+            }
+        };
+    }
+
+    /**
+     * mybatis和事务管理器用的数据源：执行第一条sql时才获取真正的连接，这时才能判断走主库还是从库
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+
+    @Bean
+    public ReadWriteRoutingInterceptor readWriteRoutingInterceptor() {
+        return new ReadWriteRoutingInterceptor(stickyMillis);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter() {
+        FilterRegistrationBean<ReadYourWritesFilter> registrationBean =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(stickyMillis));
+        registrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE); // 在其他会查数据库的过滤器之前
+        return registrationBean;
+    }
+}
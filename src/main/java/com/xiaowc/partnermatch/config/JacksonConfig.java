@@ -0,0 +1,21 @@
+package com.xiaowc.partnermatch.config;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 接口返回json的序列化配置
+ */
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * 实体类上有@JsonFilter(稀疏字段，见FieldSelectionAdvice)，没有带fields参数时找不到过滤器，不报错，输出全部字段
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldSelectionFilterCustomizer() {
+        return builder -> builder.filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+    }
+}
@@ -3,10 +3,17 @@ package com.xiaowc.partnermatch.config;
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.xiaowc.partnermatch.monitor.SqlTimingInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.ibatis.mapping.DatabaseIdProvider;
+import org.apache.ibatis.mapping.VendorDatabaseIdProvider;
 import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Properties;
+
 @Configuration
 @MapperScan("com.xiaowc.partner.mapper")
 public class MybatisPlusConfig {
@@ -21,6 +28,29 @@ public class MybatisPlusConfig {
         return interceptor;
     }
 
+    /**
+     * sql耗时拦截器：统计每个mapper方法的耗时，只打印慢sql，代替StdOutImpl打印所有sql
+     * @param slowThresholdMillis 慢sql的阈值(毫秒)
+     */
+    @Bean
+    public SqlTimingInterceptor sqlTimingInterceptor(MeterRegistry meterRegistry,
+                                                     @Value("${xiaowc.sql.slow-threshold-ms:200}") long slowThresholdMillis) {
+        return new SqlTimingInterceptor(meterRegistry, slowThresholdMillis);
+    }
+
+    /**
+     * 按数据库区分mapper中的语句(databaseId)：mysql的流式查询需要负的fetchSize，其他数据库不接受，见UserMapper.xml
+     * 不是mysql时databaseId为空，用没有databaseId的语句
+     */
+    @Bean
+    public DatabaseIdProvider databaseIdProvider() {
+        VendorDatabaseIdProvider databaseIdProvider = new VendorDatabaseIdProvider();
+        Properties properties = new Properties();
+        properties.setProperty("MySQL", "mysql");
+        databaseIdProvider.setProperties(properties);
+        return databaseIdProvider;
+    }
+
 //    /**
 //     * 自定义配置
 //     * @return
@@ -0,0 +1,108 @@
+package com.xiaowc.partnermatch.config;
+
+import com.xiaowc.partnermatch.session.NearCacheSessionRepository;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.session.RedisSessionProperties;
+import org.springframework.boot.autoconfigure.session.SessionProperties;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.session.data.redis.RedisIndexedSessionRepository;
+import org.springframework.session.data.redis.config.ConfigureRedisAction;
+import org.springframework.session.data.redis.config.ConfigureNotifyKeyspaceEventsAction;
+import org.springframework.session.data.redis.config.annotation.web.http.RedisHttpSessionConfiguration;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+
+/**
+ * session近端缓存的配置
+ *   把redis的session仓库用NearCacheSessionRepository包装一层，并设置为@Primary，
+ *   这样spring session的过滤器拿到的就是带本地缓存的仓库，getLoginUser()/isAdmin()读session时不用每次都访问redis
+ * 可以通过 xiaowc.session.near-cache.enabled=false 关闭
+ * 注意：springboot自动配置的redis session仓库是 @ConditionalOnMissingBean(SessionRepository.class) 的，
+ *   容器中有了这里的仓库之后自动配置就不生效了，所以要自己导入spring session的redis配置(见RedisSessionConfiguration)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "xiaowc.session.near-cache") // 从application.yml这个配置中读取
+@ConditionalOnProperty(prefix = "xiaowc.session.near-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+@Data
+public class NearCacheSessionConfig {
+
+    /**
+     * 是否开启session近端缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 本地缓存的过期时间(秒)，兜底用，正常情况下通过发布订阅失效
+     */
+    private long ttlSeconds = 10;
+
+    /**
+     * 本地缓存最多缓存多少个session
+     */
+    private long maximumSize = 10000;
+
+    /**
+     * session最后访问时间刷新到redis的间隔(秒)
+     */
+    private long accessFlushSeconds = 60;
+
+    @Resource(name = "redisMessageListenerContainer") // spring session也有一个监听容器，这里按名称注入
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Bean
+    @Primary
+    public NearCacheSessionRepository<?> nearCacheSessionRepository(RedisIndexedSessionRepository sessionRepository,
+                                                                    StringRedisTemplate stringRedisTemplate) {
+        NearCacheSessionRepository<?> nearCacheSessionRepository = new NearCacheSessionRepository<>(
+                sessionRepository, stringRedisTemplate, ttlSeconds, maximumSize, accessFlushSeconds);
+        // 订阅失效通知，其他服务器修改或删除了session，就删掉本地缓存
+        redisMessageListenerContainer.addMessageListener(nearCacheSessionRepository,
+                new ChannelTopic(NearCacheSessionRepository.INVALIDATION_CHANNEL));
+        return nearCacheSessionRepository;
+    }
+
+    /**
+     * 和springboot自动配置的redis session一样，读取 spring.session.* 的配置创建redis session仓库
+     */
+    @Configuration
+    @EnableConfigurationProperties(RedisSessionProperties.class)
+    public static class RedisSessionConfiguration extends RedisHttpSessionConfiguration {
+
+        @Autowired
+        public void customize(SessionProperties sessionProperties, RedisSessionProperties redisSessionProperties,
+                              ServerProperties serverProperties) {
+            Duration timeout = sessionProperties
+                    .determineTimeout(() -> serverProperties.getServlet().getSession().getTimeout());
+            if (timeout != null) {
+                setMaxInactiveIntervalInSeconds((int) timeout.getSeconds());
+            }
+            setRedisNamespace(redisSessionProperties.getNamespace());
+            setFlushMode(redisSessionProperties.getFlushMode());
+            setSaveMode(redisSessionProperties.getSaveMode());
+            setCleanupCron(redisSessionProperties.getCleanupCron());
+        }
+
+        /**
+         * 是否开启redis的键空间通知，spring.session.redis.configure-action=none 时不去设置(比如云上的redis不允许config命令)
+         * 必须是静态方法，因为父类会注入这个bean，非静态的话创建这个bean又要先创建配置类本身，形成循环依赖
+         */
+        @Bean
+        public static ConfigureRedisAction configureRedisAction(RedisSessionProperties redisSessionProperties) {
+            if (redisSessionProperties.getConfigureAction() == RedisSessionProperties.ConfigureAction.NONE) {
+                return ConfigureRedisAction.NO_OP;
+            }
+            return new ConfigureNotifyKeyspaceEventsAction();
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.xiaowc.partnermatch.config;
 
+import com.xiaowc.partnermatch.monitor.MonitoredRedisTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 
 /**
@@ -14,11 +17,25 @@ import org.springframework.data.redis.serializer.RedisSerializer;
 @Configuration
 public class RedisTemplateConfig {
 
+    /**
+     * 使用MonitoredRedisTemplate，统计每个redis命令的耗时
+     */
     @Bean
-    public RedisTemplate redisTemplate(RedisConnectionFactory connectionFactory) {
-        RedisTemplate<String, Object> redisTemplate = new RedisTemplate();
+    public RedisTemplate redisTemplate(RedisConnectionFactory connectionFactory, MeterRegistry meterRegistry) {
+        RedisTemplate<String, Object> redisTemplate = new MonitoredRedisTemplate(meterRegistry);
         redisTemplate.setConnectionFactory(connectionFactory); // 设置链接工厂
         redisTemplate.setKeySerializer(RedisSerializer.string()); // 设置key的序列化器
         return redisTemplate;
     }
+
+    /**
+     * redis发布订阅的监听容器，项目中需要订阅redis频道的地方都往这个容器里注册监听器
+     *   注意：spring session自己也会创建一个监听容器，所以注入的时候要按名称注入
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
 }
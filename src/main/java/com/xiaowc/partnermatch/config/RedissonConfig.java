@@ -28,12 +28,39 @@ public class RedissonConfig {
      */
     private String port;
 
+    /**
+     * redisson连接池的大小，开启虚拟线程之后并发更高，需要适当调大(见application-virtual-threads.yml)
+     */
+    private int connectionPoolSize = 64;
+
+    /**
+     * redisson连接池最少保持的空闲连接数
+     */
+    private int connectionMinimumIdleSize = 24;
+
+    /**
+     * 等待redis响应的超时时间(毫秒)，连接池满了的时候也按这个时间等待空闲连接
+     */
+    private int responseTimeout = 3000;
+
+    /**
+     * 命令发送失败(包括拿不到连接)后重试的次数，每次间隔retryInterval毫秒
+     */
+    private int retryAttempts = 3;
+
+    private int retryInterval = 1500;
+
     @Bean
     public RedissonClient redissonClient() {
         // 1.创建配置
         Config config = new Config();
         String redisAddress = String.format("redis://%s:%s", host, port); // 不要把redisson的配置写死，从yml文件中去读
-        config.useSingleServer().setAddress(redisAddress).setDatabase(3); // 设置redisson的地址和数据库
+        config.useSingleServer().setAddress(redisAddress).setDatabase(3) // 设置redisson的地址和数据库
+                .setConnectionPoolSize(connectionPoolSize)
+                .setConnectionMinimumIdleSize(connectionMinimumIdleSize)
+                .setTimeout(responseTimeout)
+                .setRetryAttempts(retryAttempts)
+                .setRetryInterval(retryInterval);
         // 2.创建redisson实例
         RedissonClient redisson = Redisson.create(config);
         return redisson;
@@ -0,0 +1,62 @@
+package com.xiaowc.partnermatch.config;
+
+import com.xiaowc.partnermatch.cache.ResponseCache;
+import com.xiaowc.partnermatch.cache.ResponseCacheFilter;
+import com.xiaowc.partnermatch.service.LoginStateService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.Arrays;
+
+/**
+ * 热点GET接口响应缓存的配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "xiaowc.response-cache") // 从application.yml这个配置中读取
+@ConditionalOnProperty(prefix = "xiaowc.response-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+@Data
+public class ResponseCacheConfig {
+
+    /**
+     * 是否开启响应缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓存的响应最多占用多少字节(原始的加上gzip压缩后的)
+     */
+    private long maximumBytes = 64L * 1024 * 1024;
+
+    /**
+     * 缓存的过期时间(秒)，兜底用，正常情况下通过领域事件失效
+     */
+    private long ttlSeconds = 600;
+
+    /**
+     * 大于等于这个大小(字节)的响应才gzip压缩
+     */
+    private int gzipMinBytes = 1024;
+
+    @Bean
+    public ResponseCache responseCache(MeterRegistry meterRegistry) {
+        ResponseCache responseCache = new ResponseCache(maximumBytes, ttlSeconds, gzipMinBytes);
+        responseCache.bindMetrics(meterRegistry);
+        return responseCache;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ResponseCacheFilter> responseCacheFilter(ResponseCache responseCache,
+                                                                           LoginStateService loginStateService) {
+        FilterRegistrationBean<ResponseCacheFilter> registrationBean =
+                new FilterRegistrationBean<>(new ResponseCacheFilter(responseCache, loginStateService));
+        Arrays.stream(ResponseCache.Route.values()).forEach(route -> registrationBean.addUrlPatterns(route.getPath()));
+        registrationBean.setOrder(Ordered.LOWEST_PRECEDENCE - 10); // 在并发限制过滤器前面，命中缓存的请求不受限制
+        return registrationBean;
+    }
+}
@@ -1,8 +1,11 @@
 package com.xiaowc.partnermatch.config;
  
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping;
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
@@ -10,8 +13,12 @@ import springfox.documentation.service.ApiInfo;
 import springfox.documentation.service.Contact;
 import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
+import springfox.documentation.spring.web.plugins.WebMvcRequestHandlerProvider;
 import springfox.documentation.swagger2.annotations.EnableSwagger2WebMvc;
 
+import java.lang.reflect.Field;
+import java.util.List;
+
 /**
  * 自定义swagger接口文档的配置
  * Swagger原理：
@@ -40,6 +47,31 @@ public class SwaggerConfig {
                 .build();
     }
 
+    /**
+     * 引入actuator之后，actuator的接口使用的是PathPatternParser路径匹配，
+     * swagger(springfox)不支持这种方式，启动时会报空指针，这里把这些接口从swagger扫描的范围中去掉
+     */
+    @Bean
+    public static BeanPostProcessor springfoxHandlerProviderBeanPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof WebMvcRequestHandlerProvider) {
+                    try {
+                        Field field = WebMvcRequestHandlerProvider.class.getDeclaredField("handlerMappings");
+                        field.setAccessible(true);
+                        @SuppressWarnings("unchecked")
+                        List<RequestMappingInfoHandlerMapping> mappings = (List<RequestMappingInfoHandlerMapping>) field.get(bean);
+                        mappings.removeIf(mapping -> mapping.getPatternParser() != null);
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
     /**
      * api信息
      * @return
@@ -0,0 +1,34 @@
+package com.xiaowc.partnermatch.config;
+
+import com.xiaowc.partnermatch.tag.TagCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 标签解析缓存的配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "xiaowc.tag-codec") // 从application.yml这个配置中读取
+@Data
+public class TagCodecConfig {
+
+    /**
+     * 最多缓存多少个用户的标签解析结果，一个用户的标签占几十个字节
+     */
+    private long maximumSize = 1000000;
+
+    /**
+     * 标签字典最多保存多少个不同的标签
+     */
+    private int maxDictionarySize = 100000;
+
+    @Bean
+    public TagCodec tagCodec(MeterRegistry meterRegistry) {
+        TagCodec tagCodec = new TagCodec(maximumSize, maxDictionarySize);
+        tagCodec.bindMetrics(meterRegistry);
+        return tagCodec;
+    }
+}
@@ -0,0 +1,42 @@
+package com.xiaowc.partnermatch.config;
+
+import com.xiaowc.partnermatch.team.TeamExpiryListener;
+import com.xiaowc.partnermatch.team.TeamExpiryManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 队伍过期时间轮的配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "xiaowc.team-expiry") // 从application.yml这个配置中读取
+@Data
+public class TeamExpiryConfig {
+
+    /**
+     * 时间轮一个刻度的时长(毫秒)，也就是过期通知的精度
+     */
+    private long tickMillis = 1000;
+
+    /**
+     * 时间轮一圈有多少个刻度
+     */
+    private int ticksPerWheel = 512;
+
+    /**
+     * 定时任务多久扫描一次快要过期的队伍(毫秒)，扫描范围是这个时间的两倍，保证两次扫描之间不会漏掉
+     */
+    private long scanIntervalMillis = 600000;
+
+    @Bean(destroyMethod = "stop")
+    public TeamExpiryManager teamExpiryManager(ObjectProvider<TeamExpiryListener> listeners, MeterRegistry meterRegistry) {
+        TeamExpiryManager teamExpiryManager = new TeamExpiryManager(tickMillis, ticksPerWheel, scanIntervalMillis * 2);
+        listeners.orderedStream().forEach(teamExpiryManager::addListener);
+        teamExpiryManager.bindMetrics(meterRegistry);
+        return teamExpiryManager;
+    }
+}
@@ -0,0 +1,98 @@
+package com.xiaowc.partnermatch.config;
+
+import com.xiaowc.partnermatch.utils.VirtualThreadUtils;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 虚拟线程配置
+ *
+ * 为什么需要？
+ *   接口基本上都是阻塞的：查数据库、读写redis、等分布式锁，tomcat的线程大部分时间都在等待，
+ *   线程池(默认200个线程)用完之后，后面的请求只能排队，哪怕CPU还很空闲
+ *
+ * 开启之后(需要JDK21及以上，低版本JDK会自动退回普通线程)：
+ *   1.tomcat的每个请求都在一个新的虚拟线程中处理，阻塞的时候不占用操作系统线程
+ *   2.blockingExecutor(异步执行阻塞任务的线程池，比如流式导出)也换成虚拟线程；
+ *     批量任务(InsertUsers)用的是batchExecutor，线程数和批量任务的连接池一样大，不换成虚拟线程
+ *   3.并发不再受线程数的限制，真正的限制变成了数据库连接池和redisson连接池的大小，
+ *     所以这两个连接池要设置合适的大小和获取连接的超时时间(见application-virtual-threads.yml)
+ *   4.jdbc驱动内部的synchronized会把虚拟线程固定(pin)在载体线程上，可以用 -Djdk.tracePinnedThreads=short 排查
+ */
+@Configuration
+@ConfigurationProperties(prefix = "xiaowc.virtual-threads") // 从application.yml这个配置中读取
+@Data
+@Slf4j
+public class VirtualThreadConfig {
+
+    /**
+     * 是否开启虚拟线程
+     */
+    private boolean enabled = false;
+
+    /**
+     * 不使用虚拟线程时，阻塞任务线程池的核心线程数
+     */
+    private int corePoolSize = 60;
+
+    /**
+     * 不使用虚拟线程时，阻塞任务线程池的最大线程数
+     */
+    private int maxPoolSize = 1000;
+
+    /**
+     * 不使用虚拟线程时，阻塞任务线程池的队列长度
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 异步执行阻塞任务(查数据库、访问redis等)的线程池
+     */
+    @Bean(name = "blockingExecutor", destroyMethod = "shutdown")
+    public ExecutorService blockingExecutor() {
+        if (isVirtualThreadsAvailable()) {
+            log.info("blocking executor uses virtual threads");
+            return VirtualThreadUtils.newVirtualThreadPerTaskExecutor();
+        }
+        // IO 密集型：分配的核心线程数可以大于CPU核数
+        return new ThreadPoolExecutor(corePoolSize, maxPoolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+    }
+
+    /**
+     * 让tomcat在虚拟线程中处理请求
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "xiaowc.virtual-threads", name = "enabled", havingValue = "true")
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (isVirtualThreadsAvailable()) {
+                log.info("tomcat uses virtual threads");
+                protocolHandler.setExecutor(VirtualThreadUtils.newVirtualThreadPerTaskExecutor());
+            }
+        };
+    }
+
+    private boolean isVirtualThreadsAvailable() {
+        if (!enabled) {
+            return false;
+        }
+        if (!VirtualThreadUtils.isSupported()) {
+            log.warn("virtual threads are enabled but not supported by JDK {}, fall back to platform threads",
+                    System.getProperty("java.version"));
+            return false;
+        }
+        return true;
+    }
+}
@@ -1,11 +1,28 @@
 package com.xiaowc.partnermatch.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import javax.annotation.Resource;
+import java.util.concurrent.ExecutorService;
+
 @Configuration
 public class WebMvcConfg implements WebMvcConfigurer {
+
+    @Resource(name = "blockingExecutor")
+    private ExecutorService blockingExecutor;
+
+    /**
+     * 异步请求(流式导出StreamingResponseBody)在阻塞任务线程池中执行，边查数据库边写响应都是阻塞的，
+     * 默认的SimpleAsyncTaskExecutor每次都新建线程，没有上限
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new ConcurrentTaskExecutor(blockingExecutor));
+    }
  
     @Override
     public void addCorsMappings(CorsRegistry registry) {
@@ -18,6 +35,8 @@ public class WebMvcConfg implements WebMvcConfigurer {
                 .allowCredentials(true)
                 //设置允许的方法
                 .allowedMethods("*")
+                //令牌模式下登录接口会在响应头中返回令牌，需要暴露给前端
+                .exposedHeaders("Authorization")
                 //跨域允许时间
                 .maxAge(3600);
     }
@@ -0,0 +1,203 @@
+package com.xiaowc.partnermatch.config;
+
+import com.xiaowc.partnermatch.datasource.Workload;
+import com.xiaowc.partnermatch.datasource.WorkloadRoutingDataSource;
+import com.xiaowc.partnermatch.datasource.WorkloadTaskDecorator;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 工作负载隔离(舱壁)的配置：接口请求、批量任务、预计算各用各的数据库连接池和线程池
+ *
+ *   1.接口请求的连接池用spring.datasource.hikari的配置
+ *   2.批量任务(批量导入)和预计算(定时任务、缓存预热)的连接池在这里单独配置大小和获取连接的超时时间，
+ *     空闲时不保留连接，其他参数和接口请求的连接池一样
+ *   3.batchExecutor、precomputeExecutor中的任务和定时任务(precomputeTaskScheduler)自动以对应的工作负载执行，见WorkloadTaskDecorator
+ *   4.连接池和线程池的指标：hikaricp_connections_*(按pool区分)、executor_*(按name区分)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "xiaowc.workload") // 从application.yml这个配置中读取
+@Data
+@Slf4j
+public class WorkloadConfig {
+
+    /**
+     * 是否给后台任务使用单独的连接池，关闭后所有工作负载共用接口请求的连接池(线程池还是分开的)
+     */
+    private boolean enabled = true;
+
+    /**
+     * 批量任务
+     */
+    private Pool batch = new Pool(4, 30000, 4, 100);
+
+    /**
+     * 预计算
+     */
+    private Pool precompute = new Pool(2, 10000, 2, 100);
+
+    @Data
+    public static class Pool {
+
+        /**
+         * 连接池最大连接数
+         */
+        private int maximumPoolSize;
+
+        /**
+         * 获取连接的超时时间(毫秒)
+         */
+        private long connectionTimeout;
+
+        /**
+         * 线程池的线程数
+         */
+        private int threads;
+
+        /**
+         * 线程池的队列长度，队列满了之后由提交任务的线程自己执行
+         */
+        private int queueCapacity;
+
+        public Pool() {
+        }
+
+        public Pool(int maximumPoolSize, long connectionTimeout, int threads, int queueCapacity) {
+            this.maximumPoolSize = maximumPoolSize;
+            this.connectionTimeout = connectionTimeout;
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * 接口请求的连接池，参数绑定spring.datasource.hikari
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource interactiveDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("interactive");
+        return dataSource;
+    }
+
+    /**
+     * 主库：按工作负载选择连接池
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "xiaowc.workload", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public WorkloadRoutingDataSource workloadRoutingDataSource(HikariDataSource interactiveDataSource) {
+        Map<Workload, DataSource> dataSources = new EnumMap<>(Workload.class);
+        dataSources.put(Workload.INTERACTIVE, interactiveDataSource);
+        dataSources.put(Workload.BATCH, newPool(interactiveDataSource, "batch", batch));
+        dataSources.put(Workload.PRECOMPUTE, newPool(interactiveDataSource, "precompute", precompute));
+        return new WorkloadRoutingDataSource(dataSources);
+    }
+
+    /**
+     * mybatis和事务管理器用的数据源，开启读写分离时由DataSourceRoutingConfig提供
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "xiaowc.datasource", name = "read-write-splitting", havingValue = "false", matchIfMissing = true)
+    public DataSource dataSource(HikariDataSource interactiveDataSource,
+                                 ObjectProvider<WorkloadRoutingDataSource> workloadRoutingDataSource) {
+        DataSource workloadDataSource = workloadRoutingDataSource.getIfAvailable();
+        return workloadDataSource != null ? workloadDataSource : interactiveDataSource;
+    }
+
+    /**
+     * 后台任务连接池的指标(这两个连接池不是bean，spring boot不会自动监控)
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "xiaowc.workload", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public MeterBinder workloadPoolMetrics(WorkloadRoutingDataSource workloadRoutingDataSource) {
+        return meterRegistry -> {
+            for (Workload workload : new Workload[]{Workload.BATCH, Workload.PRECOMPUTE}) {
+                HikariDataSource dataSource = (HikariDataSource) workloadRoutingDataSource.getDataSource(workload);
+                if (dataSource.getMetricsTrackerFactory() == null) {
+                    dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+                }
+            }
+        };
+    }
+
+    /**
+     * 批量任务的线程池
+     */
+    @Bean
+    public ThreadPoolTaskExecutor batchExecutor() {
+        return newExecutor(Workload.BATCH, "batch-", batch);
+    }
+
+    /**
+     * 预计算的线程池(缓存预热，见PreCacheJob)
+     */
+    @Bean
+    public ThreadPoolTaskExecutor precomputeExecutor() {
+        return newExecutor(Workload.PRECOMPUTE, "precompute-", precompute);
+    }
+
+    /**
+     * 定时任务的线程池：定时任务都是后台任务，以预计算的工作负载执行
+     * 耗时的工作交给precomputeExecutor，从库延迟检查用自己的线程(见ReplicaLagJob)，这里的线程不会被长时间占住
+     * (有的依赖会注册ScheduledExecutorService，spring boot就不会创建默认的taskScheduler，所以这里显式指定)
+     */
+    @Bean
+    public ThreadPoolTaskScheduler precomputeTaskScheduler() {
+        ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(precompute.getThreads());
+        taskScheduler.setThreadNamePrefix("scheduling-");
+        WorkloadTaskDecorator taskDecorator = new WorkloadTaskDecorator(Workload.PRECOMPUTE);
+        // 装饰的是线程本身要执行的任务(取任务、执行任务的循环)，线程中执行的所有定时任务都是预计算
+        taskScheduler.setThreadFactory(runnable -> taskScheduler.newThread(taskDecorator.decorate(runnable)));
+        return taskScheduler;
+    }
+
+    @Bean
+    public SchedulingConfigurer precomputeSchedulingConfigurer(ThreadPoolTaskScheduler precomputeTaskScheduler) {
+        return taskRegistrar -> taskRegistrar.setTaskScheduler(precomputeTaskScheduler);
+    }
+
+    private HikariDataSource newPool(HikariDataSource interactiveDataSource, String name, Pool pool) {
+        HikariDataSource dataSource = new HikariDataSource();
+        interactiveDataSource.copyStateTo(dataSource);
+        dataSource.setPoolName(name);
+        dataSource.setMaximumPoolSize(pool.getMaximumPoolSize());
+        dataSource.setMinimumIdle(0); // 后台任务不常执行，空闲时不保留连接
+        dataSource.setConnectionTimeout(pool.getConnectionTimeout());
+        log.info("{} pool size: {}", name, pool.getMaximumPoolSize());
+        return dataSource;
+    }
+
+    private ThreadPoolTaskExecutor newExecutor(Workload workload, String threadNamePrefix, Pool pool) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(pool.getThreads());
+        executor.setMaxPoolSize(pool.getThreads());
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setTaskDecorator(new WorkloadTaskDecorator(workload));
+        // 队列满了由提交任务的线程自己执行(背压)，装饰过的任务还是以对应的工作负载执行
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,13 @@
+package com.xiaowc.partnermatch.constant;
+
+/**
+ * 队伍常量
+ */
+public class TeamConstant {
+
+    /**
+     * 可以返回给前端的列(不包含密码和逻辑删除字段)，列名和字段名相同
+     */
+    public static final String[] SAFE_COLUMNS = {"id", "name", "description", "maxNum", "expireTime", "userId",
+            "status", "createTime", "updateTime", "avatarUrl"};
+}
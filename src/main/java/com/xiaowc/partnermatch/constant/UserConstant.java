@@ -21,4 +21,12 @@ public class UserConstant {
      * 管理员权限
      */
     public static final int ADMIN_ROLE = 1;
+
+    // ---------- 查询 ----------
+
+    /**
+     * 可以返回给前端的列(不包含密码和逻辑删除字段)，列名和字段名相同
+     */
+    public static final String[] SAFE_COLUMNS = {"id", "username", "userAccount", "avatarUrl", "gender", "email",
+            "userStatus", "phone", "createTime", "updateTime", "userRole", "planetCode", "tags"};
 }
@@ -5,6 +5,9 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.xiaowc.partnermatch.common.BaseResponse;
 import com.xiaowc.partnermatch.common.DeleteRequest;
 import com.xiaowc.partnermatch.common.ErrorCode;
+import com.xiaowc.partnermatch.common.FieldSelection;
+import com.xiaowc.partnermatch.constant.TeamConstant;
+import com.xiaowc.partnermatch.convert.TeamConverter;
 import com.xiaowc.partnermatch.common.ResultUtils;
 import com.xiaowc.partnermatch.exception.BusinessException;
 import com.xiaowc.partnermatch.model.domain.Team;
@@ -19,8 +22,9 @@ import com.xiaowc.partnermatch.model.vo.TeamUserVO;
 import com.xiaowc.partnermatch.service.TeamService;
 import com.xiaowc.partnermatch.service.UserService;
 import com.xiaowc.partnermatch.service.UserTeamService;
+import com.xiaowc.partnermatch.team.ActiveTeamCache;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
@@ -34,6 +38,8 @@ import java.util.stream.Collectors;
 /**
  * 组队、队伍接口
  */
+// 每个接口的耗时直方图和分位数(p50/p95/p99)，按接口路径区分，指标名http.server.requests
+@Timed(histogram = true, percentiles = {0.5, 0.95, 0.99})
 @RestController // 适用于编写restful风格的api，返回值默认为json类型
 @RequestMapping("/team")
 // 这个注解的作用是允许跨域，默认允许的域名是*，所有域名都允许跨域，可以通过origins来选择允许跨域的地址
@@ -50,6 +56,9 @@ public class TeamController {
     @Resource
     private UserTeamService userTeamService;
 
+    @Resource
+    private ActiveTeamCache activeTeamCache;
+
     /**
      * 添加队伍
      * @param teamAddRequest 前端传来的队伍信息，是一些有必要传的信息，过滤了一部分
@@ -63,8 +72,7 @@ public class TeamController {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         User loginUser = userService.getLoginUser(request); // 获取当前用户的信息
-        Team team = new Team();
-        BeanUtils.copyProperties(teamAddRequest, team); // 将源对象中的值赋值给目的值对象
+        Team team = TeamConverter.INSTANCE.fromAddRequest(teamAddRequest); // 将源对象中的值赋值给目的值对象
         long teamId = teamService.addTeam(team, loginUser); // 往数据库中插入数据
         return ResultUtils.success(teamId);
     }
@@ -94,7 +102,7 @@ public class TeamController {
      * @return 返回查询的队伍
      */
     @GetMapping("/get")
-    public BaseResponse<Team> getTeamById(long id) {
+    public BaseResponse<TeamUserVO> getTeamById(long id) {
         if (id <= 0) { // 传入的队伍id小于0直接抛异常
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
@@ -102,7 +110,8 @@ public class TeamController {
         if (team == null) {
             throw new BusinessException(ErrorCode.NULL_ERROR);
         }
-        return ResultUtils.success(team);
+        // 返回脱敏后的队伍信息，不能带上队伍密码，这个接口的响应对所有人共用缓存(见ResponseCache)
+        return ResultUtils.success(TeamConverter.INSTANCE.toTeamUserVO(team));
     }
 
 //    /**
@@ -134,34 +143,51 @@ public class TeamController {
         if (teamQuery == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
+        teamQuery.setPaged(hasPageParams(request)); // 快照只能返回全部，要在判断能不能走快照之前设置
+        // 默认查询(公开的队伍，没有其他条件，不分页)直接从内存快照中取，创建人、已加入人数、是否已加入都已经填好了
+        if (activeTeamCache.supports(teamQuery)) {
+            Long loginUserId = null;
+            try {
+                loginUserId = userService.getLoginUser(request).getId();
+            } catch (Exception e) {
+
+            }
+            return ResultUtils.success(activeTeamCache.list(loginUserId));
+        }
         boolean isAdmin = userService.isAdmin(request); // 查看当前用户是否为管理员
         // 1.查询队伍列表
         List<TeamUserVO> teamList = teamService.listTeams(teamQuery, isAdmin); // 查询到符合条件的队伍的列表
         final List<Long> teamIdList = teamList.stream().map(TeamUserVO::getId).collect(Collectors.toList()); // 得到查询出来的队伍列表的id
+        FieldSelection fieldSelection = FieldSelection.parse(teamQuery.getFields()); // 不要是否已加入、已加入人数时不用查
         /**
          * 仅加入队伍和创建队伍的人能看到队伍操作按钮(listTeam接口要能获取我加入的队伍装填)
          *  方案一：前端查询我加入了哪些队伍列表，然后判断每个队伍id是否在列表中(前端要多发一次请求)
          *  方案二：在后端去做上述事情(推荐)
          */
         // 2.判断当前用户是否已加入该队伍
-        QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
-        try {
-            User loginUser = userService.getLoginUser(request); // 获取当前用户
-            userTeamQueryWrapper.eq("userId", loginUser.getId());
-            // 只需判断当前用户是否在上面查询出来的队伍中即可，因为要展示，未查询到的队伍自然展示不出来
-            userTeamQueryWrapper.in("teamId", teamIdList);
-            // 查询当前用户加入的队伍或者创建的队伍，便于后续前端标签的展示
-            List<UserTeam> userTeamList = userTeamService.list(userTeamQueryWrapper);
-            // 已加入的队伍id集合
-            Set<Long> hasJoinTeamIdSet = userTeamList.stream().map(UserTeam::getTeamId).collect(Collectors.toSet());
-            teamList.forEach(team -> {  // 遍历teamList(就是查询到的所有符合条件的队伍)，将含有当前用户id的hasJoin字段设为true，其他设为false
-                boolean hasJoin = hasJoinTeamIdSet.contains(team.getId());
-                team.setHasJoin(hasJoin);
-            });
-        } catch (Exception e) {
+        if (fieldSelection.contains("hasJoin")) {
+            QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
+            try {
+                User loginUser = userService.getLoginUser(request); // 获取当前用户
+                userTeamQueryWrapper.eq("userId", loginUser.getId());
+                // 只需判断当前用户是否在上面查询出来的队伍中即可，因为要展示，未查询到的队伍自然展示不出来
+                userTeamQueryWrapper.in("teamId", teamIdList);
+                // 查询当前用户加入的队伍或者创建的队伍，便于后续前端标签的展示
+                List<UserTeam> userTeamList = userTeamService.list(userTeamQueryWrapper);
+                // 已加入的队伍id集合
+                Set<Long> hasJoinTeamIdSet = userTeamList.stream().map(UserTeam::getTeamId).collect(Collectors.toSet());
+                teamList.forEach(team -> {  // 遍历teamList(就是查询到的所有符合条件的队伍)，将含有当前用户id的hasJoin字段设为true，其他设为false
+                    boolean hasJoin = hasJoinTeamIdSet.contains(team.getId());
+                    team.setHasJoin(hasJoin);
+                });
+            } catch (Exception e) {
 
+            }
         }
         // 3.查询当前加入该队伍的人数
+        if (!fieldSelection.contains("hasJoinNum")) {
+            return ResultUtils.success(teamList);
+        }
         QueryWrapper<UserTeam> userTeamJoinQueryWrapper = new QueryWrapper<>();
         userTeamJoinQueryWrapper.in("teamId", teamIdList); // 查询每个队伍的人数
         List<UserTeam> userTeamList = userTeamService.list(userTeamJoinQueryWrapper);
@@ -181,10 +207,13 @@ public class TeamController {
         if (teamQuery == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
-        Team team = new Team();
-        BeanUtils.copyProperties(teamQuery, team); // 将teamQuery的属性对象赋给team，从源对象中赋值给目的对象中
+        Team team = TeamConverter.INSTANCE.fromQuery(teamQuery); // 将teamQuery的属性对象赋给team，从源对象中赋值给目的对象中
         Page<Team> page = new Page<>(teamQuery.getPageNum(), teamQuery.getPageSize()); // 设置current和size分页信息
         QueryWrapper<Team> queryWrapper = new QueryWrapper<>(); // 设置查询条件
+        FieldSelection fieldSelection = FieldSelection.parse(teamQuery.getFields());
+        if (!fieldSelection.isAll()) { // 指定了返回字段时只查这些列
+            queryWrapper.select(fieldSelection.columns(TeamConstant.SAFE_COLUMNS, "id"));
+        }
         Page<Team> resultList = teamService.page(page, queryWrapper); // 查询符合条件的所有队伍，分页信息上面设置了
         return ResultUtils.success(resultList);
     }
@@ -253,6 +282,7 @@ public class TeamController {
         }
         User loginUser = userService.getLoginUser(request); // 获取登录用户
         teamQuery.setUserId(loginUser.getId()); // 队伍表中的userId指的是队长的id
+        teamQuery.setPaged(hasPageParams(request));
         // 上面利用队长的id可以查询到自己创建的队伍列表，从队伍表中去查询
         List<TeamUserVO> teamList = teamService.listTeams(teamQuery, true);
         return ResultUtils.success(teamList);
@@ -288,7 +318,15 @@ public class TeamController {
                 .collect(Collectors.groupingBy(UserTeam::getTeamId));
         List<Long> idList = new ArrayList<>(listMap.keySet());
         teamQuery.setIdList(idList);
+        teamQuery.setPaged(hasPageParams(request));
         List<TeamUserVO> teamList = teamService.listTeams(teamQuery, true);
         return ResultUtils.success(teamList);
     }
+
+    /**
+     * 请求中有没有带分页参数，PageRequest中的pageNum和pageSize有默认值，只能从请求参数中判断
+     */
+    private static boolean hasPageParams(HttpServletRequest request) {
+        return request.getParameter("pageNum") != null || request.getParameter("pageSize") != null;
+    }
 }
@@ -1,29 +1,45 @@
 package com.xiaowc.partnermatch.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.xiaowc.partnermatch.cache.RecommendUserCache;
 import com.xiaowc.partnermatch.common.BaseResponse;
 import com.xiaowc.partnermatch.common.ErrorCode;
+import com.xiaowc.partnermatch.common.FieldSelection;
 import com.xiaowc.partnermatch.common.ResultUtils;
 import com.xiaowc.partnermatch.constant.UserConstant;
+import com.xiaowc.partnermatch.datasource.ReadWriteContext;
+import com.xiaowc.partnermatch.datasource.Workload;
+import com.xiaowc.partnermatch.datasource.WorkloadContext;
 import com.xiaowc.partnermatch.exception.BusinessException;
 import com.xiaowc.partnermatch.model.domain.User;
 import com.xiaowc.partnermatch.model.request.UserLoginRequest;
 import com.xiaowc.partnermatch.model.request.UserRegisterRequest;
+import com.xiaowc.partnermatch.service.LoginStateService;
 import com.xiaowc.partnermatch.service.UserService;
+import com.xiaowc.partnermatch.utils.NdjsonWriter;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
+// 每个接口的耗时直方图和分位数(p50/p95/p99)，按接口路径区分，指标名http.server.requests
+@Timed(histogram = true, percentiles = {0.5, 0.95, 0.99})
 @RestController // 适用于编写restful风格的api，返回值默认为json类型，等价于@Controller+@ResponseBody
 @RequestMapping("/user")
 // 这个注解的作用是允许跨域，默认允许的域名是*，所有域名都允许跨域，可以通过origins来选择允许跨域的地址
@@ -35,7 +51,27 @@ public class UserController {
     private UserService userService;
 
     @Resource
-    private RedisTemplate<String, Object> redisTemplate;
+    private RecommendUserCache recommendUserCache;
+
+    @Resource
+    private LoginStateService loginStateService;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 流式导出时每写多少行flush一次
+     */
+    private static final int NDJSON_FLUSH_EVERY = 100;
+
+    /**
+     * 同时进行的流式导出的许可，一个导出会一直占着一个数据库连接直到写完
+     */
+    private final Semaphore exportPermits;
+
+    public UserController(@Value("${xiaowc.user.export-max-concurrent:2}") int exportMaxConcurrent) {
+        this.exportPermits = new Semaphore(exportMaxConcurrent);
+    }
 
     /**
      * 用户注册
@@ -112,9 +148,8 @@ public class UserController {
      */
     @GetMapping("/current")
     public BaseResponse<User> getCurrentUser(HttpServletRequest request) {
-        // session中存储的是用户登录的凭据
-        Object userObj = request.getSession().getAttribute(UserConstant.USER_LOGIN_STATE); // session中的值相当于是一个缓存
-        User currentUser = (User) userObj;
+        // session(或令牌)中存储的是用户登录的凭据
+        User currentUser = loginStateService.getLoginUser(request); // session中的值相当于是一个缓存
         if (currentUser == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN);
         }
@@ -130,28 +165,25 @@ public class UserController {
     }
 
     /**
-     * 根据用户名查询用户
+     * 根据用户名查询用户，支持前缀和中间匹配，按匹配程度排序并分页
      * @param username 用户名
+     * @param pageNum 第几页
+     * @param pageSize 每页多少条
      * @return
      */
     @GetMapping("/search")
-    public BaseResponse<List<User>> searchUsers(String username, HttpServletRequest request) {
+    public BaseResponse<List<User>> searchUsers(String username,
+                                                @RequestParam(defaultValue = "1") long pageNum,
+                                                @RequestParam(defaultValue = "20") long pageSize,
+                                                @RequestParam(required = false) String fields,
+                                                HttpServletRequest request) {
         // 判断是否为管理员，仅管理员可查询
         if (!userService.isAdmin(request)) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR); // 改进：利用自定义的全局异常类来处理
         }
-        // 用户已登录，并且是管理员权限
-        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-        if (StringUtils.isNotBlank(username)) {
-            queryWrapper.like("username", username); // 模糊查询
-        }
-        // 应该返回脱敏后的信息
-        List<User> userList = userService.list(queryWrapper); // 查询用户列表
-        // 遍历userList将里面的userPassword置为空脱敏，再转换成列表进行返回
-        List<User> list = userList.stream().map(user -> {
-            user.setUserPassword(null);
-            return userService.getSafetyUser(user);
-        }).collect(Collectors.toList());
+        // 用户已登录，并且是管理员权限，返回脱敏后的信息
+        // fields：只要部分字段，比如 fields=id,username,avatarUrl，只查这些列，也只返回这些字段
+        List<User> list = userService.searchUsersByUsername(username, pageNum, pageSize, FieldSelection.parse(fields));
         //return new BaseResponse<>(0, list, "ok");
         return ResultUtils.success(list); // 优化后
     }
@@ -159,18 +191,55 @@ public class UserController {
     /**
      * 根据标签搜索用户
      * @param tagNameList 前端传入过来的标签
+     * @param fields 要返回的字段，逗号分隔，为空返回全部字段
      * @return 返回用户信息
      */
     @GetMapping("/search/tags")
-    public BaseResponse<List<User>> searchUsersByTags(@RequestParam(required = false) List<String> tagNameList) { // 表示参数不是必填项
+    public BaseResponse<List<User>> searchUsersByTags(@RequestParam(required = false) List<String> tagNameList, // 表示参数不是必填项
+                                                      @RequestParam(required = false) String fields) {
         if (CollectionUtils.isEmpty(tagNameList)) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         // 我们这里使用的是内存查询，具体看service
-        List<User> userList = userService.searchUsersByTags(tagNameList);
+        List<User> userList = userService.searchUsersByTags(tagNameList, FieldSelection.parse(fields));
         return ResultUtils.success(userList);
     }
 
+    /**
+     * 流式导出按用户名搜索的结果(仅管理员)，NDJSON格式，每行一个用户
+     *   不分页，流式结果集边查边写(每读出一行交给ResultHandler)，内存占用和结果条数无关，查出第一个用户就开始返回
+     * @param username 用户名关键词，为空导出所有用户
+     * @param fields 要返回的字段，逗号分隔，为空返回全部字段
+     * @return
+     */
+    @GetMapping("/search/stream")
+    public ResponseEntity<StreamingResponseBody> streamSearchUsers(String username,
+                                                                   @RequestParam(required = false) String fields,
+                                                                   HttpServletRequest request) {
+        // 开始写响应之后就不能再返回错误信息了，所以参数和权限要在这之前校验
+        if (!userService.isAdmin(request)) {
+            throw new BusinessException(ErrorCode.NO_AUTH);
+        }
+        FieldSelection fieldSelection = FieldSelection.parse(fields);
+        return ndjson(fieldSelection, consumer -> userService.streamUsersByUsername(username, fieldSelection, consumer));
+    }
+
+    /**
+     * 流式导出根据标签搜索的结果，NDJSON格式，每行一个用户
+     * @param tagNameList 前端传入过来的标签
+     * @param fields 要返回的字段，逗号分隔，为空返回全部字段
+     * @return
+     */
+    @GetMapping("/search/tags/stream")
+    public ResponseEntity<StreamingResponseBody> streamUsersByTags(@RequestParam(required = false) List<String> tagNameList,
+                                                                   @RequestParam(required = false) String fields) {
+        if (CollectionUtils.isEmpty(tagNameList)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        FieldSelection fieldSelection = FieldSelection.parse(fields);
+        return ndjson(fieldSelection, consumer -> userService.streamUsersByTags(tagNameList, fieldSelection, consumer));
+    }
+
     /**
      * 分页、redis缓存
      *  1.第一次从数据库中查询数据，会比较慢，后面直接从缓存中取数据，比较快，可以设置缓存的过期时间，因为不可能每次推荐的信息都是一样的
@@ -212,31 +281,36 @@ public class UserController {
      *      2.模拟触发(手动触发)
      * @param pageSize 每一页的大小
      * @param pageNum 当前在第几页
+     * @param fields 要返回的字段，逗号分隔，为空返回全部字段
      * @param request
      * @return
      */
     // TODO: 2023/1/12 推荐多个，未实现
     @GetMapping("/recommend")
-    public BaseResponse<Page<User>> recommendUsers(long pageSize, long pageNum, HttpServletRequest request) {
+    public BaseResponse<Page<User>> recommendUsers(long pageSize, long pageNum,
+                                                   @RequestParam(required = false) String fields,
+                                                   HttpServletRequest request) {
         // 首先得到当前登录的用户
         User loginUser = userService.getLoginUser(request);
-        // 因为不同用户看到的数据不同，所以需要传入用户的key来进行区分，这里我们使用：xiaowc:user:recommend:userId
-        String redisKey = String.format("xiaowc:user:recommend:%s", loginUser.getId());
-        ValueOperations valueOperations = redisTemplate.opsForValue();
+        FieldSelection fieldSelection = FieldSelection.parse(fields);
+        // 因为不同用户看到的数据不同，所以需要传入用户的key来进行区分，key中还带上了分页参数、返回字段和版本号，见RecommendUserCache
         // 如果有缓存，直接从缓存中读取数据
-        Page<User> userPage = (Page<User>) valueOperations.get(redisKey);
+        // 查数据库之前取版本号，查完之后用同一个版本号写缓存，查询期间用户有变化也不会写到新版本的key中
+        String cacheVersion = recommendUserCache.version();
+        Page<User> userPage = recommendUserCache.get(cacheVersion, loginUser.getId(), pageNum, pageSize, fieldSelection);
         if (userPage != null) {
             return ResultUtils.success(userPage);
         }
         // 如果没有缓存，直接从数据库中查询数据
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-        Page<User> userList = userService.page(new Page<>(pageNum, pageSize), queryWrapper); // 分页查询
-        // 从数据库中查询到数据之后，将数据写入缓存中
-        try {
-            valueOperations.set(redisKey, userPage, 30000, TimeUnit.MILLISECONDS); // 30s过期
-        } catch (Exception e) {
-            log.error("redis set key error", e);
+        if (!fieldSelection.isAll()) { // 指定了返回字段时只查这些列
+            queryWrapper.select(fieldSelection.columns(UserConstant.SAFE_COLUMNS, "id"));
         }
+        // 分页查询，走主库：失效之后第一个来的用户负责重新加载，从延迟的从库读会把修改之前的数据写进新版本的缓存
+        Page<User> userList = ReadWriteContext.callOnPrimary(
+                () -> userService.page(new Page<>(pageNum, pageSize), queryWrapper));
+        // 从数据库中查询到数据之后，将数据写入缓存中，用户有变化时通过版本号失效
+        recommendUserCache.put(cacheVersion, loginUser.getId(), pageNum, pageSize, fieldSelection, userList);
         return ResultUtils.success(userList);
     }
 
@@ -281,15 +355,46 @@ public class UserController {
     /**
      * 用户匹配：获取最匹配的用户，根据分数来进行匹配，用到动态规划
      * @param num 匹配多少个用户
+     * @param fields 要返回的字段，逗号分隔，为空返回全部字段
      * @param request
      * @return 返回匹配到的用户
      */
     @GetMapping("/match")
-    public BaseResponse<List<User>> matchUsers(long num, HttpServletRequest request) {
+    public BaseResponse<List<User>> matchUsers(long num, @RequestParam(required = false) String fields,
+                                               HttpServletRequest request) {
         if (num <= 0 || num > 20) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
         User loginUser = userService.getLoginUser(request);
-        return ResultUtils.success(userService.matchUsers(num, loginUser));
+        return ResultUtils.success(userService.matchUsers(num, loginUser, FieldSelection.parse(fields)));
+    }
+
+    /**
+     * 把流式查询的用户写成NDJSON响应，在异步线程中执行(见WebMvcConfg)，不占用tomcat的请求线程
+     *   导出要读很久，以批量任务的工作负载执行，用批量任务的连接池，不占接口请求的连接；
+     *   同时进行的导出超过上限时直接返回429(还没开始写响应，可以返回错误信息)
+     * @param fieldSelection 要返回的字段
+     * @param query 流式查询，每查出一个用户就交给传进去的consumer
+     * @return
+     */
+    private ResponseEntity<StreamingResponseBody> ndjson(FieldSelection fieldSelection, Consumer<Consumer<User>> query) {
+        if (!exportPermits.tryAcquire()) {
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUESTS, "导出的人太多，请稍后重试");
+        }
+        ObjectWriter objectWriter = objectMapper.writer(fieldSelection.filters(FieldSelection.USER_FILTER));
+        StreamingResponseBody body = outputStream -> {
+            try (NdjsonWriter writer = new NdjsonWriter(outputStream, objectWriter, NDJSON_FLUSH_EVERY)) {
+                WorkloadContext.run(Workload.BATCH, () -> query.accept(user -> {
+                    try {
+                        writer.write(user);
+                    } catch (IOException e) { // 客户端断开了，抛出去结束查询
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            } finally {
+                exportPermits.release();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 }
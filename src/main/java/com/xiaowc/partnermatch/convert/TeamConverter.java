@@ -0,0 +1,40 @@
+package com.xiaowc.partnermatch.convert;
+
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.model.dto.TeamQuery;
+import com.xiaowc.partnermatch.model.request.TeamAddRequest;
+import com.xiaowc.partnermatch.model.request.TeamUpdateRequest;
+import com.xiaowc.partnermatch.model.vo.TeamUserVO;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+import org.mapstruct.factory.Mappers;
+
+/**
+ * 队伍对象转换，mapstruct在编译时生成实现类(TeamConverterImpl)，代替BeanUtils.copyProperties
+ *   BeanUtils.copyProperties每次都要通过反射获取属性描述、调用get/set方法，队伍列表这种接口每个队伍都要转换，开销很明显
+ */
+@Mapper(unmappedTargetPolicy = ReportingPolicy.IGNORE)
+public interface TeamConverter {
+
+    TeamConverter INSTANCE = Mappers.getMapper(TeamConverter.class);
+
+    /**
+     * 队伍 -> 返回给前端的队伍信息，创建人、已加入人数、是否已加入由调用方填充
+     */
+    @Mapping(target = "createUser", ignore = true)
+    @Mapping(target = "hasJoinNum", ignore = true)
+    @Mapping(target = "hasJoin", ignore = true)
+    TeamUserVO toTeamUserVO(Team team);
+
+    /**
+     * 拷贝一份队伍信息，创建人是同一个对象
+     */
+    TeamUserVO copy(TeamUserVO teamUserVO);
+
+    Team fromAddRequest(TeamAddRequest teamAddRequest);
+
+    Team fromUpdateRequest(TeamUpdateRequest teamUpdateRequest);
+
+    Team fromQuery(TeamQuery teamQuery);
+}
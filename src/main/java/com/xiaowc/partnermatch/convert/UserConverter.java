@@ -0,0 +1,39 @@
+package com.xiaowc.partnermatch.convert;
+
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.model.vo.UserVO;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+import org.mapstruct.factory.Mappers;
+
+/**
+ * 用户对象转换，mapstruct在编译时生成实现类(UserConverterImpl)，里面就是普通的get/set，没有反射
+ */
+@Mapper(unmappedTargetPolicy = ReportingPolicy.IGNORE)
+public interface UserConverter {
+
+    UserConverter INSTANCE = Mappers.getMapper(UserConverter.class);
+
+    /**
+     * 用户脱敏：只复制允许返回给前端的字段，密码、逻辑删除等字段不复制
+     *   ignoreByDefault：以后User中新增的字段默认不会返回给前端，需要的话在这里显式加上
+     */
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "id", source = "id")
+    @Mapping(target = "username", source = "username")
+    @Mapping(target = "userAccount", source = "userAccount")
+    @Mapping(target = "avatarUrl", source = "avatarUrl")
+    @Mapping(target = "gender", source = "gender")
+    @Mapping(target = "email", source = "email")
+    @Mapping(target = "userStatus", source = "userStatus")
+    @Mapping(target = "phone", source = "phone")
+    @Mapping(target = "createTime", source = "createTime")
+    @Mapping(target = "userRole", source = "userRole")
+    @Mapping(target = "planetCode", source = "planetCode")
+    @Mapping(target = "tags", source = "tags")
+    User toSafetyUser(User user);
+
+    UserVO toUserVO(User user);
+}
@@ -0,0 +1,143 @@
+package com.xiaowc.partnermatch.datasource;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.util.function.Supplier;
+
+/**
+ * 读写分离的线程上下文：当前这条sql能不能走从库，当前用户是不是刚写过数据
+ *
+ * 读己之写(read-your-writes)：用户修改了数据之后马上去查，从库可能还没同步过来，会查到旧数据，
+ * 所以写过数据之后的一段时间内，这个用户的请求都走主库
+ *   1.同一个请求中：写完之后后面的查询都走主库
+ *   2.之后的请求：写的时候在响应中设置cookie(值为走主库的截止时间)，请求带着这个cookie来就走主库，
+ *     cookie存在客户端，请求落到任何一台服务器上都有效(见ReadYourWritesFilter)
+ *   3.刷新缓存、处理领域事件时的查询：不是发起修改的那个请求，没有cookie，要显式指定走主库(runOnPrimary)，
+ *     否则可能从延迟的从库读到修改之前的数据，再把旧数据放进缓存
+ */
+public final class ReadWriteContext {
+
+    /**
+     * 记录走主库截止时间的cookie
+     */
+    public static final String STICKY_COOKIE = "xiaowc_rw";
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private ReadWriteContext() {
+    }
+
+    /**
+     * 开始一次可以走从库的查询(没有事务的select)，要和endRead成对调用
+     */
+    public static void beginRead() {
+        STATE.get().reads++;
+    }
+
+    public static void endRead() {
+        STATE.get().reads--;
+    }
+
+    /**
+     * 当前的查询能不能走从库(不考虑读己之写)
+     */
+    public static boolean isReadHinted() {
+        return STATE.get().reads > 0;
+    }
+
+    /**
+     * 在主库上执行任务，任务中的查询都走主库(不管有没有事务、是不是select)，执行完恢复原来的路由
+     */
+    public static void runOnPrimary(Runnable task) {
+        callOnPrimary(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * 在主库上执行任务，任务中的查询都走主库(不管有没有事务、是不是select)，执行完恢复原来的路由
+     */
+    public static <T> T callOnPrimary(Supplier<T> task) {
+        State state = STATE.get();
+        state.primaries++;
+        try {
+            return task.get();
+        } finally {
+            state.primaries--;
+        }
+    }
+
+    /**
+     * 当前是不是在runOnPrimary/callOnPrimary中
+     */
+    public static boolean isPrimaryForced() {
+        return STATE.get().primaries > 0;
+    }
+
+    /**
+     * 当前用户在截止时间之前要走主库
+     */
+    public static boolean isSticky(long now) {
+        return STATE.get().stickyUntil > now;
+    }
+
+    /**
+     * 请求开始时调用，从cookie中恢复走主库的截止时间
+     * @param stickyUntil 走主库的截止时间，没有为0
+     * @param response 写数据时在这个响应中设置cookie，不是http请求为空
+     */
+    public static void beginRequest(long stickyUntil, HttpServletResponse response) {
+        State state = STATE.get();
+        state.stickyUntil = stickyUntil;
+        state.response = response;
+    }
+
+    /**
+     * 请求结束时调用，清空线程上下文(线程是复用的)
+     */
+    public static void endRequest() {
+        STATE.remove();
+    }
+
+    /**
+     * 写了数据：接下来stickyMillis毫秒内这个用户的查询都走主库
+     * @param now 当前时间
+     * @param stickyMillis 走主库的时长
+     */
+    public static void markWrite(long now, long stickyMillis) {
+        State state = STATE.get();
+        long stickyUntil = now + stickyMillis;
+        // 同一个请求中连续写很多次，cookie只设置一次(有效期差一点没关系)
+        boolean needCookie = state.stickyUntil < now + stickyMillis / 2;
+        state.stickyUntil = stickyUntil;
+        HttpServletResponse response = state.response;
+        if (needCookie && response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(STICKY_COOKIE, String.valueOf(stickyUntil));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, stickyMillis / 1000));
+            response.addCookie(cookie);
+        }
+    }
+
+    private static final class State {
+
+        /**
+         * 嵌套的可以走从库的查询数
+         */
+        private int reads;
+
+        /**
+         * 嵌套的必须走主库的任务数
+         */
+        private int primaries;
+
+        /**
+         * 走主库的截止时间
+         */
+        private long stickyUntil;
+
+        private HttpServletResponse response;
+    }
+}
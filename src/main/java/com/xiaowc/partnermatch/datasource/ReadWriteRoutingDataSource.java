@@ -0,0 +1,236 @@
+package com.xiaowc.partnermatch.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 读写分离的数据源：只读的查询走从库，写操作和事务走主库
+ *
+ * 怎么判断走哪个库？(每次获取连接的时候判断)
+ *   1.开启了事务(@Transactional)：只读事务(readOnly = true)可以走从库，其他事务都走主库
+ *   2.没有事务：mybatis的select可以走从库(ReadWriteRoutingInterceptor设置)，其他都走主库
+ *   3.用户刚写过数据(ReadWriteContext)：都走主库，避免读不到自己刚写的数据
+ *   4.显式指定走主库(ReadWriteContext.runOnPrimary，比如刷新缓存、处理领域事件)：优先于上面所有规则
+ *   5.从库轮询，延迟超过阈值或者检查不了延迟的从库不用，没有可用的从库就走主库
+ *
+ * 注意：外面要包一层LazyConnectionDataSourceProxy，开启事务时不会马上获取连接，
+ *   等到执行第一条sql时事务的只读标记已经设置好了，才能判断走哪个库
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public static final String PRIMARY = "primary";
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * 从库延迟超过这个值(毫秒)就不走这个从库
+     */
+    private final long maxLagMillis;
+
+    /**
+     * 查询从库延迟的sql和延迟(秒)所在的列
+     */
+    private final String lagQuery;
+
+    private final String lagColumn;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder primaryRoutes = new LongAdder();
+
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicaDataSources,
+                                      long maxLagMillis, String lagQuery, String lagColumn) {
+        this.maxLagMillis = maxLagMillis;
+        this.lagQuery = lagQuery;
+        this.lagColumn = lagColumn;
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(PRIMARY, primary);
+        replicaDataSources.forEach((name, dataSource) -> {
+            targetDataSources.put(name, dataSource);
+            replicas.add(new Replica(name, dataSource));
+        });
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (ReadWriteContext.isPrimaryForced()) {
+            return routePrimary();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                return routePrimary();
+            }
+        } else if (!ReadWriteContext.isReadHinted()) {
+            return routePrimary();
+        }
+        if (ReadWriteContext.isSticky(System.currentTimeMillis())) {
+            return routePrimary();
+        }
+        Replica replica = nextHealthyReplica();
+        if (replica == null) {
+            return routePrimary();
+        }
+        replica.routes.increment();
+        return replica.name;
+    }
+
+    private String routePrimary() {
+        primaryRoutes.increment();
+        return PRIMARY;
+    }
+
+    /**
+     * 轮询找一个可用的从库
+     * @return 没有可用的从库返回null
+     */
+    private Replica nextHealthyReplica() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = next.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (isHealthy(replica)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private boolean isHealthy(Replica replica) {
+        long lagMillis = replica.lagMillis;
+        return lagMillis >= 0 && lagMillis <= maxLagMillis;
+    }
+
+    /**
+     * 检查每个从库的延迟，定时调用(ReplicaLagJob)
+     * 查询失败、没有复制状态、复制线程停了(延迟为null)都认为从库不可用
+     */
+    public void checkReplicaLag() {
+        for (Replica replica : replicas) {
+            long lagMillis = Replica.UNKNOWN_LAG;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                if (resultSet.next()) {
+                    long lagSeconds = resultSet.getLong(lagColumn);
+                    if (!resultSet.wasNull()) {
+                        lagMillis = lagSeconds * 1000;
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("check replica lag error, replica: {}", replica.name, e);
+            }
+            updateLag(replica.name, lagMillis);
+        }
+    }
+
+    /**
+     * 更新从库的延迟
+     * @param lagMillis 延迟(毫秒)，小于0表示不可用
+     */
+    public void updateLag(String name, long lagMillis) {
+        for (Replica replica : replicas) {
+            if (replica.name.equals(name)) {
+                boolean wasHealthy = isHealthy(replica);
+                replica.lagMillis = lagMillis;
+                if (wasHealthy != isHealthy(replica)) {
+                    log.warn("replica {} is {} now, lag {}ms", name, wasHealthy ? "unhealthy" : "healthy", lagMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * 所有从库
+     */
+    public List<DataSource> getReplicaDataSources() {
+        List<DataSource> dataSources = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            dataSources.add(replica.dataSource);
+        }
+        return dataSources;
+    }
+
+    /**
+     * 监控指标：每个从库的延迟，走主库和每个从库的次数
+     */
+    public void bindMetrics(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("xiaowc.datasource.routes", primaryRoutes, LongAdder::sum)
+                .description("读写分离获取连接的次数")
+                .tag("target", PRIMARY)
+                .register(meterRegistry);
+        for (Replica replica : replicas) {
+            FunctionCounter.builder("xiaowc.datasource.routes", replica.routes, LongAdder::sum)
+                    .description("读写分离获取连接的次数")
+                    .tag("target", replica.name)
+                    .register(meterRegistry);
+            Gauge.builder("xiaowc.datasource.replica.lag", replica, r -> r.lagMillis)
+                    .description("从库的延迟(毫秒)，-1表示不可用")
+                    .tag("replica", replica.name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 关闭从库的连接池，主库是单独的bean，由spring关闭
+     */
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) replica.dataSource).close();
+                } catch (Exception e) {
+                    log.warn("close replica {} error", replica.name, e);
+                }
+            }
+        }
+    }
+
+    private static final class Replica {
+
+        /**
+         * 还没检查过或者检查不了延迟
+         */
+        private static final long UNKNOWN_LAG = -1;
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        /**
+         * 最近一次检查的延迟(毫秒)，还没检查过之前不可用
+         */
+        private volatile long lagMillis = UNKNOWN_LAG;
+
+        private final LongAdder routes = new LongAdder();
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
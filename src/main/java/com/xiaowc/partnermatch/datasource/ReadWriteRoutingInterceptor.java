@@ -0,0 +1,56 @@
+package com.xiaowc.partnermatch.datasource;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 读写分离拦截器
+ *   1.没有事务的select：标记为可以走从库(连接是在执行sql的时候才获取的，见ReadWriteRoutingDataSource)
+ *   2.insert、update、delete：标记用户写过数据，接下来一段时间内走主库(读己之写)
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+public class ReadWriteRoutingInterceptor implements Interceptor {
+
+    /**
+     * 写过数据之后走主库的时长(毫秒)
+     */
+    private final long stickyMillis;
+
+    public ReadWriteRoutingInterceptor(long stickyMillis) {
+        this.stickyMillis = stickyMillis;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        if (mappedStatement.getSqlCommandType() != SqlCommandType.SELECT) {
+            Object result = invocation.proceed();
+            ReadWriteContext.markWrite(System.currentTimeMillis(), stickyMillis);
+            return result;
+        }
+        // 事务中的连接在事务开始时就确定了，由事务的只读标记决定
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return invocation.proceed();
+        }
+        ReadWriteContext.beginRead();
+        try {
+            return invocation.proceed();
+        } finally {
+            ReadWriteContext.endRead();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.xiaowc.partnermatch.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 读己之写过滤器：从cookie中恢复走主库的截止时间，请求结束后清空线程上下文
+ * 用户写过数据之后，在截止时间之前的请求都走主库，见ReadWriteContext
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    /**
+     * 写过数据之后走主库的时长(毫秒)，cookie是客户端传的，截止时间不能超过现在加上这个时长
+     */
+    private final long stickyMillis;
+
+    public ReadYourWritesFilter(long stickyMillis) {
+        this.stickyMillis = stickyMillis;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long stickyUntil = Math.min(parseStickyUntil(request), System.currentTimeMillis() + stickyMillis);
+        ReadWriteContext.beginRequest(stickyUntil, response);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadWriteContext.endRequest();
+        }
+    }
+
+    private static long parseStickyUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (ReadWriteContext.STICKY_COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,26 @@
+package com.xiaowc.partnermatch.datasource;
+
+/**
+ * 工作负载：不同的工作负载使用各自的数据库连接池和线程池，互相隔离(舱壁)
+ *
+ * 为什么需要？
+ *   批量导入、缓存预热这些后台任务和接口请求共用一个连接池时，后台任务一下子占满连接，
+ *   接口请求拿不到连接只能排队，接口的p99被拖高，甚至超时失败
+ */
+public enum Workload {
+
+    /**
+     * 接口请求，默认的工作负载
+     */
+    INTERACTIVE,
+
+    /**
+     * 批量任务：批量导入数据等
+     */
+    BATCH,
+
+    /**
+     * 预计算：定时任务、缓存预热、快照重建等
+     */
+    PRECOMPUTE
+}
@@ -0,0 +1,47 @@
+package com.xiaowc.partnermatch.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * 当前线程的工作负载，没有设置的是接口请求(INTERACTIVE)
+ * 一般不用直接设置：批量任务和预计算的线程池、定时任务的线程会自动设置，见WorkloadTaskDecorator
+ */
+public final class WorkloadContext {
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    private WorkloadContext() {
+    }
+
+    public static Workload current() {
+        Workload workload = CURRENT.get();
+        return workload == null ? Workload.INTERACTIVE : workload;
+    }
+
+    /**
+     * 以指定的工作负载执行任务，执行完恢复原来的工作负载
+     */
+    public static void run(Workload workload, Runnable task) {
+        call(workload, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * 以指定的工作负载执行任务，执行完恢复原来的工作负载
+     */
+    public static <T> T call(Workload workload, Supplier<T> task) {
+        Workload previous = CURRENT.get();
+        CURRENT.set(workload);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.xiaowc.partnermatch.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按工作负载选择连接池的数据源：接口请求、批量任务、预计算各用各的连接池
+ * 后台任务最多只能占满自己的连接池，不会影响接口请求
+ */
+@Slf4j
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private final Map<Workload, DataSource> dataSources;
+
+    /**
+     * @param dataSources 每个工作负载的连接池，必须有INTERACTIVE，没有配置的工作负载使用INTERACTIVE的连接池
+     */
+    public WorkloadRoutingDataSource(Map<Workload, DataSource> dataSources) {
+        this.dataSources = new EnumMap<>(dataSources);
+        DataSource interactive = dataSources.get(Workload.INTERACTIVE);
+        if (interactive == null) {
+            throw new IllegalArgumentException("interactive data source is required");
+        }
+        setTargetDataSources(new HashMap<>(dataSources));
+        setDefaultTargetDataSource(interactive);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return WorkloadContext.current();
+    }
+
+    /**
+     * 工作负载对应的连接池
+     */
+    public DataSource getDataSource(Workload workload) {
+        return dataSources.getOrDefault(workload, dataSources.get(Workload.INTERACTIVE));
+    }
+
+    /**
+     * 关闭后台任务的连接池，接口请求的连接池是单独的bean，由spring关闭
+     */
+    @Override
+    public void close() {
+        dataSources.forEach((workload, dataSource) -> {
+            if (workload != Workload.INTERACTIVE && dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) dataSource).close();
+                } catch (Exception e) {
+                    log.warn("close {} data source error", workload, e);
+                }
+            }
+        });
+    }
+}
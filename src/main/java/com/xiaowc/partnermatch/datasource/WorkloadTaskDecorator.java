@@ -0,0 +1,21 @@
+package com.xiaowc.partnermatch.datasource;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * 线程池中的任务以线程池对应的工作负载执行，不管是哪个线程提交的
+ * (包括队列满了之后由提交任务的线程自己执行的情况)
+ */
+public class WorkloadTaskDecorator implements TaskDecorator {
+
+    private final Workload workload;
+
+    public WorkloadTaskDecorator(Workload workload) {
+        this.workload = workload;
+    }
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return () -> WorkloadContext.run(workload, runnable);
+    }
+}
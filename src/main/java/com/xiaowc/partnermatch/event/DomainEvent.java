@@ -0,0 +1,96 @@
+package com.xiaowc.partnermatch.event;
+
+/**
+ * 领域事件：用户或者队伍发生了变化，缓存了这些数据的地方监听后删除或刷新缓存
+ *
+ * 事件只带类型和id，监听方需要最新的数据自己去查，所以事件丢了或者重复了都不会出现错误的数据
+ */
+public class DomainEvent {
+
+    /**
+     * 事件类型
+     */
+    public enum Type {
+        USER_CREATED,
+        USER_UPDATED,
+        TEAM_CREATED,
+        TEAM_UPDATED,
+        /**
+         * 有人加入或者退出了队伍
+         */
+        TEAM_MEMBERS_CHANGED,
+        TEAM_DELETED;
+
+        public boolean isUserEvent() {
+            return this == USER_CREATED || this == USER_UPDATED;
+        }
+
+        public boolean isTeamEvent() {
+            return !isUserEvent();
+        }
+    }
+
+    private final Type type;
+
+    /**
+     * 用户事件是用户id，队伍事件是队伍id
+     */
+    private final long id;
+
+    /**
+     * 是否是本服务器上发生的修改，为false表示是通过redis从其他服务器收到的
+     */
+    private final boolean local;
+
+    public DomainEvent(Type type, long id, boolean local) {
+        this.type = type;
+        this.id = id;
+        this.local = local;
+    }
+
+    public static DomainEvent of(Type type, long id) {
+        return new DomainEvent(type, id, true);
+    }
+
+    /**
+     * 编码成在redis频道中传输的消息，格式：类型:id
+     */
+    public String encode() {
+        return type.name() + ":" + id;
+    }
+
+    /**
+     * 解析其他服务器发来的消息
+     * @param message 类型:id
+     * @return 格式不对返回null
+     */
+    public static DomainEvent decode(String message) {
+        int index = message.indexOf(':');
+        if (index < 0) {
+            return null;
+        }
+        try {
+            return new DomainEvent(Type.valueOf(message.substring(0, index)),
+                    Long.parseLong(message.substring(index + 1)), false);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public boolean isLocal() {
+        return local;
+    }
+
+    @Override
+    public String toString() {
+        return "DomainEvent{" + encode() + (local ? "" : ", remote") + "}";
+    }
+}
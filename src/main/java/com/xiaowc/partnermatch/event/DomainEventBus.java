@@ -0,0 +1,109 @@
+package com.xiaowc.partnermatch.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * 领域事件总线：修改了用户或者队伍之后发布事件，通知本服务器和其他服务器上的缓存失效
+ *
+ * 实现：
+ *   1.在事务中发布的事件，等事务提交之后才分发，事务回滚了就不分发，避免缓存读到没有提交的数据
+ *   2.本服务器：用spring的事件机制分发，监听方在方法上加 @EventListener 接收 DomainEvent
+ *   3.其他服务器：通过redis的发布订阅广播，收到后再用spring的事件机制分发(DomainEvent.isLocal()为false)
+ * 注意：redis的发布订阅不保证送达，所以缓存仍然要设置过期时间兜底，只是可以设置得长一些
+ */
+@Component
+@Slf4j
+public class DomainEventBus implements MessageListener {
+
+    /**
+     * 广播领域事件的频道
+     */
+    public static final String CHANNEL = "xiaowc:domain:event";
+
+    @Resource
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource(name = "redisMessageListenerContainer") // spring session也有一个监听容器，这里按名称注入
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 当前服务器的标识，收到自己发的消息时不用处理
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 发布事件，在事务中调用时等事务提交之后才分发
+     * @param type 事件类型
+     * @param id 用户id或者队伍id
+     */
+    public void publish(DomainEvent.Type type, long id) {
+        DomainEvent event = DomainEvent.of(type, id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(event);
+                }
+            });
+        } else {
+            dispatch(event);
+        }
+    }
+
+    /**
+     * 收到其他服务器的事件，消息格式：服务器标识:类型:id
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        if (index < 0 || nodeId.equals(body.substring(0, index))) { // 自己发的消息不用处理
+            return;
+        }
+        DomainEvent event = DomainEvent.decode(body.substring(index + 1));
+        if (event == null) {
+            log.warn("invalid domain event: {}", body);
+            return;
+        }
+        publishLocally(event);
+    }
+
+    private void dispatch(DomainEvent event) {
+        publishLocally(event);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + ":" + event.encode());
+        } catch (Exception e) {
+            log.error("publish domain event error, {}", event, e);
+        }
+    }
+
+    private void publishLocally(DomainEvent event) {
+        try {
+            applicationEventPublisher.publishEvent(event);
+        } catch (Exception e) { // 监听方出错不影响业务，缓存还有过期时间兜底
+            log.error("handle domain event error, {}", event, e);
+        }
+    }
+}
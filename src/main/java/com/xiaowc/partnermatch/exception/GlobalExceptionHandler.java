@@ -3,17 +3,22 @@ package com.xiaowc.partnermatch.exception;
 import com.xiaowc.partnermatch.common.BaseResponse;
 import com.xiaowc.partnermatch.common.ErrorCode;
 import com.xiaowc.partnermatch.common.ResultUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+
 /**
  * 编写全局异常处理器
  *
  * 作用：
  *   1.捕获代码中所有的异常，内部消化，集中处理，让前端得到更详细的业务报错/信息
  *   2.同时屏蔽掉项目框架本身的异常(不暴露服务器内部状态)
- *   3.集中处理，比如记录日志
+ *   3.集中处理，比如记录日志、按错误码统计异常次数(指标名xiaowc.errors，在/api/actuator/prometheus中查看)
  * 实现：
  *   1.Spring AOP: 在调用方法前后进行额外的处理
  */
@@ -21,14 +26,24 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @Slf4j
 public class GlobalExceptionHandler {
 
+    /**
+     * 请求属性：这个请求是因为服务端扛不住失败的(响应的http状态码还是200)，并发限制据此减小上限，见ConcurrencyLimitFilter
+     */
+    public static final String SERVER_FAILURE_ATTRIBUTE = GlobalExceptionHandler.class.getName() + ".SERVER_FAILURE";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
     /**
      * 这个注解代表这个方法只捕获BusinessException这个异常
      * @param e
      * @return
      */
     @ExceptionHandler(BusinessException.class)
-    public BaseResponse businessExceptionHandler(BusinessException e) {
+    public BaseResponse businessExceptionHandler(BusinessException e, HttpServletRequest request) {
         log.error("businessException: " + e.getMessage(), e); // 只要抛出异常就会记录日志
+        countError(e.getCode());
+        markServerFailure(request, e.getCode());
         return ResultUtils.error(e.getCode(), e.getMessage(), e.getDescription());
     }
 
@@ -38,9 +53,38 @@ public class GlobalExceptionHandler {
      * @return
      */
     @ExceptionHandler(RuntimeException.class)
-    public BaseResponse runtimeExceptionHandler(RuntimeException e) {
+    public BaseResponse runtimeExceptionHandler(RuntimeException e, HttpServletRequest request) {
         log.error("runtimeException", e); // 只要抛出异常就会记录日志
+        countError(ErrorCode.SYSTEM_ERROR.getCode());
+        // 包括获取数据库连接超时(SQLTransientConnectionException，spring包装成CannotGetJdbcConnectionException)
+        markServerFailure(request, ErrorCode.SYSTEM_ERROR.getCode());
         return ResultUtils.error(ErrorCode.SYSTEM_ERROR, e.getMessage(), "");
     }
 
+    /**
+     * 标记服务端的失败：系统异常，以及资源太忙(等锁超时、导出太多)返回的TOO_MANY_REQUESTS，
+     * 这两种都说明并发太高了，要减小并发上限；参数错误、没有权限这些是客户端的问题，不标记
+     * @param request 当前请求
+     * @param code 错误码
+     */
+    private static void markServerFailure(HttpServletRequest request, int code) {
+        if (code == ErrorCode.SYSTEM_ERROR.getCode() || code == ErrorCode.TOO_MANY_REQUESTS.getCode()) {
+            request.setAttribute(SERVER_FAILURE_ATTRIBUTE, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 按错误码统计异常次数
+     * @param code 错误码
+     */
+    private void countError(int code) {
+        ErrorCode errorCode = ErrorCode.getEnumByCode(code);
+        Counter.builder("xiaowc.errors")
+                .description("业务异常次数")
+                .tag("code", String.valueOf(code))
+                .tag("error", errorCode == null ? "UNKNOWN" : errorCode.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.xiaowc.partnermatch.job;
+
+import com.xiaowc.partnermatch.team.ActiveTeamCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 公开队伍快照全量重建定时任务
+ *
+ * 队伍的变化通过领域事件增量刷新快照，事件可能会丢(redis发布订阅不保证送达)，这里定期全量重建兜底，
+ * 每台服务器都要执行，所以不用分布式锁；启动后马上执行一次，构建好之前队伍列表还是查数据库
+ */
+@Component
+@Slf4j
+public class ActiveTeamSnapshotJob {
+
+    @Resource
+    private ActiveTeamCache activeTeamCache;
+
+    @Scheduled(fixedDelayString = "${xiaowc.team.snapshot-rebuild-millis:600000}")
+    public void rebuildActiveTeamSnapshot() {
+        try {
+            activeTeamCache.rebuild();
+        } catch (Exception e) {
+            log.error("rebuildActiveTeamSnapshot error", e);
+        }
+    }
+}
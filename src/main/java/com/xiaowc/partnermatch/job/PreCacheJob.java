@@ -2,19 +2,24 @@ package com.xiaowc.partnermatch.job;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.xiaowc.partnermatch.cache.RecommendUserCache;
+import com.xiaowc.partnermatch.common.FieldSelection;
+import com.xiaowc.partnermatch.datasource.ReadWriteContext;
 import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.monitor.LockMonitor;
+import com.xiaowc.partnermatch.monitor.MonitoredLock;
 import com.xiaowc.partnermatch.service.UserService;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -107,10 +112,14 @@ public class PreCacheJob {
     private UserService userService;
 
     @Resource
-    private RedisTemplate<String, Object> redisTemplate;
+    private RecommendUserCache recommendUserCache;
 
     @Resource
-    private RedissonClient redissonClient; // 引入redisson，实现分布式锁
+    private LockMonitor lockMonitor; // 引入redisson，实现分布式锁，并记录等待和持有锁的时间
+
+    // 预计算的线程池，见WorkloadConfig：预热在这里执行，定时任务的线程只负责抢锁和等待预热完成，不会被预热占住
+    @Resource(name = "precomputeExecutor")
+    private Executor precomputeExecutor;
 
     // 重点用户
     private List<Long> mainUserList = Arrays.asList(1L);
@@ -120,7 +129,7 @@ public class PreCacheJob {
     // 如果是分布式，会出现问题
     @Scheduled(cron = "0 0 0 * * *")  // 每天0点执行这个任务
     public void doCacheRecommendUser() {
-        RLock lock = redissonClient.getLock("xiaowc:precachejob:docache:lock"); // 创建一个锁
+        MonitoredLock lock = lockMonitor.getLock("xiaowc:precachejob:docache:lock"); // 创建一个锁
         try {
             // 尝试获取锁，获取成功会返回true，将第二个参数改为-1，可以实现续锁
             //   1.waitTime设置为0，只抢一次，抢不到就放弃
@@ -130,29 +139,32 @@ public class PreCacheJob {
             //     原理：1.监听当前线程，默认看门狗机制过期时间是30秒，每10秒续期一次(补到30秒)，防止宕机
             //           2.如果线程挂掉(注意debug模式也会被他当成服务器宕机)，则不会续期
             if (lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) { // 所有线程都去抢这个锁
-                System.out.println("getLock: " + Thread.currentThread().getId());
+                List<CompletableFuture<Void>> futureList = new ArrayList<>();
                 for (Long userId : mainUserList) {
-                    QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-                    // 分页查询数据库
-                    Page<User> userPage = userService.page(new Page<>(1, 20), queryWrapper);
-                    String redisKey = String.format("xiaowc:user:recommend:%s", userId); // redis的key
-                    ValueOperations<String, Object> valueOperations = redisTemplate.opsForValue();
-                    // 写缓存
-                    try {
-                        valueOperations.set(redisKey, userPage, 30000, TimeUnit.MILLISECONDS);
-                    } catch (Exception e) {
-                        log.error("redis set key error", e);
-                    }
+                    futureList.add(CompletableFuture.runAsync(() -> cacheRecommendUser(userId), precomputeExecutor));
                 }
+                // 锁只能由加锁的线程释放，等预热都完成了再释放
+                CompletableFuture.allOf(futureList.toArray(new CompletableFuture[0])).join();
             }
-        } catch (InterruptedException e) {
+        } catch (InterruptedException | CompletionException e) {
             log.error("doCacheRecommendUser error", e);
         } finally { // 最后执行完这个逻辑再把锁释放掉
             // 只能自己释放锁
             if (lock.isHeldByCurrentThread()) { // 判断当前的锁是不是自己的锁
-                System.out.println("unlock: " + Thread.currentThread().getId());
                 lock.unlock();
             }
         }
     }
+
+    /**
+     * 预热一个用户的推荐列表
+     */
+    private void cacheRecommendUser(long userId) {
+        String cacheVersion = recommendUserCache.version(); // 查询之前取版本号
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        // 分页查询数据库，写缓存的查询走主库，见UserController.recommendUsers
+        Page<User> userPage = ReadWriteContext.callOnPrimary(() -> userService.page(new Page<>(1, 20), queryWrapper));
+        // 写缓存，和推荐接口用同一个key(带版本号)，用户有变化时自动失效
+        recommendUserCache.put(cacheVersion, userId, 1, 20, FieldSelection.ALL, userPage);
+    }
 }
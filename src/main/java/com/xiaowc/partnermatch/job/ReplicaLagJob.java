@@ -0,0 +1,54 @@
+package com.xiaowc.partnermatch.job;
+
+import com.xiaowc.partnermatch.datasource.ReadWriteRoutingDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+/**
+ * 从库延迟检查定时任务：延迟超过阈值的从库不再使用，恢复之后重新使用
+ *
+ * 每台服务器都要执行，从库是否可用记在各自的内存中
+ * 用单独的一个线程执行，不用@Scheduled：定时任务共用的线程池(precomputeTaskScheduler)只有几个线程，
+ * 快照重建、缓存预热这些任务执行的时候会把每秒一次的延迟检查耽误了，从库延迟变大了也发现不了
+ */
+@Component
+@ConditionalOnProperty(prefix = "xiaowc.datasource", name = "read-write-splitting", havingValue = "true")
+@Slf4j
+public class ReplicaLagJob {
+
+    @Resource
+    private ReadWriteRoutingDataSource readWriteRoutingDataSource;
+
+    @Value("${xiaowc.datasource.lag-check-interval-millis:1000}")
+    private long lagCheckIntervalMillis;
+
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+    @PostConstruct
+    public void init() {
+        taskScheduler.setPoolSize(1);
+        taskScheduler.setThreadNamePrefix("replica-lag-");
+        taskScheduler.initialize();
+        taskScheduler.scheduleWithFixedDelay(this::checkReplicaLag, lagCheckIntervalMillis);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        taskScheduler.shutdown();
+    }
+
+    public void checkReplicaLag() {
+        try {
+            readWriteRoutingDataSource.checkReplicaLag();
+        } catch (Exception e) { // 抛出异常之后就不会再执行了
+            log.error("checkReplicaLag error", e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.xiaowc.partnermatch.job;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.xiaowc.partnermatch.datasource.ReadWriteContext;
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.service.TeamService;
+import com.xiaowc.partnermatch.team.TeamExpiryManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 把快要过期的队伍放入时间轮
+ *   1.定时扫描：把接下来一段时间内要过期的队伍放入时间轮，启动后马上执行一次，之后每隔scanIntervalMillis执行一次
+ *   2.领域事件：队伍创建、修改、删除的事务提交之后，重新查一次这个队伍的过期时间，放入或者取消
+ *     事件会通过redis广播到每台服务器，所以每台服务器的时间轮都会更新，不只是修改队伍的那一台
+ *
+ * 每台服务器都要执行，因为时间轮和缓存都在各自的内存中，所以这里不用分布式锁
+ */
+@Component
+@Slf4j
+public class TeamExpiryJob {
+
+    @Resource
+    private TeamService teamService;
+
+    @Resource
+    private TeamExpiryManager teamExpiryManager;
+
+    @Scheduled(fixedDelayString = "${xiaowc.team-expiry.scan-interval-millis:600000}")
+    public void scheduleExpiringTeams() {
+        Date now = new Date();
+        Date until = new Date(now.getTime() + teamExpiryManager.getHorizonMillis());
+        QueryWrapper<Team> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "expireTime"); // 只查id和过期时间
+        // 范围查询过期时间，status只有几个值，mysql8可以跳跃扫描(skip scan)组合索引idx_status_expireTime
+        queryWrapper.gt("expireTime", now).le("expireTime", until);
+        try {
+            List<Team> teamList = teamService.list(queryWrapper);
+            for (Team team : teamList) {
+                teamExpiryManager.schedule(team.getId(), team.getExpireTime());
+            }
+            log.debug("scheduled {} expiring teams, pending {}", teamList.size(), teamExpiryManager.pending());
+        } catch (Exception e) {
+            log.error("scheduleExpiringTeams error", e);
+        }
+    }
+
+    /**
+     * 队伍创建、修改、删除之后更新时间轮，事务提交之后才会收到，不会把回滚的修改放进去
+     */
+    @EventListener
+    public void onDomainEvent(DomainEvent event) {
+        DomainEvent.Type type = event.getType();
+        long teamId = event.getId();
+        if (type == DomainEvent.Type.TEAM_DELETED) {
+            teamExpiryManager.cancel(teamId);
+        } else if (type == DomainEvent.Type.TEAM_CREATED || type == DomainEvent.Type.TEAM_UPDATED) {
+            QueryWrapper<Team> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id", "expireTime").eq("id", teamId);
+            // 事件可能来自其他服务器，这里没有读己之写的cookie，显式走主库，避免从库延迟读到修改之前的过期时间
+            Team team = ReadWriteContext.callOnPrimary(() -> teamService.getOne(queryWrapper));
+            if (team == null) { // 已经被删除了
+                teamExpiryManager.cancel(teamId);
+            } else {
+                teamExpiryManager.schedule(teamId, team.getExpireTime()); // 没有过期时间或者还很久才过期会取消
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.xiaowc.partnermatch.limit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应并发限制(AIMD：加法增大、乘法减小)，根据请求的耗时调整同时处理的请求数上限
+ *
+ * 为什么需要？
+ *   固定的限流值很难设置：设小了浪费机器，设大了高峰时请求都堆在锁和数据库连接池上排队，
+ *   排队越久耗时越长，最后大家一起超时，处理了很多请求但是一个都没成功(吞吐量高，有效吞吐量为0)
+ *
+ * 实现：
+ *   1.同时处理的请求数达到上限时，新的请求直接失败(快速失败，不排队)
+ *   2.请求完成时：耗时超过阈值或者请求失败，说明已经过载了，上限乘以一个小于1的系数；
+ *     否则在请求数接近上限时(超过一半)上限加1，慢慢试探能承受的并发
+ *   3.上限在最小值和最大值之间，最小值保证过载的时候也能处理一部分请求
+ */
+public class AimdLimiter {
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    /**
+     * 过载时上限乘以这个系数
+     */
+    private final double backoffRatio;
+
+    /**
+     * 当前的上限，用小数记录，乘法减小时不会一下子减到整数
+     */
+    private double limit;
+
+    /**
+     * 正在处理的请求数
+     */
+    private int inFlight;
+
+    private long rejected;
+
+    /**
+     * @param name 名称(路由组)
+     * @param initialLimit 初始的上限
+     * @param minLimit 最小的上限
+     * @param maxLimit 最大的上限
+     * @param latencyThresholdMillis 耗时超过这个值(毫秒)认为过载了
+     * @param backoffRatio 过载时上限乘以这个系数
+     */
+    public AimdLimiter(String name, int initialLimit, int minLimit, int maxLimit, long latencyThresholdMillis,
+                       double backoffRatio) {
+        if (minLimit < 1 || minLimit > maxLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("invalid limiter config: " + name);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * 请求开始前调用
+     * @return 达到上限时返回false，请求要直接失败；返回true时请求结束后必须调用release
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            rejected++;
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * 请求结束后调用，根据耗时调整上限
+     * @param latencyNanos 请求的耗时(纳秒)
+     * @param dropped 请求是否因为服务端的原因失败了(系统异常、资源太忙、5xx)
+     */
+    public synchronized void release(long latencyNanos, boolean dropped) {
+        int current = inFlight--;
+        if (dropped || latencyNanos > latencyThresholdNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (current * 2 >= limit) {
+            // 请求数远小于上限时耗时短不能说明能承受更高的并发，不增大
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 监控指标：当前的上限、正在处理的请求数、拒绝的请求数，按路由组区分
+     */
+    public void bindMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("xiaowc.concurrency.limit", this, AimdLimiter::getLimit)
+                .description("自适应并发限制的上限")
+                .tag("group", name)
+                .register(meterRegistry);
+        Gauge.builder("xiaowc.concurrency.inflight", this, AimdLimiter::getInFlight)
+                .description("正在处理的请求数")
+                .tag("group", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("xiaowc.concurrency.rejected", this, AimdLimiter::getRejected)
+                .description("超过并发上限被拒绝的请求数")
+                .tag("group", name)
+                .register(meterRegistry);
+    }
+}
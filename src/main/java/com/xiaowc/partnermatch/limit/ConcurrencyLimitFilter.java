@@ -0,0 +1,74 @@
+package com.xiaowc.partnermatch.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaowc.partnermatch.common.ErrorCode;
+import com.xiaowc.partnermatch.common.ResultUtils;
+import com.xiaowc.partnermatch.exception.GlobalExceptionHandler;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 并发限制过滤器：每个路由组一个自适应并发限制(见AimdLimiter)，超过上限的请求直接返回429，
+ * 不进入controller，不占用锁和数据库连接
+ *
+ * 放在响应缓存过滤器后面，命中缓存的请求不受限制
+ * 失败：业务异常都以http 200返回，所以除了5xx，还看GlobalExceptionHandler标记的服务端失败(系统异常、资源太忙)
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * 建议客户端多久(秒)之后再重试
+     */
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    /**
+     * 接口路径 -> 所在路由组的并发限制
+     */
+    private final Map<String, AimdLimiter> limiters;
+
+    /**
+     * 拒绝时返回的内容，每次都一样，提前序列化好
+     */
+    private final byte[] rejectedBody;
+
+    public ConcurrencyLimitFilter(Map<String, AimdLimiter> limiters, ObjectMapper objectMapper) throws IOException {
+        this.limiters = limiters;
+        this.rejectedBody = objectMapper.writeValueAsBytes(ResultUtils.error(ErrorCode.TOO_MANY_REQUESTS));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AimdLimiter limiter = limiters.get(request.getServletPath());
+        if (limiter == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!limiter.tryAcquire()) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setContentLength(rejectedBody.length);
+            response.getOutputStream().write(rejectedBody);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean dropped = true;
+        try {
+            filterChain.doFilter(request, response);
+            dropped = response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+                    || request.getAttribute(GlobalExceptionHandler.SERVER_FAILURE_ATTRIBUTE) != null;
+        } finally {
+            limiter.release(System.nanoTime() - start, dropped);
+        }
+    }
+}
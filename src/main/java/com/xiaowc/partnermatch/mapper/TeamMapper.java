@@ -1,7 +1,11 @@
 package com.xiaowc.partnermatch.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
 import com.xiaowc.partnermatch.model.domain.Team;
+import org.apache.ibatis.annotations.Param;
 
 /**
 * @author wenca
@@ -11,6 +15,15 @@ import com.xiaowc.partnermatch.model.domain.Team;
 */
 public interface TeamMapper extends BaseMapper<Team> {
 
+    /**
+     * 按关键词全文搜索队伍(名称和描述)，按相关度从高到低排序，需要全文索引ft_name_description(见sql/create_table.sql)
+     * @param page 分页参数
+     * @param searchText 搜索关键词
+     * @param queryWrapper 其他查询条件，要包含全文匹配的条件
+     * @return
+     */
+    IPage<Team> searchTeams(IPage<Team> page, @Param("searchText") String searchText,
+                            @Param(Constants.WRAPPER) Wrapper<Team> queryWrapper);
 }
 
 
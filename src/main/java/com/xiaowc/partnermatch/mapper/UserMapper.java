@@ -1,7 +1,12 @@
 package com.xiaowc.partnermatch.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
 import com.xiaowc.partnermatch.model.domain.User;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 /**
 * @author wenca
@@ -11,8 +16,37 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface UserMapper extends BaseMapper<User> {
 
-}
-
-
+    /**
+     * 按用户名全文搜索用户(前缀和中间匹配)，完全相同的排最前，然后是前缀匹配的，再按相关度排序，
+     * 需要全文索引ft_username(见sql/create_table.sql)，只查脱敏后需要的字段
+     * @param page 分页参数
+     * @param columns 要查询的列，逗号分隔，直接拼接到SQL中，只能传白名单中的列(UserConstant.SAFE_COLUMNS)
+     * @param username 搜索关键词
+     * @param phrase 全文索引boolean模式下的短语，如 "abc"，表示ngram分词要连续出现
+     * @param prefix 前缀匹配的like条件，如 abc%，关键词中的通配符要先转义
+     * @return
+     */
+    IPage<User> searchUsersByUsername(IPage<User> page, @Param("columns") String columns,
+                                      @Param("username") String username, @Param("phrase") String phrase,
+                                      @Param("prefix") String prefix);
 
+    /**
+     * 按用户名全文搜索用户，和searchUsersByUsername一样，但是不分页，流式返回(导出用)：
+     * 每读出一行就交给resultHandler，不会把所有结果都加载到内存中
+     * @param columns 要查询的列，逗号分隔，只能传白名单中的列(UserConstant.SAFE_COLUMNS)
+     * @param username 搜索关键词
+     * @param phrase 全文索引boolean模式下的短语
+     * @param prefix 前缀匹配的like条件
+     * @param resultHandler 处理每一行
+     */
+    void scanUsersByUsername(@Param("columns") String columns, @Param("username") String username,
+                             @Param("phrase") String phrase, @Param("prefix") String prefix,
+                             ResultHandler<User> resultHandler);
 
+    /**
+     * 流式查询用户：每读出一行就交给resultHandler，不会把所有结果都加载到内存中
+     * @param queryWrapper 查询条件，要指定查询的列(select)，并且带上isDelete = 0
+     * @param resultHandler 处理每一行
+     */
+    void scanUsers(@Param(Constants.WRAPPER) Wrapper<User> queryWrapper, ResultHandler<User> resultHandler);
+}
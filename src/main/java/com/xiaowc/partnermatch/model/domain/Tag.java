@@ -0,0 +1,61 @@
+package com.xiaowc.partnermatch.model.domain;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * domain层用来对应数据库的字段
+ * 标签表
+ * @TableName tag
+ */
+@TableName(value ="tag")
+@Data
+public class Tag implements Serializable {
+    /**
+     * id
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 标签名称
+     */
+    private String tagName;
+
+    /**
+     * 用户 id
+     */
+    private Long userId;
+
+    /**
+     * 父标签 id
+     */
+    private Long parentId;
+
+    /**
+     * 0 - 不是父标签，1 - 是父标签
+     */
+    private Integer isParent;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    /**
+     * 是否删除
+     */
+    @TableLogic
+    private Integer isDelete;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
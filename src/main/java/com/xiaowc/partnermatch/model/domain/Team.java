@@ -1,5 +1,7 @@
 package com.xiaowc.partnermatch.model.domain;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.xiaowc.partnermatch.common.FieldSelection;
 import com.baomidou.mybatisplus.annotation.*;
 import lombok.Data;
 
@@ -13,6 +15,7 @@ import java.util.Date;
  */
 @TableName(value ="team")
 @Data
+@JsonFilter(FieldSelection.TEAM_FILTER) // 请求中带了fields参数时只返回这些字段，见FieldSelectionAdvice
 public class Team implements Serializable {
     /**
      * id
@@ -1,5 +1,7 @@
 package com.xiaowc.partnermatch.model.domain;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.xiaowc.partnermatch.common.FieldSelection;
 import com.baomidou.mybatisplus.annotation.*;
 
 import java.io.Serializable;
@@ -13,6 +15,7 @@ import lombok.Data;
  */
 @TableName(value ="user")
 @Data
+@JsonFilter(FieldSelection.USER_FILTER) // 请求中带了fields参数时只返回这些字段，见FieldSelectionAdvice
 public class User implements Serializable {
     /**
      * id
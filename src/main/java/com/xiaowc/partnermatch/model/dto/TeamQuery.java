@@ -61,4 +61,15 @@ public class TeamQuery extends PageRequest {
      */
     private Integer status;
 
+    /**
+     * 要返回的字段，逗号分隔，比如 id,name,hasJoinNum，为空返回全部字段，见FieldSelection
+     */
+    private String fields;
+
+    /**
+     * 请求中有没有带分页参数(pageNum或pageSize)，由controller设置
+     * 全文搜索只有带了分页参数才分页，没带的时候和模糊查询一样返回全部结果
+     */
+    private boolean paged;
+
 }
@@ -1,5 +1,7 @@
 package com.xiaowc.partnermatch.model.vo;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.xiaowc.partnermatch.common.FieldSelection;
 import lombok.Data;
 
 import java.io.Serializable;
@@ -11,6 +13,7 @@ import java.util.Date;
  * 返回给前端的队伍和用户信息封装类(脱敏)
  */
 @Data
+@JsonFilter(FieldSelection.TEAM_FILTER) // 请求中带了fields参数时只返回这些字段，见FieldSelectionAdvice
 public class TeamUserVO implements Serializable {
 
     private static final long serialVersionUID = -6427311578785078667L;
@@ -0,0 +1,28 @@
+package com.xiaowc.partnermatch.monitor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 获取带监控的分布式锁
+ */
+@Component
+public class LockMonitor {
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 获取一个分布式锁，和redissonClient.getLock()一样，每次使用都要重新获取，不能在多个线程中共用
+     * @param name 锁的名称(redis的key)
+     */
+    public MonitoredLock getLock(String name) {
+        return new MonitoredLock(redissonClient.getLock(name), name, meterRegistry);
+    }
+}
@@ -0,0 +1,133 @@
+package com.xiaowc.partnermatch.monitor;
+
+import com.xiaowc.partnermatch.monitor.event.JfrSupport;
+import com.xiaowc.partnermatch.monitor.event.LockEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.redisson.api.RLock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带监控的分布式锁(装饰器模式)，记录：
+ *   1.等待时间：从开始抢锁到抢到锁(或者超时)的时间，指标名xiaowc.lock.wait
+ *   2.持有时间：从抢到锁到释放锁的时间，指标名xiaowc.lock.hold
+ *   3.竞争次数：第一次没有抢到锁、需要排队的次数，指标名xiaowc.lock.contention
+ *   4.同时生成一个JFR事件(xiaowc.Lock)，可以和GC、CPU放在一起分析
+ */
+public class MonitoredLock {
+
+    private final RLock lock;
+
+    private final String name;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 抢到锁的时间
+     */
+    private long acquiredAt;
+
+    private long waitNanos;
+
+    private boolean contended;
+
+    private LockEvent event;
+
+    public MonitoredLock(RLock lock, String name, MeterRegistry meterRegistry) {
+        this.lock = lock;
+        this.name = name;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 尝试获取锁，和RLock.tryLock()一样
+     * @param waitTime 最多等待多长时间
+     * @param leaseTime 锁的过期时间，-1表示开启看门狗自动续期
+     * @param unit 时间单位
+     * @return 是否抢到了锁
+     */
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        if (JfrSupport.AVAILABLE) {
+            event = new LockEvent();
+            event.begin();
+        }
+        long start = System.nanoTime();
+        // 先不等待抢一次，抢不到说明有竞争，再等待
+        boolean acquired = lock.tryLock(0, leaseTime, unit);
+        if (!acquired) {
+            contended = true;
+            Counter.builder("xiaowc.lock.contention").description("分布式锁竞争次数")
+                    .tag("lock", name).register(meterRegistry).increment();
+            if (waitTime > 0) {
+                acquired = lock.tryLock(waitTime, leaseTime, unit);
+            }
+        }
+        long now = System.nanoTime();
+        waitNanos = now - start;
+        Timer.builder("xiaowc.lock.wait").description("分布式锁等待时间")
+                .tag("lock", name).tag("acquired", String.valueOf(acquired))
+                .publishPercentileHistogram()
+                .register(meterRegistry).record(waitNanos, TimeUnit.NANOSECONDS);
+        if (acquired) {
+            acquiredAt = now;
+        } else {
+            commitEvent(false, 0);
+        }
+        return acquired;
+    }
+
+    /**
+     * 当前线程是否持有这个锁
+     */
+    public boolean isHeldByCurrentThread() {
+        return lock.isHeldByCurrentThread();
+    }
+
+    /**
+     * 释放锁
+     */
+    public void unlock() {
+        try {
+            lock.unlock();
+        } finally {
+            long holdNanos = System.nanoTime() - acquiredAt;
+            Timer.builder("xiaowc.lock.hold").description("分布式锁持有时间")
+                    .tag("lock", name)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry).record(holdNanos, TimeUnit.NANOSECONDS);
+            commitEvent(true, holdNanos);
+        }
+    }
+
+    /**
+     * 等待时间(纳秒)
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * 第一次是否没有抢到锁
+     */
+    public boolean isContended() {
+        return contended;
+    }
+
+    private void commitEvent(boolean acquired, long holdNanos) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.lockName = name;
+            event.acquired = acquired;
+            event.contended = contended;
+            event.waitTime = waitNanos;
+            event.holdTime = holdNanos;
+            event.commit();
+        }
+        event = null;
+    }
+}
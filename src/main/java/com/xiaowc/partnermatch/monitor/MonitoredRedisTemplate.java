@@ -0,0 +1,93 @@
+package com.xiaowc.partnermatch.monitor;
+
+import com.xiaowc.partnermatch.monitor.event.JfrSupport;
+import com.xiaowc.partnermatch.monitor.event.RedisCommandEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计每个redis命令耗时的RedisTemplate
+ *   RedisTemplate执行每个操作之前都会调用preProcessConnection()，这里把连接换成一个代理，
+ *   连接上的每个命令(get、set、del等)都记录耗时(指标名xiaowc.redis.command，按命令区分)，并生成JFR事件
+ */
+public class MonitoredRedisTemplate extends RedisTemplate<String, Object> {
+
+    /**
+     * 不是redis命令的方法，不统计
+     */
+    private static final Set<String> IGNORED_METHODS = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "getNativeConnection", "isQueueing", "isPipelined", "isSubscribed",
+            "getSubscription", "getSentinelConnection", "hashCode", "equals", "toString"));
+
+    private final MeterRegistry meterRegistry;
+
+    public MonitoredRedisTemplate(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected RedisConnection preProcessConnection(RedisConnection connection, boolean existingConnection) {
+        return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                ClassUtils.getAllInterfacesForClass(connection.getClass(), getClass().getClassLoader()),
+                new TimingInvocationHandler(connection));
+    }
+
+    private class TimingInvocationHandler implements InvocationHandler {
+
+        private final RedisConnection target;
+
+        private TimingInvocationHandler(RedisConnection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String command = method.getName();
+            // xxxCommands()返回的是某一类命令的集合，真正执行命令的时候才统计
+            if (IGNORED_METHODS.contains(command) || command.endsWith("Commands")) {
+                return invokeTarget(method, args);
+            }
+            RedisCommandEvent event = null;
+            if (JfrSupport.AVAILABLE) {
+                event = new RedisCommandEvent();
+                event.begin();
+            }
+            long start = System.nanoTime();
+            try {
+                return invokeTarget(method, args);
+            } finally {
+                Timer.builder("xiaowc.redis.command").description("redis命令耗时")
+                        .tag("command", command)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (event != null) {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.command = command;
+                        event.commit();
+                    }
+                }
+            }
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
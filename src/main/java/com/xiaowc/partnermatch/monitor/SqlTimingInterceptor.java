@@ -0,0 +1,147 @@
+package com.xiaowc.partnermatch.monitor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sql耗时拦截器，代替StdOutImpl把每条sql都打印到控制台
+ *
+ * 为什么需要？
+ *   1.StdOutImpl会把每条sql、参数、结果都打印出来，并发高的时候打印本身就很耗时，而且看不到耗时
+ *   2.这里统计每个mapper方法的耗时直方图(指标名xiaowc.sql，按statement区分)，
+ *     只有超过阈值的慢sql才打印日志，带上参数摘要和调用的位置，方便找到N+1查询和全表扫描
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+@Slf4j
+public class SqlTimingInterceptor implements Interceptor {
+
+    /**
+     * 项目的包名，用来找到是哪里调用的sql
+     */
+    private static final String APP_PACKAGE = "com.xiaowc.partnermatch.";
+
+    /**
+     * 参数摘要中每个参数最多显示多少个字符
+     */
+    private static final int MAX_PARAM_LENGTH = 100;
+
+    /**
+     * 参数摘要中最多显示多少个参数
+     */
+    private static final int MAX_PARAM_COUNT = 20;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 慢sql的阈值(毫秒)
+     */
+    private final long slowThresholdMillis;
+
+    public SqlTimingInterceptor(MeterRegistry meterRegistry, long slowThresholdMillis) {
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Object result = invocation.proceed();
+            success = true;
+            return result;
+        } finally {
+            long costNanos = System.nanoTime() - start;
+            Object[] args = invocation.getArgs();
+            MappedStatement mappedStatement = (MappedStatement) args[0];
+            Timer.builder("xiaowc.sql")
+                    .description("mapper方法执行耗时")
+                    .tag("statement", mappedStatement.getId())
+                    .tag("type", mappedStatement.getSqlCommandType().name())
+                    .tag("success", String.valueOf(success))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(costNanos, TimeUnit.NANOSECONDS);
+            long costMillis = TimeUnit.NANOSECONDS.toMillis(costNanos);
+            if (costMillis >= slowThresholdMillis) {
+                BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : mappedStatement.getBoundSql(args[1]);
+                log.warn("slow sql: {} cost {}ms, caller: {}, sql: {}, params: {}", mappedStatement.getId(), costMillis,
+                        findCaller(), boundSql.getSql().replaceAll("\\s+", " "),
+                        summarizeParameters(mappedStatement.getConfiguration(), boundSql));
+            }
+        }
+    }
+
+    /**
+     * 参数摘要：按顺序列出每个占位符的值，太长的截断
+     */
+    private String summarizeParameters(Configuration configuration, BoundSql boundSql) {
+        List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+        Object parameterObject = boundSql.getParameterObject();
+        StringBuilder summary = new StringBuilder("[");
+        for (int i = 0; i < parameterMappings.size(); i++) {
+            if (i >= MAX_PARAM_COUNT) {
+                summary.append(", ...(").append(parameterMappings.size()).append(" params)");
+                break;
+            }
+            String property = parameterMappings.get(i).getProperty();
+            Object value;
+            try {
+                // 和mybatis的DefaultParameterHandler取值的方式一样
+                if (boundSql.hasAdditionalParameter(property)) {
+                    value = boundSql.getAdditionalParameter(property);
+                } else if (parameterObject == null) {
+                    value = null;
+                } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+                    value = parameterObject;
+                } else {
+                    MetaObject metaObject = configuration.newMetaObject(parameterObject);
+                    value = metaObject.getValue(property);
+                }
+            } catch (Exception e) {
+                value = "?";
+            }
+            if (i > 0) {
+                summary.append(", ");
+            }
+            String text = String.valueOf(value);
+            summary.append(text.length() > MAX_PARAM_LENGTH ? text.substring(0, MAX_PARAM_LENGTH) + "..." : text);
+        }
+        return summary.append(']').toString();
+    }
+
+    /**
+     * 找到调用这条sql的业务代码(跳过mapper代理和这个拦截器本身)
+     */
+    private String findCaller() {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String className = element.getClassName();
+            if (className.startsWith(APP_PACKAGE) && !className.startsWith(APP_PACKAGE + "monitor.")
+                    && !className.contains("$$") && element.getLineNumber() > 0) {
+                return className + "." + element.getMethodName() + ":" + element.getLineNumber();
+            }
+        }
+        return "unknown";
+    }
+}
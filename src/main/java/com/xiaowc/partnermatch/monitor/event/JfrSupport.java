@@ -0,0 +1,25 @@
+package com.xiaowc.partnermatch.monitor.event;
+
+/**
+ * JFR(Java Flight Recorder)是否可用
+ *   jdk.jfr.Event在JDK11、8u262及以上才有，低版本JDK上运行时不能创建自定义的JFR事件，
+ *   所以创建事件之前都要先判断一下
+ * 录制：java -XX:StartFlightRecording=duration=60s,filename=partner-match.jfr -jar partner-match-backend.jar，
+ *   用JDK Mission Control打开，在xiaowc分类下可以看到自定义的事件，没有录制的时候事件不会提交，开销可以忽略
+ */
+public final class JfrSupport {
+
+    public static final boolean AVAILABLE = isAvailable();
+
+    private JfrSupport() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
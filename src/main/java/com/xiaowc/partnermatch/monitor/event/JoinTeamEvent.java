@@ -0,0 +1,36 @@
+package com.xiaowc.partnermatch.monitor.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 加入队伍(joinTeam)的JFR事件：等锁的时间和最终结果
+ */
+@Name("xiaowc.JoinTeam")
+@Label("Join Team")
+@Category({"xiaowc", "Team"})
+@Description("用户加入队伍，从抢锁开始到写入完成")
+@StackTrace(false)
+public class JoinTeamEvent extends jdk.jfr.Event {
+
+    @Label("User Id")
+    public long userId;
+
+    @Label("Team Id")
+    public long teamId;
+
+    @Label("Lock Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lockWaitTime;
+
+    @Label("Lock Contended")
+    public boolean contended;
+
+    @Label("Outcome")
+    @Description("joined、rejected、lock_timeout、interrupted")
+    public String outcome;
+}
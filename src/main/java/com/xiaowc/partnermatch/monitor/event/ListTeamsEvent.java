@@ -0,0 +1,28 @@
+package com.xiaowc.partnermatch.monitor.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 查询队伍列表(listTeams)的JFR事件：查出了多少队伍、一共发了多少条sql
+ */
+@Name("xiaowc.ListTeams")
+@Label("List Teams")
+@Category({"xiaowc", "Team"})
+@Description("查询队伍列表并关联创建人信息")
+@StackTrace(false)
+public class ListTeamsEvent extends jdk.jfr.Event {
+
+    @Label("Teams")
+    public int teams;
+
+    @Label("Queries Issued")
+    @Description("这次查询一共执行了多少条sql")
+    public int queries;
+
+    @Label("Admin")
+    public boolean admin;
+}
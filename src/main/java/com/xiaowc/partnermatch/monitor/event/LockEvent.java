@@ -0,0 +1,37 @@
+package com.xiaowc.partnermatch.monitor.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 分布式锁的JFR事件：从开始抢锁到释放锁，记录等待了多久、持有了多久
+ */
+@Name("xiaowc.Lock")
+@Label("Distributed Lock")
+@Category({"xiaowc", "Lock"})
+@Description("redisson分布式锁的等待时间和持有时间")
+@StackTrace(false)
+public class LockEvent extends jdk.jfr.Event {
+
+    @Label("Lock Name")
+    public String lockName;
+
+    @Label("Acquired")
+    public boolean acquired;
+
+    @Label("Contended")
+    @Description("第一次抢锁没有抢到，需要排队")
+    public boolean contended;
+
+    @Label("Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long waitTime;
+
+    @Label("Hold Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long holdTime;
+}
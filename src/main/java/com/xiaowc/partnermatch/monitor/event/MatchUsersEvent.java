@@ -0,0 +1,41 @@
+package com.xiaowc.partnermatch.monitor.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 匹配用户(matchUsers)的JFR事件：扫描了多少候选用户、跳过了多少、计算编辑距离花了多长时间
+ */
+@Name("xiaowc.MatchUsers")
+@Label("Match Users")
+@Category({"xiaowc", "User"})
+@Description("按标签相似度匹配用户")
+@StackTrace(false)
+public class MatchUsersEvent extends jdk.jfr.Event {
+
+    @Label("User Id")
+    public long userId;
+
+    @Label("Requested Num")
+    public long num;
+
+    @Label("Candidates Scanned")
+    @Description("从数据库中查出来的有标签的用户数")
+    public int candidates;
+
+    @Label("Candidates Pruned")
+    @Description("没有标签或者是自己，不用计算相似度的用户数")
+    public int pruned;
+
+    @Label("Time In Distance")
+    @Description("计算编辑距离(动态规划)的总时间")
+    @Timespan(Timespan.NANOSECONDS)
+    public long distanceTime;
+
+    @Label("Result Size")
+    public int resultSize;
+}
@@ -0,0 +1,23 @@
+package com.xiaowc.partnermatch.monitor.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * redis命令的JFR事件，默认只记录超过1毫秒的命令
+ */
+@Name("xiaowc.RedisCommand")
+@Label("Redis Command")
+@Category({"xiaowc", "Redis"})
+@Description("通过RedisTemplate执行的redis命令")
+@Threshold("1 ms")
+@StackTrace(false)
+public class RedisCommandEvent extends jdk.jfr.Event {
+
+    @Label("Command")
+    public String command;
+}
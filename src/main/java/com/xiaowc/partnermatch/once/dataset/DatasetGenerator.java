@@ -0,0 +1,321 @@
+package com.xiaowc.partnermatch.once.dataset;
+
+import com.google.gson.Gson;
+import com.xiaowc.partnermatch.model.domain.Tag;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.model.domain.UserTeam;
+import com.xiaowc.partnermatch.model.enums.TeamStatusEnum;
+import org.springframework.util.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * 测试数据生成器：生成接近真实分布的用户、标签、队伍和队伍成员，用于压测和基准测试
+ *   1.确定性：同样的种子生成的数据完全一样。每个用户、每个队伍都用 种子+序号 创建自己的随机数，
+ *     所以第i个用户和前面生成了多少数据无关，可以随时单独重新生成(压测时用来找登录账号、公开队伍)
+ *   2.标签：从两层的标签词库(TagVocabulary)中按照齐夫分布抽取，少数热门标签出现在大量用户身上，
+ *     互斥的分类(性别、年级)每个用户最多一个
+ *   3.队伍：人数上限偏小，大部分公开，少部分加密和私有，一部分已经过期，一部分没有过期时间
+ *   4.队伍成员：队长一定在队伍中，其他成员偏向活跃用户(序号小的用户)，
+ *     每个用户最多创建和加入5个队伍(和加入队伍接口的限制一致)，当队长也算在里面，名额满了的用户不会再当队长
+ *   5.所有数据都是一个一个生成的，不会整体放在内存中，可以直接流式写入批量导入(见DatasetLoader)
+ */
+public class DatasetGenerator {
+
+    /**
+     * 所有生成的用户的密码都是这个，压测时可以直接登录
+     */
+    public static final String USER_PASSWORD = "12345678";
+
+    /**
+     * 每个用户最多创建和加入的队伍数
+     */
+    public static final int MAX_TEAMS_PER_USER = 5;
+
+    /**
+     * 和UserServiceImpl中的盐值一致
+     */
+    private static final String SALT = "xiaowc";
+
+    /**
+     * 不同类型的数据使用不同的随机数序列，互不影响
+     */
+    private static final long USER_STREAM = 1;
+
+    private static final long TEAM_STREAM = 2;
+
+    private static final long MEMBER_STREAM = 3;
+
+    private static final long DAY_MILLIS = 24 * 3600 * 1000L;
+
+    private static final String[] SURNAMES = {"王", "李", "张", "刘", "陈", "杨", "黄", "赵", "吴", "周", "徐", "孙", "马", "朱", "胡"};
+
+    private static final String[] GIVEN_NAMES = {"伟", "芳", "娜", "敏", "静", "磊", "洋", "勇", "杰", "婷", "强", "军", "涛", "明", "超", "欣", "宇", "浩"};
+
+    private static final String[] TEAM_SUFFIXES = {"学习小组", "交流群", "打卡队", "组队", "互助小组", "冲冲冲"};
+
+    private static final Gson GSON = new Gson();
+
+    private final long seed;
+
+    private final int users;
+
+    /**
+     * 数据的参考时间，过期时间、加入时间都是相对于这个时间生成的，保证同样的参数生成的数据一样
+     */
+    private final long referenceTime;
+
+    private final long firstUserId;
+
+    private final long firstTeamId;
+
+    private final TagVocabulary vocabulary;
+
+    /**
+     * 标签的热门程度排名 -> 子标签，按种子打乱，不同的种子热门标签不一样
+     */
+    private final int[] leafByRank;
+
+    private final ZipfSampler tagSampler;
+
+    private final String encryptPassword;
+
+    /**
+     * 每个用户已经创建和加入的队伍数，生成队伍成员时才分配
+     */
+    private short[] joinedTeams;
+
+    /**
+     * 这个序号之前的用户名额都满了，找不到有名额的队长时从这里往后找
+     */
+    private int firstFreeUserIndex = 0;
+
+    /**
+     * @param seed          随机种子
+     * @param users         用户数
+     * @param referenceTime 参考时间(毫秒)
+     * @param firstUserId   第0个用户的id，后面的用户id依次加1
+     * @param firstTeamId   第0个队伍的id，后面的队伍id依次加1
+     */
+    public DatasetGenerator(long seed, int users, long referenceTime, long firstUserId, long firstTeamId) {
+        this(seed, users, referenceTime, firstUserId, firstTeamId, TagVocabulary.defaultVocabulary());
+    }
+
+    public DatasetGenerator(long seed, int users, long referenceTime, long firstUserId, long firstTeamId,
+                            TagVocabulary vocabulary) {
+        this.seed = seed;
+        this.users = users;
+        this.referenceTime = referenceTime;
+        this.firstUserId = firstUserId;
+        this.firstTeamId = firstTeamId;
+        this.vocabulary = vocabulary;
+        this.tagSampler = new ZipfSampler(vocabulary.leafCount(), 1.0);
+        this.leafByRank = new int[vocabulary.leafCount()];
+        for (int i = 0; i < leafByRank.length; i++) {
+            leafByRank[i] = i;
+        }
+        // 洗牌算法打乱子标签的热门程度
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = leafByRank.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = leafByRank[i];
+            leafByRank[i] = leafByRank[j];
+            leafByRank[j] = temp;
+        }
+        this.encryptPassword = DigestUtils.md5DigestAsHex((SALT + USER_PASSWORD).getBytes());
+    }
+
+    /**
+     * 生成标签表的数据：先是父标签，再是子标签，id从firstTagId开始连续分配
+     */
+    public List<Tag> tags(long firstTagId) {
+        List<Tag> tagList = new ArrayList<>();
+        long nextChildId = firstTagId + vocabulary.getCategories().size();
+        for (int i = 0; i < vocabulary.getCategories().size(); i++) {
+            TagVocabulary.Category category = vocabulary.getCategories().get(i);
+            long parentId = firstTagId + i;
+            tagList.add(newTag(parentId, category.getName(), null, 1));
+            for (String tagName : category.getTags()) {
+                tagList.add(newTag(nextChildId++, tagName, parentId, 0));
+            }
+        }
+        tagList.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        return tagList;
+    }
+
+    /**
+     * 生成第index个用户
+     */
+    public User user(int index) {
+        SplittableRandom random = random(USER_STREAM, index);
+        long id = firstUserId + index;
+        List<String> tags = randomTags(random);
+        User user = new User();
+        user.setId(id);
+        user.setUsername(SURNAMES[random.nextInt(SURNAMES.length)] + GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)]
+                + (random.nextBoolean() ? GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)] : ""));
+        user.setUserAccount(userAccount(index));
+        user.setUserPassword(encryptPassword);
+        // 性别和性别标签保持一致，没有性别标签的随机
+        int gender = tags.indexOf("女") >= 0 ? 1 : tags.indexOf("男") >= 0 ? 0 : random.nextInt(2);
+        user.setGender(gender);
+        user.setUserStatus(0);
+        user.setUserRole(0);
+        user.setPlanetCode(String.valueOf(id));
+        user.setTags(GSON.toJson(tags));
+        return user;
+    }
+
+    /**
+     * 第index个用户的账号
+     */
+    public String userAccount(int index) {
+        return "user" + (firstUserId + index);
+    }
+
+    /**
+     * 生成第index个队伍
+     * 这里的队长只是初步选择，这个用户名额已经满了的时候，members()会换一个有名额的用户
+     */
+    public Team team(int index) {
+        SplittableRandom random = random(TEAM_STREAM, index);
+        Team team = new Team();
+        team.setId(firstTeamId + index);
+        String topic = vocabulary.leafName(leafByRank[tagSampler.sample(random)]);
+        team.setName(topic + TEAM_SUFFIXES[random.nextInt(TEAM_SUFFIXES.length)]);
+        team.setDescription("一起" + topic + "，欢迎加入");
+        // 人数上限2~20，大部分是小队伍
+        team.setMaxNum(2 + Math.min(18, (int) (-Math.log(1 - random.nextDouble()) * 3)));
+        team.setUserId(firstUserId + activeUserIndex(random));
+        // 65%公开，20%加密，15%私有
+        int statusRandom = random.nextInt(100);
+        TeamStatusEnum status = statusRandom < 65 ? TeamStatusEnum.PUBLIC
+                : statusRandom < 85 ? TeamStatusEnum.SECRET : TeamStatusEnum.PRIVATE;
+        team.setStatus(status.getValue());
+        if (TeamStatusEnum.SECRET.equals(status)) {
+            team.setPassword(String.valueOf(100000 + random.nextInt(900000)));
+        }
+        // 20%没有过期时间，15%已经过期(过去30天内)，其他的在未来60天内过期
+        int expireRandom = random.nextInt(100);
+        if (expireRandom >= 20) {
+            long offset = expireRandom < 35 ? -(long) (random.nextDouble() * 30 * DAY_MILLIS)
+                    : 60_000L + (long) (random.nextDouble() * 60 * DAY_MILLIS);
+            team.setExpireTime(new Date(referenceTime + offset));
+        }
+        return team;
+    }
+
+    /**
+     * 生成第teamIndex个队伍的成员，队长是第一个
+     * 注意：
+     *   1.要按照队伍的顺序调用，每个用户最多加入5个队伍是按照生成的先后顺序判断的
+     *   2.初步选择的队长名额满了时会修改team的队长，所以要先调用这个方法再写入队伍
+     * @param team 第teamIndex个队伍，即team(teamIndex)的结果
+     */
+    public List<UserTeam> members(int teamIndex, Team team) {
+        if (joinedTeams == null) {
+            joinedTeams = new short[users];
+        }
+        SplittableRandom random = random(MEMBER_STREAM, teamIndex);
+        int captainIndex = captainIndex((int) (team.getUserId() - firstUserId), random);
+        team.setUserId(firstUserId + captainIndex);
+        // 队伍的满员程度是均匀分布的
+        int memberCount = Math.min(team.getMaxNum(), 1 + random.nextInt(team.getMaxNum()));
+        Set<Integer> memberIndexes = new HashSet<>();
+        List<UserTeam> userTeamList = new ArrayList<>(memberCount);
+        memberIndexes.add(captainIndex);
+        userTeamList.add(newUserTeam(captainIndex, team, random));
+        // 最多尝试memberCount*4次，活跃用户都加满了就少一些成员
+        for (int attempt = 0; userTeamList.size() < memberCount && attempt < memberCount * 4; attempt++) {
+            int userIndex = activeUserIndex(random);
+            if (joinedTeams[userIndex] >= MAX_TEAMS_PER_USER || !memberIndexes.add(userIndex)) {
+                continue;
+            }
+            userTeamList.add(newUserTeam(userIndex, team, random));
+        }
+        return userTeamList;
+    }
+
+    /**
+     * 选一个还有名额的队长：初步选择的用户满了就再按活跃程度选几次，还是满的就从前往后找第一个有名额的用户
+     */
+    private int captainIndex(int preferredIndex, SplittableRandom random) {
+        int userIndex = preferredIndex;
+        for (int attempt = 0; joinedTeams[userIndex] >= MAX_TEAMS_PER_USER && attempt < 8; attempt++) {
+            userIndex = activeUserIndex(random);
+        }
+        if (joinedTeams[userIndex] < MAX_TEAMS_PER_USER) {
+            return userIndex;
+        }
+        while (firstFreeUserIndex < users && joinedTeams[firstFreeUserIndex] >= MAX_TEAMS_PER_USER) {
+            firstFreeUserIndex++;
+        }
+        if (firstFreeUserIndex >= users) {
+            throw new IllegalStateException("all " + users + " users already created or joined "
+                    + MAX_TEAMS_PER_USER + " teams, generate fewer teams");
+        }
+        return firstFreeUserIndex;
+    }
+
+    /**
+     * 每个用户1~8个标签，平均3个左右
+     */
+    private List<String> randomTags(SplittableRandom random) {
+        int size = Math.min(8, 1 + (int) (-Math.log(1 - random.nextDouble()) * 2.5));
+        List<String> tags = new ArrayList<>(size);
+        Set<Integer> usedExclusiveCategories = new HashSet<>();
+        // 最多尝试size*4次，避免热门标签全被选完之后一直循环
+        for (int attempt = 0; tags.size() < size && attempt < size * 4; attempt++) {
+            int leaf = leafByRank[tagSampler.sample(random)];
+            String tagName = vocabulary.leafName(leaf);
+            int category = vocabulary.leafCategory(leaf);
+            if (tags.contains(tagName)) {
+                continue;
+            }
+            if (vocabulary.getCategories().get(category).isExclusive() && !usedExclusiveCategories.add(category)) {
+                continue;
+            }
+            tags.add(tagName);
+        }
+        return tags;
+    }
+
+    /**
+     * 选一个用户，越早注册(序号越小)的用户越活跃，被选中的概率越大
+     */
+    private int activeUserIndex(SplittableRandom random) {
+        double value = random.nextDouble();
+        return Math.min(users - 1, (int) (users * value * value));
+    }
+
+    private UserTeam newUserTeam(int userIndex, Team team, SplittableRandom random) {
+        joinedTeams[userIndex]++;
+        UserTeam userTeam = new UserTeam();
+        userTeam.setUserId(firstUserId + userIndex);
+        userTeam.setTeamId(team.getId());
+        userTeam.setJoinTime(new Date(referenceTime - (long) (random.nextDouble() * 30 * DAY_MILLIS)));
+        return userTeam;
+    }
+
+    private Tag newTag(long id, String tagName, Long parentId, int isParent) {
+        Tag tag = new Tag();
+        tag.setId(id);
+        tag.setTagName(tagName);
+        tag.setParentId(parentId);
+        tag.setIsParent(isParent);
+        return tag;
+    }
+
+    /**
+     * 每个用户、每个队伍都有自己的随机数，只和种子、数据类型、序号有关
+     */
+    private SplittableRandom random(long stream, long index) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + stream * 0xC2B2AE3D27D4EB4FL + index);
+    }
+}
@@ -0,0 +1,96 @@
+package com.xiaowc.partnermatch.once.dataset;
+
+import com.xiaowc.partnermatch.bulk.BulkLoader;
+import com.xiaowc.partnermatch.bulk.BulkTables;
+import com.xiaowc.partnermatch.bulk.BulkWriter;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.model.domain.UserTeam;
+import com.xiaowc.partnermatch.team.ActiveTeamCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+/**
+ * 把DatasetGenerator生成的数据边生成边写入数据库(见BulkLoader)，几千万行数据也不会占用太多内存
+ *   id在写入之前就确定了：从每张表当前最大的id之后开始分配，队伍和成员直接用这些id关联
+ *   所以写入期间不要有其他程序往这几张表中插入数据
+ */
+@Component
+@Slf4j
+public class DatasetLoader {
+
+    @Resource
+    private BulkLoader bulkLoader;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private ActiveTeamCache activeTeamCache;
+
+    /**
+     * 生成并写入数据
+     * @param seed          随机种子，同样的种子和参考时间生成的数据一样
+     * @param users         用户数
+     * @param teams         队伍数
+     * @param referenceTime 参考时间(毫秒)，过期时间、加入时间相对于这个时间生成
+     * @return 数据生成器，可以用来查看生成了哪些数据(比如压测时要登录的账号)
+     */
+    public DatasetGenerator load(long seed, int users, int teams, long referenceTime) {
+        DatasetGenerator generator = new DatasetGenerator(seed, users, referenceTime, nextId("user"), nextId("team"));
+        // 1.标签词库只写入一次
+        Long tagCount = jdbcTemplate.queryForObject("select count(*) from tag", Long.class);
+        if (tagCount == null || tagCount == 0) {
+            long tagRows = bulkLoader.load(BulkTables.TAG, generator.tags(nextId("tag")));
+            log.info("loaded {} tags", tagRows);
+        }
+        // 2.用户
+        long startTime = System.currentTimeMillis();
+        long userRows;
+        try (BulkWriter<User> writer = bulkLoader.openWriter(BulkTables.USER, null)) {
+            for (int i = 0; i < users; i++) {
+                writer.add(generator.user(i));
+            }
+            userRows = writer.finish();
+        }
+        logProgress("users", userRows, startTime);
+        // 3.队伍和队伍成员同时写入，成员必须按照队伍的顺序生成，并且要在写入队伍之前生成(可能会换队长)
+        startTime = System.currentTimeMillis();
+        long teamRows;
+        long memberRows;
+        try (BulkWriter<Team> teamWriter = bulkLoader.openWriter(BulkTables.TEAM, null);
+             BulkWriter<UserTeam> memberWriter = bulkLoader.openWriter(BulkTables.USER_TEAM, null)) {
+            for (int i = 0; i < teams; i++) {
+                Team team = generator.team(i);
+                List<UserTeam> members = generator.members(i, team);
+                teamWriter.add(team);
+                for (UserTeam userTeam : members) {
+                    memberWriter.add(userTeam);
+                }
+            }
+            teamRows = teamWriter.finish();
+            memberRows = memberWriter.finish();
+        }
+        logProgress("teams", teamRows, startTime);
+        logProgress("team members", memberRows, startTime);
+        activeTeamCache.rebuild(); // 直接写库没有经过队伍服务，重建一次公开队伍的快照
+        return generator;
+    }
+
+    /**
+     * 表中下一个可用的id
+     */
+    private long nextId(String tableName) {
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from `" + tableName + "`", Long.class);
+        return maxId == null ? 1 : maxId + 1;
+    }
+
+    private void logProgress(String name, long rows, long startTime) {
+        long costMillis = Math.max(1, System.currentTimeMillis() - startTime);
+        log.info("loaded {} {}, cost: {}ms, rows/sec: {}", rows, name, costMillis, rows * 1000 / costMillis);
+    }
+}
@@ -0,0 +1,53 @@
+package com.xiaowc.partnermatch.once.dataset;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 生成测试数据的命令，配置了 xiaowc.dataset.users 才会执行，启动方式：
+ *   java -jar partner-match-backend.jar --spring.main.web-application-type=none --xiaowc.dataset.users=10000000 --xiaowc.dataset.teams=1000000
+ * 生成的用户账号是 user+id，密码都是12345678
+ */
+@Component
+@Slf4j
+@ConfigurationProperties(prefix = "xiaowc.dataset") // 从application.yml或者命令行参数中读取
+@ConditionalOnProperty(prefix = "xiaowc.dataset", name = "users")
+@Data
+public class DatasetRunner implements CommandLineRunner {
+
+    /**
+     * 用户数
+     */
+    private int users;
+
+    /**
+     * 队伍数，默认是用户数的十分之一
+     */
+    private Integer teams;
+
+    /**
+     * 随机种子
+     */
+    private long seed = 42;
+
+    /**
+     * 参考时间(毫秒)，默认是当前时间，想要生成完全一样的数据时指定
+     */
+    private Long referenceTime;
+
+    @Resource
+    private DatasetLoader datasetLoader;
+
+    @Override
+    public void run(String... args) {
+        int teamNum = teams != null ? teams : users / 10;
+        log.info("start generating dataset, users: {}, teams: {}, seed: {}", users, teamNum, seed);
+        datasetLoader.load(seed, users, teamNum, referenceTime != null ? referenceTime : System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,108 @@
+package com.xiaowc.partnermatch.once.dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 标签词库，和tag表的结构一致，分两层：父标签(分类)和子标签
+ *   用户身上的标签都是子标签，比如"方向"下面的"java"、"前端"
+ *   有的分类是互斥的，比如一个用户只能有一个性别、一个年级
+ */
+public class TagVocabulary {
+
+    /**
+     * 标签分类(父标签)
+     */
+    public static class Category {
+
+        private final String name;
+
+        /**
+         * 是否互斥：一个用户最多只能有这个分类下的一个标签
+         */
+        private final boolean exclusive;
+
+        private final List<String> tags;
+
+        public Category(String name, boolean exclusive, String... tags) {
+            this.name = name;
+            this.exclusive = exclusive;
+            this.tags = Collections.unmodifiableList(Arrays.asList(tags));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isExclusive() {
+            return exclusive;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+    }
+
+    private final List<Category> categories;
+
+    /**
+     * 所有子标签的名称，按分类的顺序排列
+     */
+    private final List<String> leafNames = new ArrayList<>();
+
+    /**
+     * 每个子标签属于第几个分类
+     */
+    private final int[] leafCategories;
+
+    public TagVocabulary(List<Category> categories) {
+        this.categories = Collections.unmodifiableList(new ArrayList<>(categories));
+        List<Integer> leafCategoryList = new ArrayList<>();
+        for (int i = 0; i < categories.size(); i++) {
+            for (String tag : categories.get(i).getTags()) {
+                leafNames.add(tag);
+                leafCategoryList.add(i);
+            }
+        }
+        this.leafCategories = leafCategoryList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 默认词库，和前端的标签选择页一致
+     */
+    public static TagVocabulary defaultVocabulary() {
+        return new TagVocabulary(Arrays.asList(
+                new Category("性别", true, "男", "女"),
+                new Category("年级", true, "大一", "大二", "大三", "大四", "研一", "研二", "研三", "已工作"),
+                new Category("方向", false, "java", "c++", "python", "go", "前端", "后端", "算法", "测试",
+                        "运维", "安卓", "ios", "大数据", "人工智能", "嵌入式", "产品", "设计"),
+                new Category("目标", false, "考研", "考公", "求职", "实习", "竞赛", "创业", "出国", "学习"),
+                new Category("状态", true, "乐观", "有点丧", "一般", "单身", "已婚", "emo"),
+                new Category("兴趣", false, "篮球", "足球", "羽毛球", "健身", "跑步", "游戏", "音乐", "电影",
+                        "阅读", "摄影", "旅行", "美食", "动漫", "桌游", "吉他", "绘画")));
+    }
+
+    public List<Category> getCategories() {
+        return categories;
+    }
+
+    /**
+     * 子标签的数量
+     */
+    public int leafCount() {
+        return leafNames.size();
+    }
+
+    public String leafName(int leaf) {
+        return leafNames.get(leaf);
+    }
+
+    /**
+     * 子标签属于第几个分类
+     */
+    public int leafCategory(int leaf) {
+        return leafCategories[leaf];
+    }
+}
@@ -0,0 +1,43 @@
+package com.xiaowc.partnermatch.once.dataset;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 齐夫分布抽样：排名第k的元素被抽中的概率和 1/k^exponent 成正比，少数热门元素出现得很多，大量冷门元素偶尔出现
+ */
+public class ZipfSampler {
+
+    /**
+     * 累积概率，cumulative[k]表示抽到排名0~k的概率
+     */
+    private final double[] cumulative;
+
+    public ZipfSampler(int size, double exponent) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        this.cumulative = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    /**
+     * 抽取一个排名(从0开始)，二分查找累积概率
+     */
+    public int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        index = index >= 0 ? index : -index - 1;
+        return Math.min(index, cumulative.length - 1);
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+}
@@ -0,0 +1,141 @@
+package com.xiaowc.partnermatch.once.importuser;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 导入进度检查点：记录已经成功写入数据库的最后一行的行号，导入中断之后可以从这里继续
+ *
+ * 因为多个批次是并发写入的，后面的批次可能比前面的批次先写完，
+ * 所以只有在前面的批次都写完之后，检查点才会往后移动(水位线)
+ *
+ * 水位线之后已经写完的批次(最多只有线程池中正在写的那几个)也记录到检查点文件中，
+ * 继续导入时跳过这些行，不用去数据库中查哪些数据已经导入过了
+ *   一个批次是一条多行insert语句，要么全部写入要么都没写入，
+ *   只有语句执行成功、还没来得及记录检查点的时候程序挂了，这个批次才会重复导入
+ *
+ * 检查点文件格式：第一行是水位线，后面每行是一个已经写完的批次的行号范围：开始(不含),结束(含)
+ */
+@Slf4j
+public class ImportCheckpoint {
+
+    /**
+     * 检查点文件，里面只保存一个行号
+     */
+    private final Path file;
+
+    /**
+     * 上次导入已经完成的最后一行的行号，-1表示从头开始
+     */
+    private final long startRowIndex;
+
+    /**
+     * 当前已经完成的最后一行的行号
+     */
+    private long committedRowIndex;
+
+    /**
+     * 下一个要提交的批次序号
+     */
+    private long nextBatchSeq = 0;
+
+    /**
+     * 已经写完、但是前面还有批次没写完的批次：批次序号 -> 批次的行号范围
+     */
+    private final Map<Long, long[]> completedBatches = new TreeMap<>();
+
+    /**
+     * 上次导入时水位线之后已经写完的行号范围：开始(不含) -> 结束(含)
+     */
+    private final NavigableMap<Long, Long> skipRanges = new TreeMap<>();
+
+    public ImportCheckpoint(Path file) {
+        this.file = file;
+        this.startRowIndex = load(file, skipRanges);
+        this.committedRowIndex = startRowIndex;
+    }
+
+    public long getStartRowIndex() {
+        return startRowIndex;
+    }
+
+    /**
+     * 这一行上次导入的时候是不是已经写入了
+     */
+    public boolean isImported(long rowIndex) {
+        if (rowIndex <= startRowIndex) {
+            return true;
+        }
+        Map.Entry<Long, Long> range = skipRanges.lowerEntry(rowIndex);
+        return range != null && rowIndex <= range.getValue();
+    }
+
+    public synchronized long getCommittedRowIndex() {
+        return committedRowIndex;
+    }
+
+    /**
+     * 一个批次写入完成
+     * @param batchSeq 批次序号，从0开始连续递增
+     * @param firstRowIndex 这个批次之前读到的最后一行的行号(不含)
+     * @param lastRowIndex 这个批次读到的最后一行的行号
+     */
+    public synchronized void complete(long batchSeq, long firstRowIndex, long lastRowIndex) {
+        completedBatches.put(batchSeq, new long[]{firstRowIndex, lastRowIndex});
+        while (completedBatches.containsKey(nextBatchSeq)) {
+            committedRowIndex = completedBatches.remove(nextBatchSeq)[1];
+            nextBatchSeq++;
+        }
+        // 水位线没动也要保存，后面的批次写完了，中断之后不能再写一次
+        save();
+    }
+
+    private void save() {
+        StringBuilder content = new StringBuilder().append(committedRowIndex);
+        for (long[] range : completedBatches.values()) {
+            content.append('\n').append(range[0]).append(',').append(range[1]);
+        }
+        // 上次导入跳过的行还没读到水位线，这次还没写的时候又中断了，这些范围也要保留
+        for (Map.Entry<Long, Long> range : skipRanges.entrySet()) {
+            if (range.getValue() > committedRowIndex) {
+                content.append('\n').append(range.getKey()).append(',').append(range.getValue());
+            }
+        }
+        try {
+            // 先写临时文件再重命名，防止写到一半程序挂了，检查点文件损坏
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, content.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long load(Path file, Map<Long, Long> skipRanges) {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        try {
+            String[] lines = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim().split("\n");
+            long rowIndex = Long.parseLong(lines[0].trim());
+            for (int i = 1; i < lines.length; i++) {
+                String[] range = lines[i].trim().split(",");
+                skipRanges.put(Long.parseLong(range[0]), Long.parseLong(range[1]));
+            }
+            log.info("resume import from checkpoint, last committed row: {}, completed ranges after it: {}",
+                    rowIndex, skipRanges.size());
+            return rowIndex;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("invalid import checkpoint file: " + file, e);
+        }
+    }
+}
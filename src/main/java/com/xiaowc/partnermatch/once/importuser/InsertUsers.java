@@ -1,8 +1,12 @@
 package com.xiaowc.partnermatch.once.importuser;
 
+import com.xiaowc.partnermatch.bulk.BulkLoader;
+import com.xiaowc.partnermatch.bulk.BulkTables;
+import com.xiaowc.partnermatch.bulk.BulkWriter;
 import com.xiaowc.partnermatch.mapper.UserMapper;
 import com.xiaowc.partnermatch.model.domain.User;
 import com.xiaowc.partnermatch.service.UserService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StopWatch;
 
@@ -10,13 +14,15 @@ import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * 向数据库插入数据
  * 并发异步执行
  */
 @Component
+@Slf4j
 public class InsertUsers {
 
     @Resource
@@ -25,11 +31,16 @@ public class InsertUsers {
     @Resource
     private UserService userService;
 
-    // 创建一个线程池
+    @Resource
+    private BulkLoader bulkLoader;
+
+    // 批量任务的线程池，见WorkloadConfig，使用批量任务单独的连接池，不会影响接口请求
     // CPU 密集型：分配的核心线程数 = CPU - 1
-    // IO 密集型：分配的核心线程数可以大于CPU核数
-    private ExecutorService executorService = new ThreadPoolExecutor(60, 1000,
-            10000, TimeUnit.MINUTES, new ArrayBlockingQueue<>(10000));
+    // IO 密集型：分配的核心线程数可以大于CPU核数，但是超过连接池的大小也只会在连接池上排队
+    // 开启虚拟线程之后这里也不用blockingExecutor：批量任务的连接池只有几个连接，40个任务同时跑只会在连接池上等，
+    // 等的时间超过获取连接的超时时间就失败了，线程数和连接池一样大的batchExecutor让多出来的任务在队列中排队
+    @Resource(name = "batchExecutor")
+    private Executor executorService;
 
     /**
      * 批量插入用户(单线程)
@@ -124,4 +135,39 @@ public class InsertUsers {
         System.out.println(stopWatch.getTotalTimeMillis());
     }
 
+    /**
+     * 批量插入用户(多行insert语句)
+     *   saveBatch()本质上还是一行一条insert语句(JDBC批处理)，这里把很多行拼成一条insert语句，
+     *   语句的大小按照数据库的max_allowed_packet切分，写入的线程数和数据库连接池的大小一致
+     *   数据是边生成边写入的，插入1000万条也不会把内存撑爆
+     * @param insertNum 插入多少条数据
+     */
+    public void doBulkLoadUsers(int insertNum) {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+        long insertedRows;
+        try (BulkWriter<User> writer = bulkLoader.openWriter(BulkTables.USER, null)) {
+            for (int i = 0; i < insertNum; i++) {
+                User user = new User();
+                user.setUsername("xiaowc");
+                user.setUserAccount("xiaowc");
+                user.setAvatarUrl("https://img1.baidu.com/it/u=1295488586,3361919270&fm=253&fmt=auto&app=138&f=PNG?w=601&h=435");
+                user.setGender(0);
+                user.setUserPassword("12345678");
+                user.setPhone("123");
+                user.setEmail("123@qq.com");
+                user.setTags("[]");
+                user.setUserStatus(0);
+                user.setUserRole(0);
+                user.setPlanetCode("11111111");
+                writer.add(user); // 攒够一条语句就交给线程池写入，线程池满了就在当前线程写入
+            }
+            insertedRows = writer.finish(); // 等待所有语句写完
+        }
+        stopWatch.stop();
+        long costMillis = Math.max(1, stopWatch.getTotalTimeMillis());
+        log.info("bulk load {} rows, threads: {}, cost: {}ms, rows/sec: {}", insertedRows, bulkLoader.getThreads(),
+                costMillis, insertedRows * 1000 / costMillis);
+    }
+
 }
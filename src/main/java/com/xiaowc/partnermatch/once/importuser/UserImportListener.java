@@ -0,0 +1,120 @@
+package com.xiaowc.partnermatch.once.importuser;
+
+import com.alibaba.excel.context.AnalysisContext;
+import com.alibaba.excel.read.listener.ReadListener;
+import com.xiaowc.partnermatch.bulk.BulkWriter;
+import com.xiaowc.partnermatch.model.domain.User;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 流式导入星球用户的监听器
+ *   和同步读(doReadSync)不同，这里不会把整个表格读到一个List中，而是一行一行地读：
+ *   1.每读一行就交给批量写入器，攒够一条多行insert语句就交给线程池写入，内存中最多只有几条语句的数据
+ *   2.写入线程池的队列是有界的，队列满了之后由读表格的线程自己去执行写入，
+ *     这样读的速度就会被写的速度拖慢(背压)，不会因为读得太快把内存撑爆
+ *   3.按星球编号去重(HashSet)，只记录表格中出现过的编号，不会去数据库中查
+ *   4.定期打印导入速度(行/秒)，并记录检查点，中断之后可以从检查点继续导入
+ */
+@Slf4j
+public class UserImportListener implements ReadListener<XingQiuTableUserInfo> {
+
+    private final BulkWriter<User> writer;
+
+    private final long reportIntervalRows;
+
+    private final ImportCheckpoint checkpoint;
+
+    /**
+     * 表格中已经出现过的星球编号，用于去重
+     */
+    private final Set<String> planetCodeSet = new HashSet<>();
+
+    private long readRows = 0;
+
+    private long duplicateRows = 0;
+
+    private final long startTime;
+
+    private long lastReportTime;
+
+    private long lastReportRows = 0;
+
+    /**
+     * @param writer 批量写入器，写入完成时需要回调检查点
+     * @param reportIntervalRows 每读多少行打印一次导入速度
+     * @param checkpoint 检查点
+     */
+    public UserImportListener(BulkWriter<User> writer, long reportIntervalRows, ImportCheckpoint checkpoint) {
+        this.writer = writer;
+        this.reportIntervalRows = reportIntervalRows;
+        this.checkpoint = checkpoint;
+        this.startTime = System.currentTimeMillis();
+        this.lastReportTime = startTime;
+    }
+
+    /**
+     * 每读一条数据都会调用这个方法
+     * @param data 当前读到的这条数据
+     * @param context 上下文，当前读取的进度之类的
+     */
+    @Override
+    public void invoke(XingQiuTableUserInfo data, AnalysisContext context) {
+        long rowIndex = context.readRowHolder().getRowIndex();
+        readRows++;
+        String planetCode = StringUtils.trim(data.getPlanetCode());
+        // 上次已经导入过的行直接跳过，星球编号还是要记下来，后面重复的行才能被去掉
+        if (checkpoint.isImported(rowIndex)) {
+            if (StringUtils.isNotBlank(planetCode)) {
+                planetCodeSet.add(planetCode);
+            }
+            return;
+        }
+        if (StringUtils.isBlank(planetCode) || !planetCodeSet.add(planetCode)) { // 星球编号为空或者重复
+            duplicateRows++;
+        } else {
+            User user = new User();
+            user.setUsername(data.getUsername());
+            user.setPlanetCode(planetCode);
+            user.setUserPassword(""); // 导入的用户没有密码，需要用户自己设置
+            writer.add(user); // 写入失败时这里会抛出异常，停止读取
+        }
+        writer.mark(rowIndex); // 这一行处理完了
+        if (readRows % reportIntervalRows == 0) {
+            report();
+        }
+    }
+
+    /**
+     * 所有数据解析完成了 都会来调用
+     * @param context
+     */
+    @Override
+    public void doAfterAllAnalysed(AnalysisContext context) {
+        long insertedRows;
+        try {
+            insertedRows = writer.finish();
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException("import failed, resume from checkpoint row " + checkpoint.getCommittedRowIndex(), e);
+        }
+        long costMillis = Math.max(1, System.currentTimeMillis() - startTime);
+        log.info("import finished, read rows: {}, inserted rows: {}, duplicate or blank rows: {}, cost: {}ms, rows/sec: {}",
+                readRows, insertedRows, duplicateRows, costMillis, insertedRows * 1000 / costMillis);
+    }
+
+    /**
+     * 打印导入速度
+     */
+    private void report() {
+        long now = System.currentTimeMillis();
+        long inserted = writer.getWrittenRows();
+        long intervalMillis = Math.max(1, now - lastReportTime);
+        log.info("read rows: {}, inserted rows: {}, rows/sec: {}, checkpoint row: {}", readRows, inserted,
+                (inserted - lastReportRows) * 1000 / intervalMillis, checkpoint.getCommittedRowIndex());
+        lastReportTime = now;
+        lastReportRows = inserted;
+    }
+}
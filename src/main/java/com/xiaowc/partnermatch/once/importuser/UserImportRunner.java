@@ -0,0 +1,65 @@
+package com.xiaowc.partnermatch.once.importuser;
+
+import com.alibaba.excel.EasyExcel;
+import com.xiaowc.partnermatch.bulk.BulkLoader;
+import com.xiaowc.partnermatch.bulk.BulkTables;
+import com.xiaowc.partnermatch.bulk.BulkWriter;
+import com.xiaowc.partnermatch.model.domain.User;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 导入星球用户的命令，配置了 xiaowc.import.file 才会执行，启动方式：
+ *   java -jar partner-match-backend.jar --spring.main.web-application-type=none --xiaowc.import.file=/data/users.xlsx
+ * 中断之后用同样的命令再执行一次，就会从检查点文件记录的行继续导入
+ */
+@Component
+@Slf4j
+@ConfigurationProperties(prefix = "xiaowc.import") // 从application.yml或者命令行参数中读取
+@ConditionalOnProperty(prefix = "xiaowc.import", name = "file")
+@Data
+public class UserImportRunner implements CommandLineRunner {
+
+    /**
+     * 要导入的表格文件
+     */
+    private String file;
+
+    /**
+     * 检查点文件，默认是表格文件名加上.checkpoint
+     */
+    private String checkpointFile;
+
+    /**
+     * 每读多少行打印一次导入速度
+     */
+    private long reportIntervalRows = 100000;
+
+    @Resource
+    private BulkLoader bulkLoader;
+
+    @Override
+    public void run(String... args) {
+        Path checkpointPath = Paths.get(checkpointFile != null ? checkpointFile : file + ".checkpoint");
+        // 断点续传：检查点中记录了哪些行已经写入了，跳过这些行就行，不用把数据库中已有的星球编号都查出来
+        ImportCheckpoint checkpoint = new ImportCheckpoint(checkpointPath);
+        log.info("start importing users from {}", file);
+        // 每条语句写完之后记录检查点，语句的序号和检查点的批次序号一一对应
+        // 读表格出异常时，关闭写入器会等已经提交的语句写完，写入的线程是守护线程，不会让进程退不出去
+        try (BulkWriter<User> writer = bulkLoader.openWriter(BulkTables.USER,
+                (chunkSeq, rows, previousMark, mark) -> checkpoint.complete(chunkSeq, previousMark, mark))) {
+            // 通过监听器一行一行地读，不会把整个表格读到内存中
+            EasyExcel.read(file, XingQiuTableUserInfo.class,
+                    new UserImportListener(writer, reportIntervalRows, checkpoint))
+                    .sheet().doRead();
+        }
+    }
+}
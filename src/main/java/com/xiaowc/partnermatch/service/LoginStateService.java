@@ -0,0 +1,39 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.model.domain.User;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 登录态服务：保存、获取、移除当前用户的登录态
+ *   有session和token两种实现，通过 xiaowc.auth.mode 配置切换
+ */
+public interface LoginStateService {
+
+    /**
+     * 登录成功后保存登录态
+     * @param safetyUser 脱敏后的用户
+     * @param request
+     */
+    void saveLoginState(User safetyUser, HttpServletRequest request);
+
+    /**
+     * 获取当前登录用户
+     * @param request
+     * @return 未登录返回null
+     */
+    User getLoginUser(HttpServletRequest request);
+
+    /**
+     * 获取当前登录用户的角色
+     * @param request
+     * @return 未登录返回null
+     */
+    Integer getLoginUserRole(HttpServletRequest request);
+
+    /**
+     * 退出登录，移除登录态
+     * @param request
+     */
+    void removeLoginState(HttpServletRequest request);
+}
@@ -1,10 +1,12 @@
 package com.xiaowc.partnermatch.service;
 
+import com.xiaowc.partnermatch.common.FieldSelection;
 import com.xiaowc.partnermatch.model.domain.User;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * @author xiaowc
@@ -54,6 +56,42 @@ public interface UserService extends IService<User> {
      */
     List<User> searchUsersByTags(List<String> tagNameList);
 
+    /**
+     * 根据标签搜索用户，只查询和返回需要的字段
+     * @param tagNameList 用户拥有的标签
+     * @param fieldSelection 要返回的字段
+     * @return 返回匹配标签的用户
+     */
+    List<User> searchUsersByTags(List<String> tagNameList, FieldSelection fieldSelection);
+
+    /**
+     * 根据用户名搜索用户(管理员)，支持前缀和中间匹配，按匹配程度排序并分页
+     * @param username 用户名关键词，为空时按id分页返回所有用户
+     * @param pageNum 第几页
+     * @param pageSize 每页多少条，超过上限按上限算
+     * @param fieldSelection 要返回的字段
+     * @return 返回脱敏后的用户
+     */
+    List<User> searchUsersByUsername(String username, long pageNum, long pageSize, FieldSelection fieldSelection);
+
+    /**
+     * 流式按用户名搜索用户(管理员导出)，不分页，查出一个就交给consumer一个，不在内存中攒结果
+     * @param username 用户名关键词，为空时按id顺序返回所有用户
+     * @param fieldSelection 要返回的字段
+     * @param consumer 处理每个脱敏后的用户(比如写到响应中)
+     * @return 返回的用户数
+     */
+    long streamUsersByUsername(String username, FieldSelection fieldSelection, Consumer<User> consumer);
+
+    /**
+     * 流式根据标签搜索用户，不在内存中攒结果
+     * @param tagNameList 用户拥有的标签
+     * @param fieldSelection 要返回的字段
+     * @param consumer 处理每个脱敏后的用户(比如写到响应中)
+     * @return 返回的用户数
+     */
+    long streamUsersByTags(List<String> tagNameList, FieldSelection fieldSelection, Consumer<User> consumer);
+
     /**
      * 更新用户信息
      * @param user
@@ -89,4 +127,13 @@ public interface UserService extends IService<User> {
      * @return 返回匹配到的用户
      */
     List<User> matchUsers(long num, User loginUser);
+
+    /**
+     * 用户匹配，只查询和返回需要的字段
+     * @param num 匹配多少个用户
+     * @param loginUser 当前登录的用户
+     * @param fieldSelection 要返回的字段
+     * @return 返回匹配到的用户
+     */
+    List<User> matchUsers(long num, User loginUser, FieldSelection fieldSelection);
 }
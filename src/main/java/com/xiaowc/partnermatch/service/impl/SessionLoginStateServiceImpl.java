@@ -0,0 +1,47 @@
+package com.xiaowc.partnermatch.service.impl;
+
+import com.xiaowc.partnermatch.constant.UserConstant;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.service.LoginStateService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * 登录态存在session中(session存在redis中)
+ */
+@Service
+@ConditionalOnProperty(prefix = "xiaowc.auth", name = "mode", havingValue = "session", matchIfMissing = true)
+public class SessionLoginStateServiceImpl implements LoginStateService {
+
+    @Override
+    public void saveLoginState(User safetyUser, HttpServletRequest request) {
+        request.getSession().setAttribute(UserConstant.USER_LOGIN_STATE, safetyUser);
+    }
+
+    @Override
+    public User getLoginUser(HttpServletRequest request) {
+        // getSession(false)表示没有session时不新建，避免未登录的请求也往redis中写一个空session
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return null;
+        }
+        return (User) session.getAttribute(UserConstant.USER_LOGIN_STATE);
+    }
+
+    @Override
+    public Integer getLoginUserRole(HttpServletRequest request) {
+        User user = getLoginUser(request);
+        return user == null ? null : user.getUserRole();
+    }
+
+    @Override
+    public void removeLoginState(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            session.removeAttribute(UserConstant.USER_LOGIN_STATE);
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package com.xiaowc.partnermatch.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.xiaowc.partnermatch.common.ErrorCode;
+import com.xiaowc.partnermatch.common.FieldSelection;
+import com.xiaowc.partnermatch.constant.TeamConstant;
+import com.xiaowc.partnermatch.convert.TeamConverter;
+import com.xiaowc.partnermatch.convert.UserConverter;
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.event.DomainEventBus;
 import com.xiaowc.partnermatch.exception.BusinessException;
 import com.xiaowc.partnermatch.mapper.TeamMapper;
 import com.xiaowc.partnermatch.model.domain.Team;
@@ -14,15 +21,17 @@ import com.xiaowc.partnermatch.model.request.TeamJoinRequest;
 import com.xiaowc.partnermatch.model.request.TeamQuitRequest;
 import com.xiaowc.partnermatch.model.request.TeamUpdateRequest;
 import com.xiaowc.partnermatch.model.vo.TeamUserVO;
-import com.xiaowc.partnermatch.model.vo.UserVO;
+import com.xiaowc.partnermatch.monitor.LockMonitor;
+import com.xiaowc.partnermatch.monitor.MonitoredLock;
+import com.xiaowc.partnermatch.monitor.event.JfrSupport;
+import com.xiaowc.partnermatch.monitor.event.JoinTeamEvent;
+import com.xiaowc.partnermatch.monitor.event.ListTeamsEvent;
 import com.xiaowc.partnermatch.service.TeamService;
 import com.xiaowc.partnermatch.service.UserService;
 import com.xiaowc.partnermatch.service.UserTeamService;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
-import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -45,7 +54,31 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
     private UserService userService;
 
     @Resource
-    private RedissonClient redissonClient;
+    private LockMonitor lockMonitor;
+
+    /**
+     * 加入队伍时抢锁最多等待的时间(秒)
+     */
+    private static final long JOIN_TEAM_LOCK_WAIT_SECONDS = 10;
+
+    /**
+     * 全文索引ngram分词的长度(mysql的ngram_token_size，默认是2)，比这个短的关键词全文索引搜不到，还是用模糊查询
+     */
+    private static final int NGRAM_TOKEN_SIZE = 2;
+
+    /**
+     * 全文搜索一页最多返回多少个队伍
+     */
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
+
+    /**
+     * 是否使用全文索引搜索队伍，没有建全文索引的库(比如h2)要关闭
+     */
+    @Value("${xiaowc.team.full-text-search:true}")
+    private boolean fullTextSearchEnabled;
+
+    @Resource
+    private DomainEventBus domainEventBus; // 队伍有变化时发布事件，事务提交后通知各个服务器上的缓存
 
     /**
      * 添加队伍
@@ -126,6 +159,8 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         if (!result) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "创建队伍失败");
         }
+        // 事务提交后每台服务器收到事件，把快要过期的队伍放入自己的时间轮(见TeamExpiryJob)
+        domainEventBus.publish(DomainEvent.Type.TEAM_CREATED, teamId);
         return team.getId(); // 创建队伍成功
     }
 
@@ -138,7 +173,16 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
      */
     @Override
     public List<TeamUserVO> listTeams(TeamQuery teamQuery, boolean isAdmin) {
+        ListTeamsEvent event = null; // JFR事件，记录查出了多少队伍、发了多少条sql
+        if (JfrSupport.AVAILABLE) {
+            event = new ListTeamsEvent();
+            event.begin();
+        }
         QueryWrapper<Team> queryWrapper = new QueryWrapper<>();
+        String fullTextSearchText = null; // 不为空表示使用全文索引搜索
+        // 只查要返回的列，不查密码；id和创建人id后面要用，一定要查
+        FieldSelection fieldSelection = FieldSelection.parse(teamQuery == null ? null : teamQuery.getFields());
+        queryWrapper.select(fieldSelection.columns(TeamConstant.SAFE_COLUMNS, "id", "userId"));
         // 1.组合查询条件
         if (teamQuery != null) {
             // (1)根据id来进行查询，精确查询
@@ -150,9 +194,13 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
             if (CollectionUtils.isNotEmpty(idList)) {
                 queryWrapper.in("id", idList);
             }
-            // (2)搜索关键词(同时对队伍名称和描述搜索)，有一个满足条件就可以查询出来，模糊查询
-            String searchText = teamQuery.getSearchText();
-            if (StringUtils.isNotBlank(searchText)) {
+            // (2)搜索关键词(同时对队伍名称和描述搜索)
+            //   模糊查询 like '%关键词%' 用不了索引，每次都要扫描整张表，所以优先用全文索引搜索，并按相关度排序
+            String searchText = StringUtils.trim(teamQuery.getSearchText());
+            if (fullTextSearchEnabled && StringUtils.length(searchText) >= NGRAM_TOKEN_SIZE) {
+                queryWrapper.apply("match(name, description) against ({0} in natural language mode)", searchText);
+                fullTextSearchText = searchText;
+            } else if (StringUtils.isNotBlank(searchText)) {
                 queryWrapper.and(qw -> qw.like("name", searchText).or().like("description", searchText));
             }
             // (3)根据队伍名字来进行查询，模糊查询
@@ -190,10 +238,25 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         }
         // (8)不展示已过期的队伍，有一个满足条件就可以查出来
         // expireTime is null or expireTime > now()
+        // 和status一起走组合索引idx_status_expireTime，是两段范围扫描，已过期的队伍在索引中就被跳过了，不用回表
         queryWrapper.and(qw -> qw.gt("expireTime", new Date()).or().isNull("expireTime"));
         // 2.开始查询
-        List<Team> teamList = this.list(queryWrapper); // 从数据库中去查询
+        List<Team> teamList;
+        if (fullTextSearchText != null) {
+            // 全文搜索按相关度排序，不查总数；请求中带了分页参数才分页，没带的返回全部结果(size为-1不分页)
+            Page<Team> page = new Page<>(1, -1, false);
+            if (teamQuery.isPaged()) {
+                int pageSize = teamQuery.getPageSize() > 0 ? Math.min(teamQuery.getPageSize(), MAX_SEARCH_PAGE_SIZE) : 10;
+                page = new Page<>(teamQuery.getPageNum(), pageSize, false);
+            }
+            queryWrapper.eq("isDelete", 0); // 自定义的sql不会自动加上逻辑删除的条件
+            teamList = this.baseMapper.searchTeams(page, fullTextSearchText, queryWrapper).getRecords();
+        } else {
+            teamList = this.list(queryWrapper); // 从数据库中去查询
+        }
+        int queries = 1;
         if (CollectionUtils.isEmpty(teamList)) {
+            commitListTeamsEvent(event, 0, queries, isAdmin);
             return new ArrayList<>();
         }
         List<TeamUserVO> teamUserVOList = new ArrayList<>();
@@ -206,25 +269,41 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         //   select * from team t
         //                 left join user_team ut on t.id = ut.teamId
         //                 left join user u on ut.userId = u.id;
+        boolean needCreateUser = fieldSelection.contains("createUser"); // 不要创建人时不用查
         for (Team team : teamList) {
             Long userId = team.getUserId();
             if (userId == null) {
                 continue;
             }
-            User user = userService.getById(userId); // 通过id查询用户信息
-            TeamUserVO teamUserVO = new TeamUserVO();
-            BeanUtils.copyProperties(team, teamUserVO); // 将team的信息传给teamUserVO中
+            User user = null;
+            if (needCreateUser) {
+                user = userService.getById(userId); // 通过id查询用户信息
+                queries++;
+            }
+            TeamUserVO teamUserVO = TeamConverter.INSTANCE.toTeamUserVO(team); // 将team的信息传给teamUserVO中
             // 脱敏用户信息
             if (user != null) {
-                UserVO userVO = new UserVO();
-                BeanUtils.copyProperties(user, userVO); // 将user的信息传给userVO
-                teamUserVO.setCreateUser(userVO);
+                teamUserVO.setCreateUser(UserConverter.INSTANCE.toUserVO(user)); // 将user的信息传给userVO
             }
             teamUserVOList.add(teamUserVO);
         }
+        commitListTeamsEvent(event, teamList.size(), queries, isAdmin);
         return teamUserVOList;
     }
 
+    private void commitListTeamsEvent(ListTeamsEvent event, int teams, int queries, boolean isAdmin) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.teams = teams;
+            event.queries = queries;
+            event.admin = isAdmin;
+            event.commit();
+        }
+    }
+
     /**
      * 更新队伍的信息
      * @param teamUpdateRequest 要更新的队伍的信息
@@ -255,9 +334,12 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
                 throw new BusinessException(ErrorCode.PARAMS_ERROR, "加密房间必须要设置密码");
             }
         }
-        Team updateTeam = new Team();
-        BeanUtils.copyProperties(teamUpdateRequest, updateTeam); // 将teamUpdateRequest对象中的值赋值到updateTeam中，返回给前端
-        return this.updateById(updateTeam); // 自动识别到updateTeam对象的id，来根据id进行更新
+        Team updateTeam = TeamConverter.INSTANCE.fromUpdateRequest(teamUpdateRequest); // 将teamUpdateRequest对象中的值赋值到updateTeam中
+        boolean result = this.updateById(updateTeam); // 自动识别到updateTeam对象的id，来根据id进行更新
+        if (result) { // 修改了过期时间的队伍，收到事件后重新放入时间轮
+            domainEventBus.publish(DomainEvent.Type.TEAM_UPDATED, id);
+        }
+        return result;
     }
 
     /**
@@ -298,56 +380,75 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         // 5.用户最多加入5个队伍(注意：并发请求时可能会出现问题，请求同时进来，可能会超过5个)
         Long userId = loginUser.getId();
         // 分布式锁：只有一个线程可以获取到锁
-        RLock lock = redissonClient.getLock("xiaowc:join_team"); // 创建一个锁
+        MonitoredLock lock = lockMonitor.getLock("xiaowc:join_team"); // 创建一个锁，会记录等待和持有锁的时间
+        JoinTeamEvent event = null; // JFR事件，记录等锁的时间和最终结果
+        if (JfrSupport.AVAILABLE) {
+            event = new JoinTeamEvent();
+            event.begin();
+        }
+        String outcome = "rejected";
         try {
             // 尝试获取锁，获取成功会返回true，将第二个参数改为-1，可以实现续锁
-            //   1.waitTime设置为0，只抢一次，抢不到就放弃
+            //   1.抢不到锁时最多等待JOIN_TEAM_LOCK_WAIT_SECONDS秒，redisson会订阅锁释放的消息再去抢，不用自己写循环一直抢
             //   2.注意释放锁要写在finally中
             //   3.看门狗机制：redisson中提供的续期机制。开一个监听线程，如果方法还没执行完，就帮你重置redis锁的过期时间
             //      将leastTime设置为-1就会开启看门狗续期机制
             //     原理：1.监听当前线程，默认看门狗机制过期时间是30秒，每10秒续期一次(补到30秒)，防止宕机
             //           2.如果线程挂掉(注意debug模式也会被他当成服务器宕机)，则不会续期
-
+            if (!lock.tryLock(JOIN_TEAM_LOCK_WAIT_SECONDS, -1, TimeUnit.SECONDS)) {
+                outcome = "lock_timeout";
+                throw new BusinessException(ErrorCode.TOO_MANY_REQUESTS, "加入队伍的人太多，请稍后重试");
+            }
             // 抢到锁后并执行
-            while (true) {
-                if (lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) { // 所有线程都去抢这个锁
-                    System.out.println("getLock: " + Thread.currentThread().getId());
-                    QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
-                    userTeamQueryWrapper.eq("userId", userId);
-                    long hasJoinNum = userTeamService.count(userTeamQueryWrapper); // 查询当前用户加入了多少个队伍
-                    if (hasJoinNum > 5) {
-                        throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户最多创建和加入5个队伍");
-                    }
-                    // 6.不能重复加入已加入的队伍
-                    userTeamQueryWrapper = new QueryWrapper<>();
-                    userTeamQueryWrapper.eq("userId", userId);
-                    userTeamQueryWrapper.eq("teamId", teamId);
-                    long hasUserJoinTeam = userTeamService.count(userTeamQueryWrapper); // 查询用户是否已加入改队伍
-                    if (hasUserJoinTeam > 0) {
-                        throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户已加入改队伍");
-                    }
-                    // 7.已加入的队伍的人数
-                    long teamHasJoinNum = this.countTeamUserByTeamId(teamId); // 根据teamId查询已加入队伍的人数
-                    if (teamHasJoinNum >= team.getMaxNum()) {
-                        throw new BusinessException(ErrorCode.PARAMS_ERROR, "队伍已满");
-                    }
-                    // 8.新增队伍-用户关联信息
-                    UserTeam userTeam = new UserTeam();
-                    userTeam.setUserId(userId);
-                    userTeam.setTeamId(teamId);
-                    userTeam.setJoinTime(new Date());
-                    return userTeamService.save(userTeam);
-                }
+            QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
+            userTeamQueryWrapper.eq("userId", userId);
+            long hasJoinNum = userTeamService.count(userTeamQueryWrapper); // 查询当前用户加入了多少个队伍
+            if (hasJoinNum > 5) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户最多创建和加入5个队伍");
             }
+            // 6.不能重复加入已加入的队伍
+            userTeamQueryWrapper = new QueryWrapper<>();
+            userTeamQueryWrapper.eq("userId", userId);
+            userTeamQueryWrapper.eq("teamId", teamId);
+            long hasUserJoinTeam = userTeamService.count(userTeamQueryWrapper); // 查询用户是否已加入改队伍
+            if (hasUserJoinTeam > 0) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户已加入改队伍");
+            }
+            // 7.已加入的队伍的人数
+            long teamHasJoinNum = this.countTeamUserByTeamId(teamId); // 根据teamId查询已加入队伍的人数
+            if (teamHasJoinNum >= team.getMaxNum()) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "队伍已满");
+            }
+            // 8.新增队伍-用户关联信息
+            UserTeam userTeam = new UserTeam();
+            userTeam.setUserId(userId);
+            userTeam.setTeamId(teamId);
+            userTeam.setJoinTime(new Date());
+            boolean result = userTeamService.save(userTeam);
+            domainEventBus.publish(DomainEvent.Type.TEAM_MEMBERS_CHANGED, teamId); // 已加入人数变了
+            outcome = "joined";
+            return result;
         } catch (InterruptedException e) {
-            log.error("doCacheRecommendUser error", e);
+            log.error("joinTeam error", e);
+            Thread.currentThread().interrupt();
+            outcome = "interrupted";
             return false;
         } finally { // 最后执行完这个逻辑再把锁释放掉
             // 只能自己释放锁
             if (lock.isHeldByCurrentThread()) { // 判断当前的锁是不是自己的锁
-                System.out.println("unlock: " + Thread.currentThread().getId());
                 lock.unlock();
             }
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.userId = userId;
+                    event.teamId = teamId;
+                    event.lockWaitTime = lock.getWaitNanos();
+                    event.contended = lock.isContended();
+                    event.outcome = outcome;
+                    event.commit();
+                }
+            }
         }
     }
 
@@ -385,6 +486,7 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         if (teamHasJoinNum == 1) {
             // 删除当前用户和这个队伍的关系
             this.removeById(teamId);
+            domainEventBus.publish(DomainEvent.Type.TEAM_DELETED, teamId);
         } else {
             // 队伍还剩至少两人
             // 是否为队长
@@ -412,6 +514,7 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
             }
         }
         // (3)删除当前用户和这个队伍的关系
+        domainEventBus.publish(DomainEvent.Type.TEAM_MEMBERS_CHANGED, teamId); // 已加入人数或者队长变了
         return userTeamService.remove(queryWrapper);
     }
 
@@ -439,7 +542,8 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         if (!result) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "删除队伍关联信息失败");
         }
-        // 5.删除队伍
+        // 5.删除队伍，事务提交后每台服务器收到事件，从自己的时间轮中取消
+        domainEventBus.publish(DomainEvent.Type.TEAM_DELETED, teamId);
         return this.removeById(teamId);
     }
 
@@ -0,0 +1,184 @@
+package com.xiaowc.partnermatch.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xiaowc.partnermatch.config.AuthConfig;
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.service.LoginStateService;
+import com.xiaowc.partnermatch.service.UserService;
+import com.xiaowc.partnermatch.utils.TokenUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录态存在签名令牌中(无状态)
+ *   1.登录时签发令牌，通过响应头和cookie返回给前端
+ *   2.之后每个请求在本地校验令牌的签名和过期时间，角色直接从令牌中取，isAdmin()不需要任何网络请求
+ *   3.登录用户的详细信息在本地缓存一小段时间，过期后再从数据库中查
+ *   4.退出登录时把令牌id放到本地的黑名单中，直到令牌过期
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(prefix = "xiaowc.auth", name = "mode", havingValue = "token")
+public class TokenLoginStateServiceImpl implements LoginStateService {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    /**
+     * 当前请求中校验过的令牌，避免同一个请求中重复校验
+     */
+    private static final String TOKEN_PAYLOAD_ATTRIBUTE = TokenLoginStateServiceImpl.class.getName() + ".payload";
+
+    @Resource
+    private AuthConfig authConfig;
+
+    @Lazy // 用户服务也依赖登录态服务，这里延迟注入，避免循环依赖
+    @Resource
+    private UserService userService;
+
+    /**
+     * 登录用户信息的本地缓存：用户id -> 脱敏后的用户，用户信息修改后通过领域事件删除
+     */
+    private Cache<Long, User> loginUserCache;
+
+    /**
+     * 已退出登录的令牌id(黑名单)
+     */
+    private Cache<String, Boolean> revokedTokenCache;
+
+    @PostConstruct
+    public void init() {
+        // 密钥不对直接启动失败，不能带着可以被伪造的令牌上线
+        TokenUtils.checkSecret(authConfig.getTokenSecret());
+        loginUserCache = Caffeine.newBuilder()
+                .expireAfterWrite(authConfig.getUserCacheSeconds(), TimeUnit.SECONDS)
+                .maximumSize(100000)
+                .build();
+        revokedTokenCache = Caffeine.newBuilder()
+                .expireAfterWrite(authConfig.getTokenExpireSeconds(), TimeUnit.SECONDS) // 令牌过期之后就不用再拉黑了
+                .maximumSize(100000)
+                .build();
+    }
+
+    @Override
+    public void saveLoginState(User safetyUser, HttpServletRequest request) {
+        long expireAt = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + authConfig.getTokenExpireSeconds();
+        TokenUtils.TokenPayload payload = new TokenUtils.TokenPayload(safetyUser.getId(),
+                safetyUser.getUserRole() == null ? 0 : safetyUser.getUserRole(), expireAt,
+                UUID.randomUUID().toString().replace("-", ""));
+        String token = TokenUtils.sign(payload, authConfig.getTokenSecret());
+        loginUserCache.put(safetyUser.getId(), safetyUser);
+        HttpServletResponse response = getCurrentResponse();
+        if (response == null) {
+            log.warn("no response bound to current thread, login token not written");
+            return;
+        }
+        response.setHeader(authConfig.getTokenHeader(), BEARER_PREFIX + token);
+        response.addCookie(buildTokenCookie(token, (int) authConfig.getTokenExpireSeconds()));
+    }
+
+    @Override
+    public User getLoginUser(HttpServletRequest request) {
+        TokenUtils.TokenPayload payload = resolvePayload(request);
+        if (payload == null) {
+            return null;
+        }
+        // 本地缓存中没有，再去数据库中查询
+        return loginUserCache.get(payload.getUserId(), userId -> userService.getSafetyUser(userService.getById(userId)));
+    }
+
+    @Override
+    public Integer getLoginUserRole(HttpServletRequest request) {
+        TokenUtils.TokenPayload payload = resolvePayload(request);
+        return payload == null ? null : payload.getUserRole();
+    }
+
+    /**
+     * 用户信息修改了(包括其他服务器上的修改)，删除本地缓存的登录用户信息
+     */
+    @EventListener
+    public void onDomainEvent(DomainEvent event) {
+        if (event.getType() == DomainEvent.Type.USER_UPDATED) {
+            loginUserCache.invalidate(event.getId());
+        }
+    }
+
+    @Override
+    public void removeLoginState(HttpServletRequest request) {
+        TokenUtils.TokenPayload payload = resolvePayload(request);
+        if (payload != null) {
+            revokedTokenCache.put(payload.getTokenId(), Boolean.TRUE);
+            loginUserCache.invalidate(payload.getUserId());
+        }
+        HttpServletResponse response = getCurrentResponse();
+        if (response != null) {
+            response.addCookie(buildTokenCookie("", 0)); // 删除cookie
+        }
+    }
+
+    /**
+     * 从请求头或者cookie中取出令牌并校验
+     * @param request
+     * @return 未携带令牌、令牌无效或者已退出登录都返回null
+     */
+    private TokenUtils.TokenPayload resolvePayload(HttpServletRequest request) {
+        Object cached = request.getAttribute(TOKEN_PAYLOAD_ATTRIBUTE);
+        if (cached != null) {
+            return (TokenUtils.TokenPayload) cached;
+        }
+        String token = null;
+        String header = request.getHeader(authConfig.getTokenHeader());
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            token = header.substring(BEARER_PREFIX.length());
+        } else if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (authConfig.getTokenCookieName().equals(cookie.getName())) {
+                    token = cookie.getValue();
+                    break;
+                }
+            }
+        }
+        if (StringUtils.isBlank(token)) {
+            return null;
+        }
+        TokenUtils.TokenPayload payload = TokenUtils.verify(token, authConfig.getTokenSecret(),
+                TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+        if (payload == null || revokedTokenCache.getIfPresent(payload.getTokenId()) != null) {
+            return null;
+        }
+        request.setAttribute(TOKEN_PAYLOAD_ATTRIBUTE, payload);
+        return payload;
+    }
+
+    private Cookie buildTokenCookie(String token, int maxAge) {
+        Cookie cookie = new Cookie(authConfig.getTokenCookieName(), token);
+        cookie.setHttpOnly(true); // 前端js读不到，防止xss盗取令牌
+        cookie.setPath("/");
+        cookie.setMaxAge(maxAge);
+        return cookie;
+    }
+
+    private HttpServletResponse getCurrentResponse() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes instanceof ServletRequestAttributes) {
+            return ((ServletRequestAttributes) requestAttributes).getResponse();
+        }
+        return null;
+    }
+}
@@ -2,25 +2,35 @@ package com.xiaowc.partnermatch.service.impl;
 import java.util.*;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import com.xiaowc.partnermatch.common.ErrorCode;
+import com.xiaowc.partnermatch.common.FieldSelection;
+import com.xiaowc.partnermatch.convert.UserConverter;
 import com.xiaowc.partnermatch.constant.UserConstant;
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.event.DomainEventBus;
 import com.xiaowc.partnermatch.exception.BusinessException;
 import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.monitor.event.JfrSupport;
+import com.xiaowc.partnermatch.monitor.event.MatchUsersEvent;
+import com.xiaowc.partnermatch.service.LoginStateService;
 import com.xiaowc.partnermatch.service.UserService;
+import com.xiaowc.partnermatch.tag.TagCodec;
 import com.xiaowc.partnermatch.mapper.UserMapper;
 import com.xiaowc.partnermatch.utils.AlgorithmUtils;
-import javafx.util.Pair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.ibatis.session.ResultHandler;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.DigestUtils;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -39,11 +49,41 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     @Resource
     private UserMapper userMapper; // 使用userMapper可以不用写sql自动进行增删改查
 
+    @Resource
+    private LoginStateService loginStateService; // 登录态存在session还是令牌中，由配置决定
+
+    @Resource
+    private TagCodec tagCodec; // 标签json解析成标签id，并按用户缓存解析结果
+
+    @Resource
+    private DomainEventBus domainEventBus; // 用户有变化时发布事件，通知各个服务器上的缓存失效
+
     /**
      * 盐值，混淆密码
      */
     private static final String SALT = "xiaowc";
 
+    /**
+     * 全文索引ngram分词的长度(mysql的ngram_token_size，默认是2)，比这个短的关键词只做前缀匹配
+     */
+    private static final int NGRAM_TOKEN_SIZE = 2;
+
+    /**
+     * 按用户名搜索一页最多返回多少个用户
+     */
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
+
+    /**
+     * 按用户名搜索最多能翻到第几条，再往后不查了，避免深分页扫描大量数据
+     */
+    private static final int MAX_SEARCH_RESULTS = 1000;
+
+    /**
+     * 是否使用全文索引按用户名搜索，没有建全文索引的库(比如h2)要关闭
+     */
+    @Value("${xiaowc.user.full-text-search:true}")
+    private boolean fullTextSearchEnabled;
+
     /**
      * 用户注册
      * @param userAccount 用户账户
@@ -109,6 +149,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (!saveResult) { // 保存数据失败直接返回-1
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "新用户保存到数据库失败"); // 改进：利用自定义的全局异常类来处理
         }
+        domainEventBus.publish(DomainEvent.Type.USER_CREATED, user.getId());
         return user.getId();
     }
 
@@ -163,7 +204,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         // (4)前端再次请去后端的时候(相同的域名)，在请求头中带上cookie去请求
         // (5)后端拿到前端传来的cookie，找到对应的session
         // (6)后端从session中可以取出基于该session存储的变量(用户的登录信息，登录名)
-        request.getSession().setAttribute(UserConstant.USER_LOGIN_STATE, safetyUser);
+        // 也可以配置成令牌模式(xiaowc.auth.mode=token)，登录时签发一个签名令牌，之后在本地校验，不用访问redis
+        loginStateService.saveLoginState(safetyUser, request);
 
         return safetyUser;
     }
@@ -179,20 +221,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (originUser == null) {
             return null;
         }
-        User safetyUser = new User();
-        safetyUser.setId(originUser.getId());
-        safetyUser.setUsername(originUser.getUsername());
-        safetyUser.setUserAccount(originUser.getUserAccount());
-        safetyUser.setAvatarUrl(originUser.getAvatarUrl());
-        safetyUser.setGender(originUser.getGender());
-        safetyUser.setEmail(originUser.getEmail());
-        safetyUser.setUserStatus(originUser.getUserStatus());
-        safetyUser.setPhone(originUser.getPhone());
-        safetyUser.setCreateTime(new Date());
-        safetyUser.setUserRole(originUser.getUserRole());
-        safetyUser.setPlanetCode(originUser.getPlanetCode());
-        safetyUser.setTags(originUser.getTags());
-        return safetyUser;
+        // 编译时生成的转换代码，只复制允许返回的字段，创建时间用用户真实的创建时间
+        return UserConverter.INSTANCE.toSafetyUser(originUser);
     }
 
     /**
@@ -201,8 +231,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      */
     @Override
     public int userLogout(HttpServletRequest request) {
-        // 移除session
-        request.removeAttribute(UserConstant.USER_LOGIN_STATE);
+        // 移除登录态
+        loginStateService.removeLoginState(request);
         return 1;
     }
 
@@ -224,6 +254,11 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      */
     @Override
     public List<User> searchUsersByTags(List<String> tagNameList) {
+        return searchUsersByTags(tagNameList, FieldSelection.ALL);
+    }
+
+    @Override
+    public List<User> searchUsersByTags(List<String> tagNameList, FieldSelection fieldSelection) {
         if (CollectionUtils.isEmpty(tagNameList)) { // 如果为空直接抛异常
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
@@ -249,24 +284,17 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         //   2.fastjson alibaba(ali出品，快，但是漏洞太多)
         //   3.jackson
         //   4.kryo
-        // 1.先查询所有用户
+        // 1.先查询所有用户，只查要返回的列，再加上判断标签要用的id、tags和更新时间(标签解析缓存用)
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select(fieldSelection.columns(UserConstant.SAFE_COLUMNS, "id", "tags", "updateTime"));
         List<User> userList = userMapper.selectList(queryWrapper);
-        Gson gson = new Gson();
+        // 要求的标签转换成标签id(只查字典)，用户的标签解析过一次之后会缓存起来(见TagCodec)
+        TagCodec.TagQuery tagQuery = tagCodec.query(tagNameList);
         // 2.在内存中判断是否包含要求的标签
         // 如果要并行查询，就将stream()改成parallelStream()，他用的是一个公共线程池，有一定的风险，可能拿不到线程，会被其他程序占用
         return userList.stream().filter(user -> { // 遍历每一个User，用filter来代替for循环，是false就过滤掉，是true就保留
-            String tagsStr = user.getTags(); // json字符串
-            Set<String> tempTagNameSet = gson.fromJson(tagsStr, new TypeToken<Set<String>>() {}.getType()); // 将JSON字符串反序列化成一个对象
-            // 用ofNullable()去封装一个可能为空的对象，再用orElse()给对象一个默认值，也就是说如果tempTagNameList为空，则取的值就是默认值new HashSet<>()的值
-            tempTagNameSet = Optional.ofNullable(tempTagNameSet).orElse(new HashSet<>());
-            //gson.toJson(tempTagNameList); // 反序列化，这样得到的就是一个JSON字符串了
-            for (String tagName : tagNameList) {
-                if (!tempTagNameSet.contains(tagName)) { // set集合不包含要查询的字段就直接返回false，否则返回true
-                    return false;
-                }
-            }
-            return true;
+            // 不包含要查询的标签就直接返回false，否则返回true
+            return tagQuery.matches(user);
         }).map(this::getSafetyUser).collect(Collectors.toList());
     }
 
@@ -293,7 +321,11 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (oldUser == null) {
             throw new BusinessException(ErrorCode.NULL_ERROR); // 表示没有这个用户
         }
-        return userMapper.updateById(user); // user就是要修改的用户信息
+        int result = userMapper.updateById(user); // user就是要修改的用户信息
+        if (result > 0) {
+            domainEventBus.publish(DomainEvent.Type.USER_UPDATED, userId);
+        }
+        return result;
     }
 
     /**
@@ -306,12 +338,12 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (request == null) {
             return null;
         }
-        // 从session中获取当前用户信息
-        Object userObj = request.getSession().getAttribute(UserConstant.USER_LOGIN_STATE);
-        if (userObj == null) { // 为空说明没有权限
+        // 从session或者令牌中获取当前用户信息
+        User loginUser = loginStateService.getLoginUser(request);
+        if (loginUser == null) { // 为空说明没有权限
             throw new BusinessException(ErrorCode.NO_AUTH);
         }
-        return (User) userObj;
+        return loginUser;
     }
 
     /**
@@ -320,11 +352,10 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      * @return
      */
     public boolean isAdmin(HttpServletRequest request) {
-        // 仅管理员可查询
-        Object userObj = request.getSession().getAttribute(UserConstant.USER_LOGIN_STATE);
-        User user = (User) userObj;
+        // 仅管理员可查询，令牌模式下角色直接从令牌中取
+        Integer userRole = loginStateService.getLoginUserRole(request);
         // 用户未登录，或者不是管理员权限，就不能进行下一步的查询用户操作
-        if (user == null || user.getUserRole() != UserConstant.ADMIN_ROLE) {
+        if (userRole == null || userRole != UserConstant.ADMIN_ROLE) {
             return false;
         }
         return true;
@@ -340,6 +371,114 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         return loginUser != null && loginUser.getUserRole() == UserConstant.ADMIN_ROLE;
     }
 
+    /**
+     * 根据用户名搜索用户
+     *   1.关键词长度>=ngram分词长度：走全文索引ft_username，可以中间匹配，完全相同 > 前缀匹配 > 中间匹配
+     *   2.关键词太短(单个字)：全文索引搜不到，只做前缀匹配，可以走普通索引idx_username
+     *   3.没有开启全文索引：退回到like模糊查询
+     * 每页条数和能翻到的总条数都有上限，不查总数；只查要返回的列
+     */
+    @Override
+    public List<User> searchUsersByUsername(String username, long pageNum, long pageSize, FieldSelection fieldSelection) {
+        if (pageNum < 1 || pageSize < 1) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        pageSize = Math.min(pageSize, MAX_SEARCH_PAGE_SIZE);
+        if ((pageNum - 1) * pageSize >= MAX_SEARCH_RESULTS) { // 超过结果上限，直接返回空
+            return new ArrayList<>();
+        }
+        Page<User> page = new Page<>(pageNum, pageSize, false); // 不查总数
+        String keyword = StringUtils.trim(username);
+        String[] columns = fieldSelection.columns(UserConstant.SAFE_COLUMNS, "id");
+        List<User> userList;
+        if (fullTextSearchEnabled && StringUtils.length(keyword) >= NGRAM_TOKEN_SIZE) {
+            // boolean模式的短语要求分词连续出现，即包含关键词；关键词中的双引号去掉，避免破坏短语
+            String phrase = "\"" + keyword.replace('"', ' ') + "\"";
+            userList = userMapper.searchUsersByUsername(page, String.join(",", columns), keyword, phrase,
+                    escapeLike(keyword) + "%").getRecords();
+        } else {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select(columns);
+            if (StringUtils.isNotEmpty(keyword)) {
+                if (fullTextSearchEnabled) {
+                    queryWrapper.likeRight("username", escapeLike(keyword)); // 单个字只做前缀匹配
+                } else {
+                    queryWrapper.like("username", escapeLike(keyword)); // 模糊查询
+                }
+            }
+            queryWrapper.orderByAsc("id");
+            userList = this.page(page, queryWrapper).getRecords();
+        }
+        return userList.stream().map(this::getSafetyUser).collect(Collectors.toList());
+    }
+
+    /**
+     * 流式按用户名搜索用户(导出)，条件和排序与searchUsersByUsername一样，但是不分页也没有条数上限，
+     * 每读出一行就交给consumer，内存占用和结果条数无关
+     */
+    @Override
+    public long streamUsersByUsername(String username, FieldSelection fieldSelection, Consumer<User> consumer) {
+        String keyword = StringUtils.trim(username);
+        String[] columns = fieldSelection.columns(UserConstant.SAFE_COLUMNS, "id");
+        long[] count = {0};
+        ResultHandler<User> resultHandler = resultContext -> {
+            consumer.accept(getSafetyUser(resultContext.getResultObject()));
+            count[0]++;
+        };
+        if (fullTextSearchEnabled && StringUtils.length(keyword) >= NGRAM_TOKEN_SIZE) {
+            String phrase = "\"" + keyword.replace('"', ' ') + "\"";
+            userMapper.scanUsersByUsername(String.join(",", columns), keyword, phrase, escapeLike(keyword) + "%",
+                    resultHandler);
+        } else {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select(columns);
+            queryWrapper.eq("isDelete", 0); // 自定义的sql不会自动加上逻辑删除的条件
+            if (StringUtils.isNotEmpty(keyword)) {
+                if (fullTextSearchEnabled) {
+                    queryWrapper.likeRight("username", escapeLike(keyword));
+                } else {
+                    queryWrapper.like("username", escapeLike(keyword));
+                }
+            }
+            queryWrapper.orderByAsc("id");
+            userMapper.scanUsers(queryWrapper, resultHandler);
+        }
+        return count[0];
+    }
+
+    /**
+     * 流式根据标签搜索用户(导出)，和searchUsersByTags一样在内存中判断标签，但是边读边判断，
+     * 符合条件的马上交给consumer，不把所有用户都加载到内存中
+     */
+    @Override
+    public long streamUsersByTags(List<String> tagNameList, FieldSelection fieldSelection, Consumer<User> consumer) {
+        if (CollectionUtils.isEmpty(tagNameList)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        TagCodec.TagQuery tagQuery = tagCodec.query(tagNameList);
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select(fieldSelection.columns(UserConstant.SAFE_COLUMNS, "id", "tags", "updateTime"));
+        queryWrapper.isNotNull("tags"); // 没有标签的用户肯定不符合条件
+        queryWrapper.eq("isDelete", 0);
+        long[] count = {0};
+        userMapper.scanUsers(queryWrapper, resultContext -> {
+            User user = resultContext.getResultObject();
+            if (tagQuery.matches(user)) {
+                consumer.accept(getSafetyUser(user));
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * 转义like中的通配符，用户输入的%和_按普通字符匹配(mysql默认的转义字符是反斜杠)
+     * 自己拼的like参数和QueryWrapper的like/likeRight都要先转义
+     */
+    private static String escapeLike(String keyword) {
+        return keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     /**
      * 用户匹配：获取最匹配的用户，根据分数来进行匹配标签，用到动态规划
      * 这里用到了最佳匹配算法
@@ -349,6 +488,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      *   2.map存了所有的分数信息，占用内存。解决：
      *     小顶堆：维护一个固定长度的有序集合(sortedSet)，按照分数降序，只保留分数最高的几个用户，
      *             如果大于顶部的，就弹出顶部元素，压入当前元素
+     *     (已实现：编辑距离越小越匹配，用大顶堆只保留距离最小的num个，所有用户流式读取)
      *   3.细节：剔除自己
      *   4.尽量只查需要的用户：
      *      1.过滤掉标签为空的用户
@@ -364,38 +504,67 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      */
     @Override
     public List<User> matchUsers(long num, User loginUser) {
+        return matchUsers(num, loginUser, FieldSelection.ALL);
+    }
+
+    @Override
+    public List<User> matchUsers(long num, User loginUser, FieldSelection fieldSelection) {
+        // JFR事件：没有开启JFR录制时不统计耗时，开销可以忽略
+        MatchUsersEvent event = null;
+        if (JfrSupport.AVAILABLE) {
+            event = new MatchUsersEvent();
+            event.begin();
+        }
+        boolean recording = event != null && event.isEnabled();
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-        queryWrapper.select("id", "tags"); // 4.3 只查id和tags这两列，提高查询速度
+        queryWrapper.select("id", "tags", "updateTime"); // 4.3 只查id、tags和更新时间，提高查询速度，更新时间用来判断标签的解析缓存是否有效
         queryWrapper.isNotNull("tags"); // 4.1 标签不为空才可以查出来
-        List<User> userList = this.list(queryWrapper); // 从数据库中查询所有数据
-        String tags = loginUser.getTags(); // 得到当前用户的标签
-        Gson gson = new Gson();
-        List<String> tagList = gson.fromJson(tags, new TypeToken<List<String>>() {}.getType()); // 将标签json字符串转换成字符串列表
-        // 用户列表的下标 -> 相似度，这里还可以用小顶堆进行优化，堆底->堆顶：由小到大排序
-        List<Pair<User, Long>> list = new ArrayList<>(); // Pair<User, Long>里面传用户以及他对应的相似度分数
-        // 依次计算所有用户和当前用户的相似度，并放到上面定义的List<Pair<User, Long>>列表中
-        for (int i = 0; i < userList.size(); i++) {
-            User user = userList.get(i); // 拿到一个用户
+        queryWrapper.eq("isDelete", 0); // 自定义的sql不会自动加上逻辑删除的条件
+        int[] tagIds = tagCodec.get(loginUser); // 将标签json字符串转换成标签id
+        // 2 大顶堆：堆顶是目前前num个里面最不匹配的(编辑距离最大，一样时id大的)，新用户比堆顶更匹配才替换堆顶，
+        //   只保留num个用户，内存占用和用户总数无关
+        Comparator<Pair<User, Long>> worseFirst = Comparator.<Pair<User, Long>>comparingLong(Pair::getValue)
+                .thenComparingLong(pair -> pair.getKey().getId())
+                .reversed();
+        PriorityQueue<Pair<User, Long>> heap = new PriorityQueue<>((int) num + 1, worseFirst);
+        // 下面在lambda中累加，用数组代替局部变量
+        int[] candidates = {0};
+        int[] pruned = {0};
+        long[] distanceNanos = {0};
+        // 流式查询所有用户，每读出一个就计算，不把所有用户都加载到内存中
+        userMapper.scanUsers(queryWrapper, resultContext -> {
+            User user = resultContext.getResultObject();
+            candidates[0]++;
             String userTags = user.getTags(); // 取到这个用户的标签json格式
             // 3 无标签或者当前标签是自己，就直接跳过
             if (StringUtils.isBlank(userTags) || user.getId().equals(loginUser.getId())) { // 因为id在User定义的是Integer类型，所以要用equals()方法来进行比较
-                continue;
+                pruned[0]++;
+                return;
             }
-            List<String> userTagList = gson.fromJson(userTags, new TypeToken<List<String>>() {}.getType()); // 将标签json字符串转换成字符串列表
+            int[] userTagIds = tagCodec.get(user); // 将标签json字符串转换成标签id，没有修改过的用户直接取缓存
             // 运用最短距离算法进行计算分数
-            long distance = AlgorithmUtils.minDistance(tagList, userTagList);
-            list.add(new Pair<>(user, distance)); // 将当前用户以及对应的分数添加进来
-        }
-        // 按编辑距离升序排序，得到前num的分数的列表，分数越小，匹配度越高，这里已经排好序了
-        List<Pair<User, Long>> topUserPairList = list.stream()
-                .sorted((a, b) -> (int) (a.getValue() - b.getValue()))  // getValue()取Long，就是分数，按分数升序排序
-                .limit(num)  // 取前num条数据
-                .collect(Collectors.toList()); // 把数据转换成新的列表
+            long distanceStart = recording ? System.nanoTime() : 0;
+            long distance = AlgorithmUtils.minDistance(tagIds, userTagIds);
+            if (recording) {
+                distanceNanos[0] += System.nanoTime() - distanceStart;
+            }
+            Pair<User, Long> pair = Pair.of(user, distance); // 用户以及他对应的相似度分数
+            if (heap.size() < num) {
+                heap.add(pair);
+            } else if (worseFirst.compare(pair, heap.peek()) > 0) { // 比堆顶更匹配，替换堆顶
+                heap.poll();
+                heap.add(pair);
+            }
+        });
+        // 按编辑距离升序排序，得到前num的分数的列表，分数越小，匹配度越高
+        List<Pair<User, Long>> topUserPairList = new ArrayList<>(heap);
+        topUserPairList.sort(worseFirst.reversed());
         // 取出topUserPairList中的key里面的id(也就是用户信息)，并把他转换成新的列表，这里已经排好序了
         // 原本按顺序排列的用户列表
         List<Long> userIdList = topUserPairList.stream().map(pair -> pair.getKey().getId()).collect(Collectors.toList());
         // 上面只是从数据库中查询了两个字段id和tags，所以我们还需要从数据库中查询一次符合条件的用户的全部信息
         QueryWrapper<User> userQueryWrapper = new QueryWrapper<>();
+        userQueryWrapper.select(fieldSelection.columns(UserConstant.SAFE_COLUMNS, "id")); // 只查要返回的列，不查密码
         userQueryWrapper.in("id", userIdList); // 这里在列表中查询是没有顺序的，所以返回的结果也没有顺序
         // 1, 3, 2
         // user1, user2, user3
@@ -409,6 +578,18 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         for (Long userId : userIdList) { // 遍历原本有顺序的list
             finalUserList.add(userIdUserListMap.get(userId).get(0)); // 因为是根据id进行分组，这里每个组只有一个id，所以取get(0)
         }
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.userId = loginUser.getId();
+                event.num = num;
+                event.candidates = candidates[0];
+                event.pruned = pruned[0];
+                event.distanceTime = distanceNanos[0];
+                event.resultSize = finalUserList.size();
+                event.commit();
+            }
+        }
         return finalUserList; // 直接返回top N的用户信息
     }
 
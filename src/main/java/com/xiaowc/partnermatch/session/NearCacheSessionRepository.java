@@ -0,0 +1,376 @@
+package com.xiaowc.partnermatch.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.events.SessionDestroyedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * session近端缓存(装饰器模式)：在redis session仓库外面再包一层本地缓存
+ *
+ * 为什么需要？
+ *   1.每一个请求都会调用getLoginUser()/isAdmin()从session中取登录态，而session存在redis中，
+ *     也就是说每个请求都要去redis走一次网络请求，再把session反序列化出来
+ *   2.session读多写少，登录之后基本只会读，所以很适合在本机内存中缓存一小段时间
+ *
+ * 实现：
+ *   1.读：先查本地缓存(caffeine)，命中直接返回一份拷贝，不走redis；未命中再去redis中查，并放入本地缓存
+ *   2.写：只有属性发生变化(比如登录、退出)或者是新session才会写回redis，
+ *        最后访问时间只是每隔一段时间才刷新一次到redis中，避免每个请求都要写一次redis
+ *   3.失效：
+ *      1.本地缓存设置了很短的过期时间，兜底
+ *      2.属性变化或者删除session时，通过redis的发布订阅通知其他服务器删除本地缓存
+ *      3.session在redis中过期或被删除时(redis的键空间通知)，spring session会发布事件，这里监听事件删除本地缓存
+ *   4.版本号：每个快照有一个版本号，请求保存session时只有本地缓存中还是它读到的那个版本才能替换，
+ *        否则说明期间有别的请求(比如退出登录)改过，直接删掉本地缓存，下次从redis中重新读，
+ *        避免只读的请求拿着退出登录之前的旧快照把新的覆盖掉
+ *
+ * @param <S> 被装饰的session仓库中的session类型
+ */
+@Slf4j
+public class NearCacheSessionRepository<S extends Session>
+        implements SessionRepository<NearCacheSessionRepository<S>.CachedSession>,
+        MessageListener, ApplicationListener<SessionDestroyedEvent> {
+
+    /**
+     * 通知其他服务器删除本地session缓存的频道
+     */
+    public static final String INVALIDATION_CHANNEL = "xiaowc:session:invalidate";
+
+    /**
+     * 被装饰的session仓库(redis)
+     */
+    private final SessionRepository<S> delegate;
+
+    /**
+     * 本地缓存：sessionId -> session快照
+     */
+    private final Cache<String, SessionSnapshot> cache;
+
+    /**
+     * 最后访问时间刷新到redis的间隔
+     */
+    private final long accessFlushIntervalMillis;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 当前服务器的标识，收到自己发的失效消息时不用处理
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 快照的版本号
+     */
+    private final AtomicLong versions = new AtomicLong();
+
+    public NearCacheSessionRepository(SessionRepository<S> delegate, StringRedisTemplate stringRedisTemplate,
+                                      long ttlSeconds, long maximumSize, long accessFlushSeconds) {
+        this.delegate = delegate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS) // 过期时间很短，兜底
+                .maximumSize(maximumSize)
+                .build();
+        this.accessFlushIntervalMillis = TimeUnit.SECONDS.toMillis(accessFlushSeconds);
+    }
+
+    @Override
+    public CachedSession createSession() {
+        // 新建session不会访问redis，真正写入是在save的时候
+        S session = delegate.createSession();
+        return new CachedSession(new MapSession(session), session, true, 0L, 0L);
+    }
+
+    @Override
+    public void save(CachedSession session) {
+        long now = System.currentTimeMillis();
+        // 最后访问时间的刷新间隔不能超过session失效时间的一半，否则redis中的session可能提前过期
+        long flushInterval = Math.min(accessFlushIntervalMillis, session.getMaxInactiveInterval().toMillis() / 2);
+        boolean attributeChanged = !session.changedAttributeNames.isEmpty();
+        boolean idChanged = !session.originalId.equals(session.getId());
+        boolean isNew = session.isNew;
+        boolean changed = isNew || attributeChanged || idChanged || session.maxInactiveIntervalChanged;
+        if (!changed && now - session.lastFlushedAt < flushInterval) {
+            return; // 没有变化，本地缓存中的快照不用动
+        }
+        S target = session.delegateSession != null ? session.delegateSession : delegate.findById(session.getId());
+        if (target == null) { // redis中的session已经过期或者被删除了
+            evict(session.getId());
+            return;
+        }
+        for (String attributeName : session.changedAttributeNames) {
+            Object attributeValue = session.cached.getAttribute(attributeName);
+            if (attributeValue == null) {
+                target.removeAttribute(attributeName);
+            } else {
+                target.setAttribute(attributeName, attributeValue);
+            }
+        }
+        target.setLastAccessedTime(session.getLastAccessedTime());
+        if (session.maxInactiveIntervalChanged) {
+            target.setMaxInactiveInterval(session.getMaxInactiveInterval());
+        }
+        delegate.save(target);
+        // 通知其他服务器删除旧的本地缓存
+        if (idChanged) {
+            evict(session.originalId);
+            publishInvalidation(session.originalId);
+        }
+        if (attributeChanged && !session.isNew) {
+            publishInvalidation(session.getId());
+        }
+        session.markSaved(now);
+        long baseVersion = session.baseVersion;
+        if (!changed) {
+            // 只刷新了最后访问时间：快照还是读到的那个版本时才更新，被别的请求替换或删除了就不管
+            cache.asMap().computeIfPresent(session.getId(), (id, existing) -> {
+                if (existing.version != baseVersion) {
+                    return existing;
+                }
+                MapSession refreshed = new MapSession(existing.session);
+                refreshed.setLastAccessedTime(session.getLastAccessedTime());
+                return new SessionSnapshot(refreshed, session.lastFlushedAt, baseVersion);
+            });
+            return;
+        }
+        SessionSnapshot snapshot = new SessionSnapshot(new MapSession(session.cached), session.lastFlushedAt,
+                versions.incrementAndGet());
+        session.baseVersion = snapshot.version;
+        if (isNew || idChanged) { // 新的sessionId，本地缓存中不会有别的请求放进去的快照
+            cache.put(session.getId(), snapshot);
+            return;
+        }
+        // 期间有别的请求改过(版本号变了或者被删除了)，这个请求的快照不一定是最新的，删掉本地缓存，下次从redis中读
+        cache.asMap().compute(session.getId(),
+                (id, existing) -> existing != null && existing.version == baseVersion ? snapshot : null);
+    }
+
+    @Override
+    public CachedSession findById(String id) {
+        // 1.先查本地缓存
+        SessionSnapshot snapshot = cache.getIfPresent(id);
+        if (snapshot != null) {
+            if (!snapshot.session.isExpired()) {
+                // 每个请求拿到的都是一份拷贝，互不影响
+                return new CachedSession(new MapSession(snapshot.session), null, false, snapshot.lastFlushedAt,
+                        snapshot.version);
+            }
+            evict(id);
+        }
+        // 2.本地缓存没有，再去redis中查
+        S session = delegate.findById(id);
+        if (session == null) {
+            return null;
+        }
+        MapSession loaded = new MapSession(session);
+        long lastFlushedAt = session.getLastAccessedTime().toEpochMilli();
+        SessionSnapshot loadedSnapshot = new SessionSnapshot(loaded, lastFlushedAt, versions.incrementAndGet());
+        // 查redis的同时别的请求已经放入了更新的快照，不要覆盖
+        SessionSnapshot current = cache.asMap().putIfAbsent(id, loadedSnapshot);
+        long version = current == null ? loadedSnapshot.version : current.version;
+        // 刚从redis中查出来的session直接带上，保存的时候就不用再查一次redis了
+        return new CachedSession(new MapSession(loaded), session, false, lastFlushedAt, version);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        delegate.deleteById(id);
+        evict(id);
+        publishInvalidation(id);
+    }
+
+    /**
+     * 删除本地缓存中的session
+     * @param sessionId sessionId
+     */
+    public void evict(String sessionId) {
+        cache.invalidate(sessionId);
+    }
+
+    /**
+     * 收到其他服务器的失效通知，删除本地缓存，消息格式：服务器标识:sessionId
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        if (index < 0 || nodeId.equals(body.substring(0, index))) { // 自己发的消息不用处理
+            return;
+        }
+        evict(body.substring(index + 1));
+    }
+
+    /**
+     * session在redis中过期或者被删除时(键空间通知)，spring session会发布事件，这里删除本地缓存
+     */
+    @Override
+    public void onApplicationEvent(SessionDestroyedEvent event) {
+        evict(event.getSessionId());
+    }
+
+    private void publishInvalidation(String sessionId) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, nodeId + ":" + sessionId);
+        } catch (Exception e) {
+            log.error("publish session invalidation error", e);
+        }
+    }
+
+    /**
+     * 本地缓存中保存的session快照
+     */
+    private static final class SessionSnapshot {
+
+        private final MapSession session;
+
+        /**
+         * 最后一次把最后访问时间刷新到redis的时间
+         */
+        private final long lastFlushedAt;
+
+        /**
+         * 版本号，每次放入新的快照都会变
+         */
+        private final long version;
+
+        private SessionSnapshot(MapSession session, long lastFlushedAt, long version) {
+            this.session = session;
+            this.lastFlushedAt = lastFlushedAt;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 交给请求使用的session，记录本次请求修改过哪些属性，保存时只把修改过的属性写回redis
+     */
+    public final class CachedSession implements Session {
+
+        private final MapSession cached;
+
+        /**
+         * 对应的redis session，为空时表示是从本地缓存中取的，需要写回时再去redis中查
+         */
+        private S delegateSession;
+
+        private final String originalId;
+
+        private final Set<String> changedAttributeNames = new HashSet<>();
+
+        private boolean isNew;
+
+        private boolean maxInactiveIntervalChanged;
+
+        private long lastFlushedAt;
+
+        /**
+         * 读到的快照的版本号，保存时只有本地缓存中还是这个版本才能替换
+         */
+        private long baseVersion;
+
+        private CachedSession(MapSession cached, S delegateSession, boolean isNew, long lastFlushedAt,
+                              long baseVersion) {
+            this.cached = cached;
+            this.delegateSession = delegateSession;
+            this.originalId = cached.getId();
+            this.isNew = isNew;
+            this.lastFlushedAt = lastFlushedAt;
+            this.baseVersion = baseVersion;
+        }
+
+        private void markSaved(long now) {
+            this.changedAttributeNames.clear();
+            this.isNew = false;
+            this.maxInactiveIntervalChanged = false;
+            this.lastFlushedAt = now;
+            this.delegateSession = null;
+        }
+
+        @Override
+        public String getId() {
+            return cached.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            if (delegateSession == null) {
+                delegateSession = delegate.findById(getId());
+                if (delegateSession == null) {
+                    throw new IllegalStateException("Session was invalidated");
+                }
+            }
+            String newId = delegateSession.changeSessionId();
+            cached.setId(newId);
+            return newId;
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return cached.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return cached.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            cached.setAttribute(attributeName, attributeValue);
+            changedAttributeNames.add(attributeName);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            cached.removeAttribute(attributeName);
+            changedAttributeNames.add(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return cached.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            cached.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return cached.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            cached.setMaxInactiveInterval(interval);
+            maxInactiveIntervalChanged = true;
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return cached.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return cached.isExpired();
+        }
+    }
+}
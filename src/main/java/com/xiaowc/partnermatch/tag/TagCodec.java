@@ -0,0 +1,304 @@
+package com.xiaowc.partnermatch.tag;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.xiaowc.partnermatch.model.domain.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 标签编解码：把用户的标签json(比如["java","男"])解析成标签id数组(比如[3,0])
+ *
+ * 为什么需要？
+ *   1.原来每次匹配、搜索都要 new Gson() 再 fromJson 成 List/Set，每个用户都要分配一堆字符串和集合对象
+ *   2.用户的标签很少变化，同一个用户在每次匹配请求中都要重新解析一遍
+ *
+ * 实现：
+ *   1.用gson的JsonReader流式解析，边读边把标签名称转换成id，不创建中间的List
+ *   2.标签名称 -> id 的字典是全局共享的，同样的标签只保存一份，比较标签时比较int，不用比较字符串
+ *   3.解析结果按照 用户id 缓存，用户的更新时间和标签变了才重新解析，所以没有修改过的用户只会解析一次
+ *   4.只有解析用户的标签时才往字典里加，搜索条件中的标签只查字典(见query)，不能让任何人用搜索把字典填满
+ * 注意：返回的数组是共享的，调用方不能修改
+ */
+@Slf4j
+public class TagCodec {
+
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * 不在字典中的标签，见idsOf
+     */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    /**
+     * 标签名称 -> 标签id
+     */
+    private final ConcurrentHashMap<String, Integer> dictionary = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * 字典满了之后的新标签(溢出标签)的id：-1、-2、...，每次都分配新的，不会和任何标签相同
+     */
+    private final AtomicInteger nextOverflowId = new AtomicInteger();
+
+    /**
+     * 字典最多保存多少个标签，标签是用户自己填写的，防止字典无限增长
+     */
+    private final int maxDictionarySize;
+
+    /**
+     * 用户id -> 解析结果
+     */
+    private final Cache<Long, ParsedTags> cache;
+
+    public TagCodec(long maximumSize, int maxDictionarySize) {
+        this.maxDictionarySize = maxDictionarySize;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 获取用户的标签id，没有修改过的用户直接从缓存中取
+     * @param user 至少要有id、tags、updateTime，没有id或者更新时间的不缓存
+     * @return 标签id数组，不能修改
+     */
+    public int[] get(User user) {
+        Long userId = user.getId();
+        Date updateTime = user.getUpdateTime();
+        String tags = user.getTags();
+        if (userId == null || updateTime == null) {
+            return parse(tags);
+        }
+        ParsedTags parsedTags = cache.getIfPresent(userId);
+        // 更新时间只精确到秒，同一秒内修改了两次时更新时间不变，所以再比较一下标签字符串
+        if (parsedTags != null && parsedTags.updateTime == updateTime.getTime() && Objects.equals(parsedTags.tags, tags)) {
+            return parsedTags.ids;
+        }
+        int[] ids = parse(tags);
+        cache.put(userId, new ParsedTags(updateTime.getTime(), tags, ids));
+        return ids;
+    }
+
+    /**
+     * 解析标签json，为空或者格式不对时返回空数组
+     */
+    public int[] parse(String tagsJson) {
+        if (StringUtils.isBlank(tagsJson)) {
+            return EMPTY;
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(tagsJson))) {
+            reader.setLenient(true); // 和Gson.fromJson()一样宽松
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                return EMPTY;
+            }
+            reader.beginArray();
+            int[] ids = new int[8];
+            int size = 0;
+            while (reader.hasNext()) {
+                if (reader.peek() != JsonToken.STRING) {
+                    reader.skipValue();
+                    continue;
+                }
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                ids[size++] = intern(reader.nextString());
+            }
+            reader.endArray();
+            return size == 0 ? EMPTY : Arrays.copyOf(ids, size);
+        } catch (IOException | IllegalStateException e) {
+            log.warn("invalid tags json: {}", tagsJson);
+            return EMPTY;
+        }
+    }
+
+    /**
+     * 把标签名称列表转换成id数组(只查字典，不会加入字典)，不在字典中的为UNKNOWN
+     */
+    public int[] idsOf(List<String> tagNameList) {
+        int[] ids = new int[tagNameList.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = idOf(tagNameList.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * 标签名称 -> 标签id，只查字典
+     * @return 不在字典中返回UNKNOWN
+     */
+    public int idOf(String tagName) {
+        Integer id = dictionary.get(tagName);
+        return id == null ? UNKNOWN : id;
+    }
+
+    /**
+     * 按标签精确搜索的条件
+     * @param tagNameList 要求的标签
+     */
+    public TagQuery query(List<String> tagNameList) {
+        return new TagQuery(tagNameList.toArray(new String[0]), idsOf(tagNameList));
+    }
+
+    /**
+     * 解析用户的标签时调用：第一次出现的标签分配一个新的id
+     *   字典满了之后，新标签每次都分配一个新的负数id，不会和其他标签冲突(代价是同一个溢出标签在不同用户之间也不相等，
+     *   匹配时相似度偏低)；精确搜索时，有溢出标签的用户改为比较标签字符串，见TagQuery
+     */
+    private int intern(String tagName) {
+        Integer id = dictionary.get(tagName);
+        if (id != null) {
+            return id;
+        }
+        if (dictionary.size() >= maxDictionarySize) {
+            // -1、-2、...，到了UNKNOWN之后从-1重新开始
+            return nextOverflowId.updateAndGet(current -> current <= UNKNOWN + 1 ? -1 : current - 1);
+        }
+        return dictionary.computeIfAbsent(tagName, name -> nextId.getAndIncrement());
+    }
+
+    /**
+     * 用户的标签是否包含所有要求的标签，标签很少，直接遍历比较
+     */
+    public static boolean containsAll(int[] tagIds, int[] requiredIds) {
+        for (int requiredId : requiredIds) {
+            if (!contains(tagIds, requiredId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把缓存的命中率等指标注册到监控中
+     */
+    public void bindMetrics(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "tagCodec");
+    }
+
+    /**
+     * 按标签精确搜索的条件：用户要包含所有要求的标签
+     *
+     * 要求的标签不在字典中，不能说明没有用户有这个标签：
+     *   1.字典是解析用户标签的时候才填的，重启之后还没解析到这个用户
+     *   2.字典满了，用户的这个标签是溢出标签
+     * 所以每个用户解析之后再查一次字典，还是没有并且用户有溢出标签时，比较标签字符串
+     * 一次搜索在一个线程中使用
+     */
+    public final class TagQuery {
+
+        private final String[] tagNames;
+
+        private final int[] tagIds;
+
+        private TagQuery(String[] tagNames, int[] tagIds) {
+            this.tagNames = tagNames;
+            this.tagIds = tagIds;
+        }
+
+        public boolean matches(User user) {
+            int[] userTagIds = get(user);
+            List<String> userTagNames = null;
+            for (int i = 0; i < tagIds.length; i++) {
+                if (tagIds[i] == UNKNOWN) {
+                    tagIds[i] = idOf(tagNames[i]); // 解析这个用户的时候可能刚加入字典
+                }
+                if (tagIds[i] != UNKNOWN && contains(userTagIds, tagIds[i])) {
+                    continue;
+                }
+                // 在字典中的标签id一定相同，不同就是没有；不在字典中的只可能是用户的溢出标签
+                if (tagIds[i] != UNKNOWN || !hasOverflow(userTagIds)) {
+                    return false;
+                }
+                if (userTagNames == null) {
+                    userTagNames = names(user.getTags());
+                }
+                if (!userTagNames.contains(tagNames[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean contains(int[] tagIds, int tagId) {
+        for (int id : tagIds) {
+            if (id == tagId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasOverflow(int[] tagIds) {
+        for (int id : tagIds) {
+            if (id < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析标签json中的标签名称，只有用户有溢出标签时才需要
+     */
+    private static List<String> names(String tagsJson) {
+        List<String> names = new ArrayList<>();
+        if (StringUtils.isBlank(tagsJson)) {
+            return names;
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(tagsJson))) {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                return names;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.STRING) {
+                    names.add(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endArray();
+        } catch (IOException | IllegalStateException e) {
+            names.clear();
+        }
+        return names;
+    }
+
+    /**
+     * 缓存中保存的解析结果
+     */
+    private static final class ParsedTags {
+
+        private final long updateTime;
+
+        private final String tags;
+
+        private final int[] ids;
+
+        private ParsedTags(long updateTime, String tags, int[] ids) {
+            this.updateTime = updateTime;
+            this.tags = tags;
+            this.ids = ids;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.xiaowc.partnermatch.team;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.xiaowc.partnermatch.convert.TeamConverter;
+import com.xiaowc.partnermatch.convert.UserConverter;
+import com.xiaowc.partnermatch.datasource.ReadWriteContext;
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.mapper.TeamMapper;
+import com.xiaowc.partnermatch.mapper.UserMapper;
+import com.xiaowc.partnermatch.mapper.UserTeamMapper;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.model.domain.UserTeam;
+import com.xiaowc.partnermatch.model.dto.TeamQuery;
+import com.xiaowc.partnermatch.model.enums.TeamStatusEnum;
+import com.xiaowc.partnermatch.model.vo.TeamUserVO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 公开且未过期的队伍的内存快照，用于默认的队伍列表查询(/team/list 不带任何条件)
+ *
+ * 为什么需要？
+ *   1./team/list 绝大多数请求都是默认查询：公开的、未过期的、没有搜索条件，每次都要查数据库
+ *   2.每个队伍还要再查一次创建人(N+1)，再查一次所有队伍的成员来统计人数
+ *
+ * 实现(写时复制)：
+ *   1.快照是不可变的，包含队伍信息、创建人信息和成员id，读的时候不加锁也不查数据库，直接从快照中拷贝出来
+ *   2.队伍有变化(创建、修改、加入、退出、删除)时，只重新查这一个队伍，复制一份新的快照替换掉旧的，版本号+1
+ *   3.通过领域事件(DomainEventBus)得知队伍的变化，事务提交之后才会收到，其他服务器上的修改也会通过redis通知过来
+ *   4.创建人修改了用户信息，也要刷新他创建的队伍
+ *   5.事件可能会丢，由定时任务(ActiveTeamSnapshotJob)定期全量重建来兜底
+ *   6.队伍到期时由时间轮通知删除，读的时候也会跳过已过期的队伍
+ *   7.查数据库都在锁外面，刷新在事件监听的线程(也就是修改队伍的请求线程)中执行，不能等全量重建
+ */
+@Component
+@Slf4j
+public class ActiveTeamCache implements TeamExpiryListener {
+
+    /**
+     * in查询每批的数量
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    @Resource
+    private TeamMapper teamMapper;
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private UserTeamMapper userTeamMapper;
+
+    /**
+     * 是否使用内存快照返回默认的队伍列表
+     */
+    @Value("${xiaowc.team.snapshot:true}")
+    private boolean enabled;
+
+    /**
+     * 当前的快照，为空表示还没有构建好
+     */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * 刷新的序号，每次开始刷新一个队伍时+1
+     */
+    private final AtomicLong refreshSequence = new AtomicLong();
+
+    /**
+     * 队伍id -> 最近一次开始刷新的序号
+     *   1.同一个队伍同时有多次刷新时，只有最后开始的那次才能替换快照，先开始的查到的可能是旧的
+     *   2.全量重建查库期间刷新过的队伍，重建时保留快照中的(重建查到的可能是刷新之前的)
+     */
+    private final Map<Long, Long> refreshingTeams = new ConcurrentHashMap<>();
+
+    /**
+     * 是否可以用快照来返回这个查询的结果：只有不带任何条件的默认查询(公开的队伍)才可以
+     * @param teamQuery 查询条件
+     * @return
+     */
+    public boolean supports(TeamQuery teamQuery) {
+        if (!enabled || snapshot.get() == null || teamQuery == null || teamQuery.isPaged()) { // 快照不分页
+            return false;
+        }
+        Integer status = teamQuery.getStatus();
+        return teamQuery.getId() == null
+                && CollectionUtils.isEmpty(teamQuery.getIdList())
+                && StringUtils.isAllBlank(teamQuery.getSearchText(), teamQuery.getName(), teamQuery.getDescription())
+                && teamQuery.getMaxNum() == null
+                && teamQuery.getUserId() == null
+                && (status == null || TeamStatusEnum.getEnumByValue(status) == null || status == TeamStatusEnum.PUBLIC.getValue());
+    }
+
+    /**
+     * 从快照中取公开且未过期的队伍，已填好创建人、已加入人数和当前用户是否已加入
+     * @param loginUserId 当前登录用户的id，未登录为空
+     * @return 每次返回的都是新的对象，调用方可以修改
+     */
+    public List<TeamUserVO> list(Long loginUserId) {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            return new ArrayList<>();
+        }
+        long now = System.currentTimeMillis();
+        List<TeamUserVO> teamUserVOList = new ArrayList<>(current.entries.size());
+        for (Entry entry : current.entries.values()) {
+            if (entry.expireAt <= now) { // 时间轮还没通知到的已过期队伍
+                continue;
+            }
+            TeamUserVO teamUserVO = TeamConverter.INSTANCE.copy(entry.team);
+            teamUserVO.setHasJoinNum(entry.memberIds.length);
+            teamUserVO.setHasJoin(loginUserId != null && Arrays.binarySearch(entry.memberIds, loginUserId) >= 0);
+            teamUserVOList.add(teamUserVO);
+        }
+        return teamUserVOList;
+    }
+
+    /**
+     * 当前快照的版本号，每次替换快照都会+1，还没有构建好时为-1
+     */
+    public long version() {
+        Snapshot current = snapshot.get();
+        return current == null ? -1 : current.version;
+    }
+
+    /**
+     * 全量重建快照
+     * 只有定时任务和导入数据时调用，synchronized只让多次重建排队，刷新不用等重建
+     */
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long startSequence = refreshSequence.get();
+        QueryWrapper<Team> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("status", TeamStatusEnum.PUBLIC.getValue());
+        queryWrapper.and(qw -> qw.gt("expireTime", new Date()).or().isNull("expireTime"));
+        // 整个快照会被替换，从延迟的从库读会把已经刷新过的队伍换回旧的，走主库
+        TreeMap<Long, Entry> loaded = ReadWriteContext.callOnPrimary(() -> load(teamMapper.selectList(queryWrapper)));
+        while (true) {
+            Snapshot current = snapshot.get();
+            TreeMap<Long, Entry> entries = new TreeMap<>(loaded);
+            if (current != null) {
+                // 查库期间开始刷新的队伍，以快照中的为准(还没刷新完的，刷新完会再替换一次)
+                refreshingTeams.forEach((teamId, sequence) -> {
+                    if (sequence > startSequence) {
+                        Entry entry = current.entries.get(teamId);
+                        if (entry == null) {
+                            entries.remove(teamId);
+                        } else {
+                            entries.put(teamId, entry);
+                        }
+                    }
+                });
+            }
+            if (snapshot.compareAndSet(current, new Snapshot(current == null ? 0 : current.version + 1, entries))) {
+                refreshingTeams.values().removeIf(sequence -> sequence <= startSequence);
+                log.debug("active team snapshot rebuilt, {} teams", entries.size());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 队伍或者创建人有变化，刷新快照
+     */
+    @EventListener
+    public void onDomainEvent(DomainEvent event) {
+        if (event.getType().isTeamEvent()) {
+            refresh(event.getId());
+        } else if (event.getType() == DomainEvent.Type.USER_UPDATED) {
+            Snapshot current = snapshot.get();
+            if (current == null) {
+                return;
+            }
+            for (Entry entry : current.entries.values()) {
+                if (Objects.equals(entry.team.getUserId(), event.getId())) {
+                    refresh(entry.team.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * 队伍到期，从快照中删除
+     */
+    @Override
+    public void onTeamExpired(long teamId) {
+        swap(entries -> entries.remove(teamId) != null);
+    }
+
+    /**
+     * 重新加载一个队伍：不再是公开的、已过期的或者已删除的队伍从快照中删除，否则替换掉快照中原来的
+     * 注意：不要在修改队伍的事务中直接调用，事务还没提交时会读到旧的数据(比如退出、删除队伍之前的)，
+     *      事务回滚了还会把没有生效的修改放进快照；修改队伍时发布领域事件，事务提交之后由onDomainEvent调用
+     * @param teamId 队伍id
+     */
+    public void refresh(long teamId) {
+        if (!enabled || snapshot.get() == null) { // 还没有构建好，等全量重建
+            return;
+        }
+        // 先记下序号再查库，查库不加锁
+        long sequence = refreshSequence.incrementAndGet();
+        refreshingTeams.put(teamId, sequence);
+        try {
+            // 在事件监听的线程(redis订阅、其他用户的请求)中执行，没有读己之写的cookie，要显式走主库
+            Team team = ReadWriteContext.callOnPrimary(() -> teamMapper.selectById(teamId));
+            boolean active = team != null && Objects.equals(team.getStatus(), TeamStatusEnum.PUBLIC.getValue())
+                    && (team.getExpireTime() == null || team.getExpireTime().after(new Date()));
+            Entry entry = active ? ReadWriteContext.callOnPrimary(() -> load(Collections.singletonList(team))).get(teamId) : null;
+            swap(entries -> {
+                if (!Objects.equals(refreshingTeams.get(teamId), sequence)) { // 之后又开始了一次刷新，由那次替换
+                    return false;
+                }
+                if (entry == null) {
+                    return entries.remove(teamId) != null;
+                }
+                entries.put(teamId, entry);
+                return true;
+            });
+        } catch (Exception e) { // 刷新失败不影响业务，等下一次全量重建
+            refreshingTeams.remove(teamId, sequence); // 没刷新成功，重建时不用保留快照中的
+            log.error("refresh active team error, teamId = {}", teamId, e);
+        }
+    }
+
+    /**
+     * 复制一份当前的快照，修改后替换掉，cas失败(比如时间轮同时删除了队伍)就重试
+     * @param mutation 修改复制出来的队伍，返回false表示没有修改，不用替换
+     */
+    private void swap(Function<TreeMap<Long, Entry>, Boolean> mutation) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            if (current == null) {
+                return;
+            }
+            TreeMap<Long, Entry> entries = new TreeMap<>(current.entries);
+            if (!mutation.apply(entries)) {
+                return;
+            }
+            if (snapshot.compareAndSet(current, new Snapshot(current.version + 1, entries))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 批量查询队伍的创建人和成员，组装成快照中的条目
+     */
+    private TreeMap<Long, Entry> load(List<Team> teamList) {
+        TreeMap<Long, Entry> entries = new TreeMap<>();
+        if (teamList.isEmpty()) {
+            return entries;
+        }
+        // 1.批量查询创建人
+        Set<Long> userIdSet = teamList.stream().map(Team::getUserId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Long, User> userMap = new HashMap<>();
+        for (List<Long> userIds : ListUtils.partition(new ArrayList<>(userIdSet), BATCH_SIZE)) {
+            userMapper.selectBatchIds(userIds).forEach(user -> userMap.put(user.getId(), user));
+        }
+        // 2.批量查询成员，只查队伍id和用户id
+        List<Long> teamIdList = teamList.stream().map(Team::getId).collect(Collectors.toList());
+        Map<Long, List<Long>> teamIdMemberIdsMap = new HashMap<>();
+        for (List<Long> teamIds : ListUtils.partition(teamIdList, BATCH_SIZE)) {
+            QueryWrapper<UserTeam> userTeamQueryWrapper = new QueryWrapper<>();
+            userTeamQueryWrapper.select("teamId", "userId");
+            userTeamQueryWrapper.in("teamId", teamIds);
+            for (UserTeam userTeam : userTeamMapper.selectList(userTeamQueryWrapper)) {
+                teamIdMemberIdsMap.computeIfAbsent(userTeam.getTeamId(), key -> new ArrayList<>()).add(userTeam.getUserId());
+            }
+        }
+        // 3.组装
+        for (Team team : teamList) {
+            if (team.getUserId() == null) { // 和数据库查询一样，没有创建人的队伍不展示
+                continue;
+            }
+            TeamUserVO teamUserVO = TeamConverter.INSTANCE.toTeamUserVO(team);
+            User user = userMap.get(team.getUserId());
+            if (user != null) {
+                teamUserVO.setCreateUser(UserConverter.INSTANCE.toUserVO(user));
+            }
+            long[] memberIds = teamIdMemberIdsMap.getOrDefault(team.getId(), Collections.emptyList())
+                    .stream().mapToLong(Long::longValue).sorted().toArray();
+            long expireAt = team.getExpireTime() == null ? Long.MAX_VALUE : team.getExpireTime().getTime();
+            entries.put(team.getId(), new Entry(teamUserVO, memberIds, expireAt));
+        }
+        return entries;
+    }
+
+    /**
+     * 不可变的快照
+     */
+    private static final class Snapshot {
+
+        private final long version;
+
+        /**
+         * 队伍id -> 条目，按队伍id排序，和数据库默认的顺序一样
+         */
+        private final SortedMap<Long, Entry> entries;
+
+        private Snapshot(long version, SortedMap<Long, Entry> entries) {
+            this.version = version;
+            this.entries = Collections.unmodifiableSortedMap(entries);
+        }
+    }
+
+    /**
+     * 快照中的一个队伍
+     */
+    private static final class Entry {
+
+        /**
+         * 队伍和创建人信息，不能修改，返回时要先拷贝
+         */
+        private final TeamUserVO team;
+
+        /**
+         * 成员的用户id，已排序
+         */
+        private final long[] memberIds;
+
+        private final long expireAt;
+
+        private Entry(TeamUserVO team, long[] memberIds, long expireAt) {
+            this.team = team;
+            this.memberIds = memberIds;
+            this.expireAt = expireAt;
+        }
+    }
+}
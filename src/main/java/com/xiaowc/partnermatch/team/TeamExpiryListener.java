@@ -0,0 +1,15 @@
+package com.xiaowc.partnermatch.team;
+
+/**
+ * 队伍过期的监听器，缓存了队伍的组件实现这个接口，队伍到期时把它从缓存中删除
+ *
+ * 注意：回调是在时间轮的线程中执行的，只能做删除缓存这类很快的操作，不要查数据库或者调用远程服务
+ */
+public interface TeamExpiryListener {
+
+    /**
+     * 队伍到了过期时间
+     * @param teamId 过期的队伍id
+     */
+    void onTeamExpired(long teamId);
+}
@@ -0,0 +1,169 @@
+package com.xiaowc.partnermatch.team;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队伍过期管理：用时间轮在队伍到期的时候通知监听器(删除缓存等)
+ *
+ * 为什么需要？
+ *   1.原来每次查询队伍都要在sql中过滤过期的队伍，缓存了队伍的地方也不知道队伍什么时候过期
+ *   2.队伍的过期时间是确定的，到期的时候主动通知一次就行，不用每次使用的时候都去判断
+ *
+ * 实现：
+ *   1.时间轮(netty的HashedWheelTimer)：添加和取消定时任务都是O(1)，几十万个定时任务也只需要一个线程，精度是一个刻度(默认1秒)
+ *   2.只把接下来一段时间(horizon)内会过期的队伍放到时间轮中，更久之后才过期的队伍由定时任务(TeamExpiryJob)周期性地加进来，
+ *     这样时间轮中的任务数量不会随着队伍总数增长
+ *   3.队伍修改了过期时间就重新放入时间轮，删除了就取消
+ * 注意：过期只是通知，数据库中的队伍状态不变，查询时仍然用过期时间过滤，所以时间轮晚一点触发也不会查出过期的队伍
+ */
+@Slf4j
+public class TeamExpiryManager {
+
+    private final HashedWheelTimer timer;
+
+    /**
+     * 只有这个时间(毫秒)内要过期的队伍才放入时间轮
+     */
+    private final long horizonMillis;
+
+    /**
+     * 队伍id -> 时间轮中的定时任务
+     */
+    private final ConcurrentHashMap<Long, Expiry> scheduled = new ConcurrentHashMap<>();
+
+    private final List<TeamExpiryListener> listeners = new CopyOnWriteArrayList<>();
+
+    private Counter expiredCounter;
+
+    public TeamExpiryManager(long tickMillis, int ticksPerWheel, long horizonMillis) {
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("team-expiry", true),
+                tickMillis, TimeUnit.MILLISECONDS, ticksPerWheel);
+        this.horizonMillis = horizonMillis;
+    }
+
+    /**
+     * 添加监听器
+     * @param listener 队伍过期的监听器
+     */
+    public void addListener(TeamExpiryListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 按照队伍的过期时间放入时间轮，已经放入过的会替换掉原来的过期时间
+     * @param teamId 队伍id
+     * @param expireTime 过期时间，为空表示永不过期
+     */
+    public void schedule(long teamId, Date expireTime) {
+        if (expireTime == null) {
+            cancel(teamId);
+            return;
+        }
+        long expireAt = expireTime.getTime();
+        long delay = expireAt - System.currentTimeMillis();
+        if (delay > horizonMillis) { // 还很久才过期，等定时任务扫描到了再放入
+            cancel(teamId);
+            return;
+        }
+        scheduled.compute(teamId, (id, old) -> {
+            if (old != null) {
+                if (old.expireAt == expireAt) { // 过期时间没变，不用重新放入
+                    return old;
+                }
+                old.timeout.cancel();
+            }
+            Timeout timeout = timer.newTimeout(t -> expire(id, expireAt), Math.max(delay, 0), TimeUnit.MILLISECONDS);
+            return new Expiry(expireAt, timeout);
+        });
+    }
+
+    /**
+     * 从时间轮中取消队伍的过期通知(比如队伍被删除了)
+     * @param teamId 队伍id
+     */
+    public void cancel(long teamId) {
+        Expiry expiry = scheduled.remove(teamId);
+        if (expiry != null) {
+            expiry.timeout.cancel();
+        }
+    }
+
+    /**
+     * 时间轮中等待过期的队伍数量
+     */
+    public int pending() {
+        return scheduled.size();
+    }
+
+    /**
+     * 多久之内要过期的队伍才会放入时间轮
+     */
+    public long getHorizonMillis() {
+        return horizonMillis;
+    }
+
+    public void bindMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("team.expiry.pending", scheduled, ConcurrentHashMap::size)
+                .description("时间轮中等待过期的队伍数量")
+                .register(meterRegistry);
+        expiredCounter = Counter.builder("team.expiry.expired")
+                .description("到期通知过的队伍数量")
+                .register(meterRegistry);
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    private void expire(long teamId, long expireAt) {
+        // 过期时间已经被修改或者取消了，就不通知
+        boolean[] matched = new boolean[1];
+        scheduled.computeIfPresent(teamId, (id, expiry) -> {
+            if (expiry.expireAt != expireAt) {
+                return expiry;
+            }
+            matched[0] = true;
+            return null;
+        });
+        if (!matched[0]) {
+            return;
+        }
+        if (expiredCounter != null) {
+            expiredCounter.increment();
+        }
+        for (TeamExpiryListener listener : listeners) {
+            try {
+                listener.onTeamExpired(teamId);
+            } catch (Exception e) {
+                log.error("team expiry listener error, teamId = {}", teamId, e);
+            }
+        }
+    }
+
+    /**
+     * 时间轮中的一个过期任务
+     */
+    private static final class Expiry {
+
+        private final long expireAt;
+
+        private final Timeout timeout;
+
+        private Expiry(long expireAt, Timeout timeout) {
+            this.expireAt = expireAt;
+            this.timeout = timeout;
+        }
+    }
+}
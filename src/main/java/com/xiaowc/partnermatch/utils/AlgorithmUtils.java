@@ -80,4 +80,40 @@ public class AlgorithmUtils {
         }
         return d[n][m];
     }
+
+    /**
+     * 编辑距离算法(标签id版本)，标签先转换成id(见TagCodec)，比较int比比较字符串快
+     *   d[i][j]只依赖上一行和当前行，所以只保存两行，不用分配(n+1)*(m+1)的二维数组
+     * @param tagIds1 第一组标签id
+     * @param tagIds2 第二组标签id
+     * @return
+     */
+    public static int minDistance(int[] tagIds1, int[] tagIds2) {
+        int n = tagIds1.length;
+        int m = tagIds2.length;
+        if (n * m == 0) {
+            return n + m;
+        }
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j < m + 1; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i < n + 1; i++) {
+            current[0] = i;
+            for (int j = 1; j < m + 1; j++) {
+                int left = previous[j] + 1;
+                int down = current[j - 1] + 1;
+                int left_down = previous[j - 1];
+                if (tagIds1[i - 1] != tagIds2[j - 1]) {
+                    left_down += 1;
+                }
+                current[j] = Math.min(left, Math.min(down, left_down));
+            }
+            int[] temp = previous;
+            previous = current;
+            current = temp;
+        }
+        return previous[m];
+    }
 }
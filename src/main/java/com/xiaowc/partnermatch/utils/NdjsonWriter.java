@@ -0,0 +1,59 @@
+package com.xiaowc.partnermatch.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * NDJSON(每行一个json对象，换行分隔)写入工具，流式导出用：查出一个写一个，不在内存中攒结果
+ *
+ * 第一行写完马上flush，客户端尽快收到第一个字节；之后攒够flushEvery行再flush一次，减少系统调用
+ */
+public class NdjsonWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream outputStream;
+
+    private final ObjectWriter objectWriter;
+
+    private final int flushEvery;
+
+    private long count;
+
+    /**
+     * @param outputStream 响应的输出流，关闭时不会关闭它，由容器关闭
+     * @param objectWriter 序列化用的writer，可以带上稀疏字段的过滤器
+     * @param flushEvery 每写多少行flush一次
+     */
+    public NdjsonWriter(OutputStream outputStream, ObjectWriter objectWriter, int flushEvery) {
+        this.outputStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        this.objectWriter = objectWriter
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET) // 每写一行不要关闭输出流
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE); // 每写一行不要flush，由这里控制
+        this.flushEvery = flushEvery;
+    }
+
+    public void write(Object value) throws IOException {
+        objectWriter.writeValue(outputStream, value);
+        outputStream.write('\n');
+        count++;
+        if (count == 1 || count % flushEvery == 0) {
+            outputStream.flush();
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.flush();
+    }
+}
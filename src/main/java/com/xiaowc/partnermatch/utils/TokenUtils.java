@@ -0,0 +1,142 @@
+package com.xiaowc.partnermatch.utils;
+
+import lombok.Data;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 登录令牌工具类：签发和校验一个紧凑的签名令牌(HMAC-SHA256)
+ *
+ * 令牌格式：base64url(用户id:用户角色:过期时间(秒):令牌id) + "." + base64url(签名)
+ *   1.令牌中只放用户id和角色，校验只需要在本地算一次签名，不用访问redis
+ *   2.令牌id用于退出登录后拉黑令牌
+ */
+public class TokenUtils {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * 签名密钥的最小长度(字节)，HMAC-SHA256的密钥不能比摘要短
+     */
+    public static final int MIN_SECRET_BYTES = 32;
+
+    /**
+     * 以前写在配置文件里的默认密钥和常见的占位符，仓库里的人都能看到，不能用来签名
+     */
+    private static final Set<String> PLACEHOLDER_SECRETS = new HashSet<>(Arrays.asList(
+            "xiaowc-partner-match-dev-secret", "xxxxxx", "secret", "changeme", "change-me", "your-secret"));
+
+    /**
+     * 令牌中携带的信息
+     */
+    @Data
+    public static class TokenPayload {
+
+        /**
+         * 用户id
+         */
+        private final long userId;
+
+        /**
+         * 用户角色  0 - 普通用户    1 - 管理员
+         */
+        private final int userRole;
+
+        /**
+         * 过期时间(秒)
+         */
+        private final long expireAt;
+
+        /**
+         * 令牌id
+         */
+        private final String tokenId;
+    }
+
+    /**
+     * 校验签名密钥，密钥为空、太短或者是占位符时抛出异常，阻止服务启动
+     * @param secret 签名密钥
+     */
+    public static void checkSecret(String secret) {
+        if (secret == null || secret.trim().isEmpty()) {
+            throw new IllegalStateException("xiaowc.auth.token-secret must be set (env XIAOWC_AUTH_TOKEN_SECRET) when xiaowc.auth.mode=token");
+        }
+        if (PLACEHOLDER_SECRETS.contains(secret.trim().toLowerCase())) {
+            throw new IllegalStateException("xiaowc.auth.token-secret is a known placeholder, generate a random secret");
+        }
+        if (secret.getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("xiaowc.auth.token-secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+    }
+
+    /**
+     * 签发令牌
+     * @param payload 令牌中携带的信息
+     * @param secret 签名密钥
+     * @return 令牌
+     */
+    public static String sign(TokenPayload payload, String secret) {
+        String body = payload.getUserId() + ":" + payload.getUserRole() + ":" + payload.getExpireAt() + ":" + payload.getTokenId();
+        String encodedBody = ENCODER.encodeToString(body.getBytes(StandardCharsets.UTF_8));
+        return encodedBody + "." + ENCODER.encodeToString(hmac(encodedBody, secret));
+    }
+
+    /**
+     * 校验令牌：签名错误、格式错误或者已过期都返回null
+     * @param token 令牌
+     * @param secret 签名密钥
+     * @param nowSeconds 当前时间(秒)
+     * @return 令牌中携带的信息
+     */
+    public static TokenPayload verify(String token, String secret, long nowSeconds) {
+        if (token == null) {
+            return null;
+        }
+        int index = token.indexOf('.');
+        if (index <= 0 || index == token.length() - 1) {
+            return null;
+        }
+        String encodedBody = token.substring(0, index);
+        try {
+            byte[] signature = DECODER.decode(token.substring(index + 1));
+            // 用MessageDigest.isEqual比较，耗时和内容无关，防止时序攻击
+            if (!MessageDigest.isEqual(signature, hmac(encodedBody, secret))) {
+                return null;
+            }
+            String[] parts = new String(DECODER.decode(encodedBody), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 4) {
+                return null;
+            }
+            TokenPayload payload = new TokenPayload(Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+                    Long.parseLong(parts[2]), parts[3]);
+            if (payload.getExpireAt() <= nowSeconds) { // 已过期
+                return null;
+            }
+            return payload;
+        } catch (IllegalArgumentException e) { // base64或者数字格式不对
+            return null;
+        }
+    }
+
+    private static byte[] hmac(String data, String secret) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
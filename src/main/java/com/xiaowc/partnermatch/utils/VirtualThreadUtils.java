@@ -0,0 +1,54 @@
+package com.xiaowc.partnermatch.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程工具类
+ *   虚拟线程是JDK21正式提供的，项目是按Java8编译的，所以这里通过反射去调用，
+ *   在低版本的JDK上运行时isSupported()返回false，调用方退回到普通的线程池
+ */
+public final class VirtualThreadUtils {
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor()，低版本JDK上为空
+     */
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findMethod();
+
+    private VirtualThreadUtils() {
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * 创建一个每个任务一个虚拟线程的线程池
+     * @throws UnsupportedOperationException 当前JDK不支持虚拟线程
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("virtual threads require JDK 21+, current: " + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("create virtual thread executor error", e);
+        }
+    }
+
+    private static Method findMethod() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            // JDK19、20中虚拟线程是预览特性，没有开启--enable-preview时调用会报错，这里先试一下
+            ((ExecutorService) method.invoke(null)).shutdown();
+            return method;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
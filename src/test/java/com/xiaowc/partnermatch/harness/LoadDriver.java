@@ -0,0 +1,265 @@
+package com.xiaowc.partnermatch.harness;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压测客户端：每个客户端是一个登录了的用户，所有客户端并发请求同一个接口，统计吞吐量和耗时分位数
+ */
+public class LoadDriver {
+
+    private final String baseUrl;
+
+    public LoadDriver(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * 一个登录了的客户端，带着自己的cookie(session模式)或者令牌(token模式)
+     */
+    public static class Client {
+
+        private final int index;
+
+        private String cookie;
+
+        private String authorization;
+
+        Client(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+    }
+
+    /**
+     * 要发送的请求
+     */
+    public static class Request {
+
+        private final String method;
+
+        private final String path;
+
+        private final String body;
+
+        private Request(String method, String path, String body) {
+            this.method = method;
+            this.path = path;
+            this.body = body;
+        }
+
+        public static Request get(String path) {
+            return new Request("GET", path, null);
+        }
+
+        public static Request post(String path, String body) {
+            return new Request("POST", path, body);
+        }
+    }
+
+    /**
+     * 生成第index个请求
+     */
+    public interface RequestFactory {
+
+        Request create(Client client, int index);
+    }
+
+    /**
+     * 一个接口的压测结果
+     */
+    public static class Result {
+
+        private final String endpoint;
+
+        private final long success;
+
+        private final long businessError;
+
+        private final long httpError;
+
+        private final long costMillis;
+
+        /**
+         * 每个请求的耗时(纳秒)，已排序
+         */
+        private final long[] latencies;
+
+        Result(String endpoint, long success, long businessError, long httpError, long costMillis, long[] latencies) {
+            this.endpoint = endpoint;
+            this.success = success;
+            this.businessError = businessError;
+            this.httpError = httpError;
+            this.costMillis = costMillis;
+            this.latencies = latencies;
+        }
+
+        public long getSuccess() {
+            return success;
+        }
+
+        public long getHttpError() {
+            return httpError;
+        }
+
+        public double throughput() {
+            return latencies.length * 1000.0 / Math.max(1, costMillis);
+        }
+
+        /**
+         * 耗时分位数(毫秒)
+         * @param percentile 0到1之间，比如0.99
+         */
+        public double percentileMillis(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / 1_000_000.0;
+        }
+
+        public static String header() {
+            return String.format("%-16s %8s %8s %8s %8s %10s %9s %9s %9s %9s",
+                    "endpoint", "requests", "ok", "bizErr", "httpErr", "req/s", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-16s %8d %8d %8d %8d %10.1f %9.2f %9.2f %9.2f %9.2f",
+                    endpoint, latencies.length, success, businessError, httpError, throughput(),
+                    percentileMillis(0.5), percentileMillis(0.9), percentileMillis(0.99), percentileMillis(1));
+        }
+    }
+
+    /**
+     * 登录，返回带着登录态的客户端
+     */
+    public Client login(int index, String userAccount, String userPassword) throws IOException {
+        Client client = new Client(index);
+        String body = String.format("{\"userAccount\":\"%s\",\"userPassword\":\"%s\"}", userAccount, userPassword);
+        HttpURLConnection connection = send(client, Request.post("/user/login", body));
+        String responseBody = readBody(connection);
+        if (connection.getResponseCode() != 200 || !responseBody.contains("\"code\":0")) {
+            throw new IllegalStateException("login failed: " + userAccount + ", response: " + responseBody);
+        }
+        String setCookie = connection.getHeaderField("Set-Cookie");
+        if (setCookie != null) {
+            client.cookie = setCookie.split(";", 2)[0];
+        }
+        client.authorization = connection.getHeaderField("Authorization");
+        return client;
+    }
+
+    /**
+     * 所有客户端并发请求，每个客户端发送requestsPerClient个请求
+     */
+    public Result run(String endpoint, List<Client> clients, int requestsPerClient, RequestFactory factory)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(clients.size());
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(clients.size());
+        AtomicLong success = new AtomicLong();
+        AtomicLong businessError = new AtomicLong();
+        AtomicLong httpError = new AtomicLong();
+        List<long[]> latencyList = new ArrayList<>();
+        for (Client client : clients) {
+            long[] latencies = new long[requestsPerClient]; // 每个客户端自己记录，最后再合并，避免竞争
+            latencyList.add(latencies);
+            executor.execute(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        Request request = factory.create(client, i);
+                        long start = System.nanoTime();
+                        try {
+                            HttpURLConnection connection = send(client, request);
+                            String body = readBody(connection);
+                            latencies[i] = System.nanoTime() - start;
+                            if (connection.getResponseCode() != 200) {
+                                httpError.incrementAndGet();
+                            } else if (body.contains("\"code\":0")) {
+                                success.incrementAndGet();
+                            } else {
+                                businessError.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            latencies[i] = System.nanoTime() - start;
+                            httpError.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            });
+        }
+        long startTime = System.currentTimeMillis();
+        startLatch.countDown();
+        doneLatch.await();
+        long costMillis = System.currentTimeMillis() - startTime;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        long[] allLatencies = new long[clients.size() * requestsPerClient];
+        int offset = 0;
+        for (long[] latencies : latencyList) {
+            System.arraycopy(latencies, 0, allLatencies, offset, latencies.length);
+            offset += latencies.length;
+        }
+        Arrays.sort(allLatencies);
+        return new Result(endpoint, success.get(), businessError.get(), httpError.get(), costMillis, allLatencies);
+    }
+
+    private HttpURLConnection send(Client client, Request request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + request.path).openConnection();
+        connection.setRequestMethod(request.method);
+        connection.setConnectTimeout(10000);
+        connection.setReadTimeout(60000);
+        if (client.cookie != null) {
+            connection.setRequestProperty("Cookie", client.cookie);
+        }
+        if (client.authorization != null) {
+            connection.setRequestProperty("Authorization", client.authorization);
+        }
+        if (request.body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(request.body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return connection;
+    }
+
+    private String readBody(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        try (InputStream inputStream = code < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (inputStream == null) {
+                return "";
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.xiaowc.partnermatch.harness;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.model.enums.TeamStatusEnum;
+import com.xiaowc.partnermatch.once.dataset.DatasetGenerator;
+import com.xiaowc.partnermatch.once.dataset.DatasetLoader;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 离线端到端压测：不依赖外部的mysql和redis，笔记本上就能验证性能优化的效果
+ *   1.h2数据库(mysql模式)代替mysql，jedis-mock(进程内的redis协议服务)代替redis，见application-harness.yml
+ *   2.生成users个用户(标签按齐夫分布)、teams个队伍和队伍成员(见DatasetGenerator)，前concurrency个用户作为压测客户端登录
+ *   3.依次压测 /user/match、/team/list、/team/join、/user/recommend，打印吞吐量和耗时分位数
+ * 参数(系统属性)：
+ *   mvn -P harness test -Dharness.users=20000 -Dharness.teams=2000 -Dharness.concurrency=64 -Dharness.requests=50
+ *   要跑半分钟以上，默认的mvn test中不执行(见pom.xml中的harness profile)
+ */
+@Tag("harness")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("harness")
+public class LoadHarnessTest {
+
+    private static final int USERS = Integer.getInteger("harness.users", 2000);
+
+    private static final int TEAMS = Integer.getInteger("harness.teams", 200);
+
+    private static final int CONCURRENCY = Integer.getInteger("harness.concurrency", 8);
+
+    private static final int REQUESTS = Integer.getInteger("harness.requests", 10);
+
+    private static final long SEED = Long.getLong("harness.seed", 42L);
+
+    private static RedisServer redisServer;
+
+    @LocalServerPort
+    private int port;
+
+    @Resource
+    private DatasetLoader datasetLoader;
+
+    /**
+     * jedis-mock只支持RESP2协议，lettuce默认会先用HELLO命令协商RESP3
+     */
+    @TestConfiguration
+    static class HarnessRedisConfig {
+
+        @Bean
+        public LettuceClientConfigurationBuilderCustomizer resp2Customizer() {
+            return builder -> builder.clientOptions(ClientOptions.builder()
+                    .protocolVersion(ProtocolVersion.RESP2)
+                    .build());
+        }
+    }
+
+    /**
+     * 在spring容器启动之前启动redis替身，并把端口告诉spring
+     */
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) throws IOException {
+        redisServer = RedisServer.newRedisServer();
+        redisServer.start();
+        registry.add("spring.redis.port", () -> redisServer.getBindPort());
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Test
+    void runLoad() throws Exception {
+        // 1.准备数据
+        long now = System.currentTimeMillis();
+        DatasetGenerator generator = datasetLoader.load(SEED, USERS, TEAMS, now);
+        // 可以加入的队伍：公开且没有过期
+        List<Long> publicTeamIds = new ArrayList<>();
+        for (int i = 0; i < TEAMS; i++) {
+            Team team = generator.team(i);
+            if (team.getStatus() == TeamStatusEnum.PUBLIC.getValue()
+                    && (team.getExpireTime() == null || team.getExpireTime().getTime() > now)) {
+                publicTeamIds.add(team.getId());
+            }
+        }
+        // 2.客户端登录
+        LoadDriver driver = new LoadDriver("http://localhost:" + port + "/api");
+        List<LoadDriver.Client> clients = new ArrayList<>();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            clients.add(driver.login(i, generator.userAccount(i), DatasetGenerator.USER_PASSWORD));
+        }
+        // 3.依次压测每个接口
+        List<LoadDriver.Result> results = new ArrayList<>();
+        results.add(driver.run("/user/match", clients, REQUESTS,
+                (client, index) -> LoadDriver.Request.get("/user/match?num=10")));
+        results.add(driver.run("/team/list", clients, REQUESTS,
+                (client, index) -> LoadDriver.Request.get("/team/list")));
+        results.add(driver.run("/team/join", clients, REQUESTS, (client, index) -> {
+            // 每个客户端用自己的随机数，选一个公开的队伍加入
+            Random random = new Random(SEED + client.getIndex() * 31L + index);
+            long teamId = publicTeamIds.get(random.nextInt(publicTeamIds.size()));
+            return LoadDriver.Request.post("/team/join", "{\"teamId\":" + teamId + "}");
+        }));
+        results.add(driver.run("/user/recommend", clients, REQUESTS,
+                (client, index) -> LoadDriver.Request.get("/user/recommend?pageSize=20&pageNum=1")));
+        // 4.打印结果
+        System.out.println("users: " + USERS + ", teams: " + TEAMS + ", concurrency: " + CONCURRENCY
+                + ", requests per client: " + REQUESTS);
+        System.out.println(LoadDriver.Result.header());
+        for (LoadDriver.Result result : results) {
+            System.out.println(result);
+            Assertions.assertEquals(0, result.getHttpError(), "http error in " + result);
+            Assertions.assertTrue(result.getSuccess() > 0, "no successful request in " + result);
+        }
+    }
+}
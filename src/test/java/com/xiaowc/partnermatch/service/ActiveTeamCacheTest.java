@@ -0,0 +1,183 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.event.DomainEventBus;
+import com.xiaowc.partnermatch.mapper.TeamMapper;
+import com.xiaowc.partnermatch.mapper.UserMapper;
+import com.xiaowc.partnermatch.mapper.UserTeamMapper;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.model.domain.UserTeam;
+import com.xiaowc.partnermatch.model.dto.TeamQuery;
+import com.xiaowc.partnermatch.model.vo.TeamUserVO;
+import com.xiaowc.partnermatch.team.ActiveTeamCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 公开队伍快照测试，用mock代替数据库
+ */
+public class ActiveTeamCacheTest {
+
+    private final TeamMapper teamMapper = Mockito.mock(TeamMapper.class);
+
+    private final UserMapper userMapper = Mockito.mock(UserMapper.class);
+
+    private final UserTeamMapper userTeamMapper = Mockito.mock(UserTeamMapper.class);
+
+    private final ActiveTeamCache activeTeamCache = new ActiveTeamCache();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(activeTeamCache, "teamMapper", teamMapper);
+        ReflectionTestUtils.setField(activeTeamCache, "userMapper", userMapper);
+        ReflectionTestUtils.setField(activeTeamCache, "userTeamMapper", userTeamMapper);
+        ReflectionTestUtils.setField(activeTeamCache, "enabled", true);
+        Mockito.when(teamMapper.selectList(ArgumentMatchers.any()))
+                .thenReturn(Arrays.asList(team(2L, 0, 60000), team(1L, 0, 60000)));
+        Mockito.when(userMapper.selectBatchIds(ArgumentMatchers.any())).thenReturn(Collections.singletonList(user(10L)));
+        Mockito.when(userTeamMapper.selectList(ArgumentMatchers.any()))
+                .thenReturn(Arrays.asList(userTeam(1L, 10L), userTeam(1L, 11L), userTeam(2L, 10L)));
+    }
+
+    @Test
+    void testListFromSnapshot() {
+        Assertions.assertFalse(activeTeamCache.supports(new TeamQuery())); // 还没有构建好
+        activeTeamCache.rebuild();
+        Assertions.assertTrue(activeTeamCache.supports(new TeamQuery()));
+        TeamQuery searchQuery = new TeamQuery();
+        searchQuery.setSearchText("java");
+        Assertions.assertFalse(activeTeamCache.supports(searchQuery));
+        TeamQuery pagedQuery = new TeamQuery();
+        pagedQuery.setPaged(true); // 快照不分页，带了pageNum、pageSize要查数据库
+        Assertions.assertFalse(activeTeamCache.supports(pagedQuery));
+
+        List<TeamUserVO> teamList = activeTeamCache.list(11L);
+        Assertions.assertEquals(2, teamList.size());
+        Assertions.assertEquals(1L, teamList.get(0).getId()); // 按id排序
+        Assertions.assertEquals(2, teamList.get(0).getHasJoinNum());
+        Assertions.assertTrue(teamList.get(0).isHasJoin());
+        Assertions.assertFalse(teamList.get(1).isHasJoin());
+        Assertions.assertEquals("user10", teamList.get(0).getCreateUser().getUsername());
+        // 返回的是拷贝，修改了不影响快照
+        teamList.get(0).setHasJoinNum(100);
+        Assertions.assertEquals(2, activeTeamCache.list(null).get(0).getHasJoinNum());
+    }
+
+    @Test
+    void testRefreshAndExpire() {
+        activeTeamCache.rebuild();
+        long version = activeTeamCache.version();
+        // 队伍改成私有的，从快照中删除
+        Mockito.when(teamMapper.selectById(1L)).thenReturn(team(1L, 1, 60000));
+        activeTeamCache.refresh(1L);
+        Assertions.assertEquals(1, activeTeamCache.list(null).size());
+        Assertions.assertEquals(version + 1, activeTeamCache.version());
+        // 新建的公开队伍加入快照
+        Mockito.when(teamMapper.selectById(3L)).thenReturn(team(3L, 0, 60000));
+        activeTeamCache.refresh(3L);
+        Assertions.assertEquals(2, activeTeamCache.list(null).size());
+        // 到期
+        activeTeamCache.onTeamExpired(2L);
+        List<TeamUserVO> teamList = activeTeamCache.list(null);
+        Assertions.assertEquals(1, teamList.size());
+        Assertions.assertEquals(3L, teamList.get(0).getId());
+        Assertions.assertEquals(version + 3, activeTeamCache.version());
+    }
+
+    @Test
+    void testRefreshDuringRebuild() throws Exception {
+        activeTeamCache.rebuild();
+        Mockito.when(teamMapper.selectById(1L)).thenReturn(team(1L, 1, 60000));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch refreshed = new CountDownLatch(1);
+        // 重建查库的时候队伍1改成了私有的：重建查到的还是公开的
+        Mockito.when(teamMapper.selectList(ArgumentMatchers.any())).thenAnswer(invocation -> {
+            loading.countDown();
+            refreshed.await(5, TimeUnit.SECONDS);
+            return Arrays.asList(team(2L, 0, 60000), team(1L, 0, 60000));
+        });
+        Thread rebuildThread = new Thread(activeTeamCache::rebuild);
+        rebuildThread.start();
+        Assertions.assertTrue(loading.await(5, TimeUnit.SECONDS));
+        // 刷新不用等重建查完库
+        CompletableFuture.runAsync(() -> activeTeamCache.refresh(1L)).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, activeTeamCache.list(null).size());
+        refreshed.countDown();
+        rebuildThread.join(5000);
+        // 重建不能把已经刷新掉的队伍换回来
+        List<TeamUserVO> teamList = activeTeamCache.list(null);
+        Assertions.assertEquals(1, teamList.size());
+        Assertions.assertEquals(2L, teamList.get(0).getId());
+        // 下一次重建以数据库为准
+        activeTeamCache.rebuild();
+        Assertions.assertEquals(2, activeTeamCache.list(null).size());
+    }
+
+    @Test
+    void testRefreshOnlyAfterCommit() {
+        activeTeamCache.rebuild();
+        DomainEventBus domainEventBus = new DomainEventBus();
+        ReflectionTestUtils.setField(domainEventBus, "applicationEventPublisher",
+                (ApplicationEventPublisher) event -> activeTeamCache.onDomainEvent((DomainEvent) event));
+        ReflectionTestUtils.setField(domainEventBus, "stringRedisTemplate", Mockito.mock(StringRedisTemplate.class));
+        // 解散队伍：删除队伍的事务还没提交，不能刷新，否则会读到还没删除的队伍
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            domainEventBus.publish(DomainEvent.Type.TEAM_DELETED, 1L);
+            Mockito.verify(teamMapper, Mockito.never()).selectById(1L);
+            Assertions.assertEquals(2, activeTeamCache.list(null).size());
+            // 事务提交之后才刷新，这时已经查不到这个队伍了
+            Mockito.when(teamMapper.selectById(1L)).thenReturn(null);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        List<TeamUserVO> teamList = activeTeamCache.list(null);
+        Assertions.assertEquals(1, teamList.size());
+        Assertions.assertEquals(2L, teamList.get(0).getId());
+    }
+
+    private static Team team(long id, int status, long expireAfterMillis) {
+        Team team = new Team();
+        team.setId(id);
+        team.setName("team" + id);
+        team.setStatus(status);
+        team.setMaxNum(5);
+        team.setUserId(10L);
+        team.setExpireTime(new Date(System.currentTimeMillis() + expireAfterMillis));
+        return team;
+    }
+
+    private static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        return user;
+    }
+
+    private static UserTeam userTeam(long teamId, long userId) {
+        UserTeam userTeam = new UserTeam();
+        userTeam.setTeamId(teamId);
+        userTeam.setUserId(userId);
+        return userTeam;
+    }
+}
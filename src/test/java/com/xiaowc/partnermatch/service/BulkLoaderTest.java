@@ -0,0 +1,80 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.bulk.BulkLoader;
+import com.xiaowc.partnermatch.bulk.BulkTables;
+import com.xiaowc.partnermatch.bulk.BulkWriter;
+import com.xiaowc.partnermatch.model.domain.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 批量导入测试，用mock的数据源记录执行了哪些语句
+ */
+public class BulkLoaderTest {
+
+    private final List<String> sqlList = new CopyOnWriteArrayList<>();
+
+    private DataSource mockDataSource() throws Exception {
+        DataSource dataSource = Mockito.mock(DataSource.class);
+        Connection connection = Mockito.mock(Connection.class);
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+        Mockito.when(connection.prepareStatement(Mockito.anyString())).thenAnswer(invocation -> {
+            sqlList.add(invocation.getArgument(0));
+            return Mockito.mock(PreparedStatement.class);
+        });
+        return dataSource;
+    }
+
+    private User buildUser(int i) {
+        User user = new User();
+        user.setUsername("user" + i);
+        user.setUserPassword("");
+        user.setPlanetCode(String.valueOf(i));
+        return user;
+    }
+
+    @Test
+    void testSplitByRows() throws Exception {
+        BulkLoader bulkLoader = new BulkLoader(mockDataSource(), 4, 100, 1024 * 1024);
+        ConcurrentHashMap<Long, Long> marks = new ConcurrentHashMap<>();
+        long insertedRows;
+        try (BulkWriter<User> writer = bulkLoader.openWriter(BulkTables.USER,
+                (chunkSeq, rows, previousMark, mark) -> marks.put(chunkSeq, mark))) {
+            for (int i = 0; i < 1050; i++) {
+                writer.add(buildUser(i));
+                writer.mark(i);
+            }
+            insertedRows = writer.finish();
+        }
+        Assertions.assertEquals(1050, insertedRows);
+        // 每条语句最多100行，一共11条语句
+        Assertions.assertEquals(11, sqlList.size());
+        Assertions.assertTrue(sqlList.get(0).startsWith("insert into `user` (`id`,`username`,"));
+        // 最后一条语句的进度是最后一行
+        Assertions.assertEquals(11, marks.size());
+        Assertions.assertEquals(1049L, marks.get(10L));
+    }
+
+    @Test
+    void testSplitByBytes() throws Exception {
+        // 一条语句只能放下很少的几行
+        BulkLoader bulkLoader = new BulkLoader(mockDataSource(), 2, 5000, 1000);
+        long insertedRows = bulkLoader.load(BulkTables.USER, IntStream.range(0, 100)
+                .mapToObj(this::buildUser).collect(Collectors.toList()));
+        Assertions.assertEquals(100, insertedRows);
+        Assertions.assertTrue(sqlList.size() > 10);
+        for (String sql : sqlList) {
+            Assertions.assertTrue(sql.length() < 1000);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.xiaowc.partnermatch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaowc.partnermatch.common.ErrorCode;
+import com.xiaowc.partnermatch.exception.BusinessException;
+import com.xiaowc.partnermatch.exception.GlobalExceptionHandler;
+import com.xiaowc.partnermatch.limit.AimdLimiter;
+import com.xiaowc.partnermatch.limit.ConcurrencyLimitFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 自适应并发限制测试：耗时超过阈值时减小上限，并发接近上限时增大上限，超过上限的请求返回429
+ */
+public class ConcurrencyLimitFilterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void testAimd() {
+        AimdLimiter limiter = new AimdLimiter("join", 10, 2, 12, 100, 0.5);
+        // 并发很小时耗时短不增大上限
+        Assertions.assertTrue(limiter.tryAcquire());
+        limiter.release(FAST, false);
+        Assertions.assertEquals(10, limiter.getLimit());
+        // 并发超过上限的一半时增大，不超过最大值
+        acquireAndRelease(limiter, 5);
+        Assertions.assertEquals(11, limiter.getLimit());
+        acquireAndRelease(limiter, 8);
+        Assertions.assertEquals(12, limiter.getLimit());
+        // 耗时超过阈值或者失败时减半，不低于最小值
+        Assertions.assertTrue(limiter.tryAcquire());
+        limiter.release(SLOW, false);
+        Assertions.assertEquals(6, limiter.getLimit());
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(limiter.tryAcquire());
+            limiter.release(FAST, true);
+        }
+        Assertions.assertEquals(2, limiter.getLimit());
+        // 达到上限时拒绝
+        Assertions.assertTrue(limiter.tryAcquire());
+        Assertions.assertTrue(limiter.tryAcquire());
+        Assertions.assertFalse(limiter.tryAcquire());
+        Assertions.assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    void testFilterRejects() throws Exception {
+        AimdLimiter limiter = new AimdLimiter("join", 1, 1, 1, 1000, 0.9);
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(
+                Collections.singletonMap("/team/join", limiter), new ObjectMapper());
+        AtomicInteger calls = new AtomicInteger();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+                calls.incrementAndGet();
+            }
+        };
+        MockHttpServletResponse ok = post(filter, servlet, "/team/join");
+        Assertions.assertEquals(200, ok.getStatus());
+        Assertions.assertEquals(0, limiter.getInFlight());
+        // 占满并发上限，后面的请求直接返回429，不进入controller
+        Assertions.assertTrue(limiter.tryAcquire());
+        MockHttpServletResponse rejected = post(filter, servlet, "/team/join");
+        Assertions.assertEquals(429, rejected.getStatus());
+        Assertions.assertEquals("1", rejected.getHeader("Retry-After"));
+        Assertions.assertTrue(rejected.getContentAsString().contains("\"code\":42900"));
+        // 不在路由组中的接口不受限制
+        Assertions.assertEquals(200, post(filter, servlet, "/team/quit").getStatus());
+        Assertions.assertEquals(2, calls.get());
+        limiter.release(FAST, false);
+    }
+
+    @Test
+    void testServerFailureMarkedByExceptionHandler() throws Exception {
+        AimdLimiter limiter = new AimdLimiter("join", 8, 1, 8, 1000, 0.5);
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(
+                Collections.singletonMap("/team/join", limiter), new ObjectMapper());
+        GlobalExceptionHandler exceptionHandler = new GlobalExceptionHandler();
+        ReflectionTestUtils.setField(exceptionHandler, "meterRegistry", new SimpleMeterRegistry());
+        // 参数错误这类客户端的问题不减小上限
+        Assertions.assertEquals(200, post(filter, failingServlet(exceptionHandler,
+                new BusinessException(ErrorCode.PARAMS_ERROR)), "/team/join").getStatus());
+        Assertions.assertEquals(8, limiter.getLimit());
+        // 系统异常(比如获取数据库连接超时)、资源太忙都以http 200返回，GlobalExceptionHandler标记之后减小上限
+        Assertions.assertEquals(200, post(filter, failingServlet(exceptionHandler,
+                new IllegalStateException("Connection is not available")), "/team/join").getStatus());
+        Assertions.assertEquals(4, limiter.getLimit());
+        post(filter, failingServlet(exceptionHandler, new BusinessException(ErrorCode.TOO_MANY_REQUESTS)), "/team/join");
+        Assertions.assertEquals(2, limiter.getLimit());
+    }
+
+    /**
+     * 模拟controller抛出异常，由全局异常处理器处理
+     */
+    private static HttpServlet failingServlet(GlobalExceptionHandler exceptionHandler, RuntimeException e) {
+        return new HttpServlet() {
+            @Override
+            protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+                if (e instanceof BusinessException) {
+                    exceptionHandler.businessExceptionHandler((BusinessException) e, req);
+                } else {
+                    exceptionHandler.runtimeExceptionHandler(e, req);
+                }
+            }
+        };
+    }
+
+    private static void acquireAndRelease(AimdLimiter limiter, int concurrency) {
+        for (int i = 0; i < concurrency; i++) {
+            Assertions.assertTrue(limiter.tryAcquire());
+        }
+        for (int i = 0; i < concurrency; i++) {
+            limiter.release(FAST, false);
+        }
+    }
+
+    private static MockHttpServletResponse post(ConcurrencyLimitFilter filter, HttpServlet servlet, String path)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+        return response;
+    }
+}
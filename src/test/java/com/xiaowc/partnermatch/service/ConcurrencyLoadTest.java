@@ -0,0 +1,140 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.config.VirtualThreadConfig;
+import com.xiaowc.partnermatch.utils.VirtualThreadUtils;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 高并发压测：5000个连接同时请求队伍列表接口，对比普通线程和虚拟线程的吞吐量
+ *   线程模式在启动时决定，一次只能测一种，分两次执行(其他配置要一样)：
+ *     1.普通线程：mvn test -Dtest=ConcurrencyLoadTest -Dspring.profiles.active=dev
+ *     2.虚拟线程(JDK21)：mvn test -Dtest=ConcurrencyLoadTest -Dspring.profiles.active=dev,virtual-threads
+ *   每次的结果写到target/concurrency-load-<模式>.txt，两种模式都测过之后打印对比
+ * 需要本地的mysql和redis，耗时较长，需要的时候手动执行
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ConcurrencyLoadTest {
+
+    /**
+     * 并发连接数
+     */
+    private static final int CONCURRENCY = 5000;
+
+    /**
+     * 每个连接发送的请求数
+     */
+    private static final int REQUESTS_PER_CONNECTION = 20;
+
+    @LocalServerPort
+    private int port;
+
+    @Resource
+    private VirtualThreadConfig virtualThreadConfig;
+
+    @Test
+    @Disabled
+    public void testListTeamsThroughput() throws Exception {
+        URL url = new URL("http://localhost:" + port + "/api/team/list");
+        // 压测客户端自己也需要5000个并发，支持的话用虚拟线程，不然要创建5000个操作系统线程
+        ExecutorService clientExecutor = VirtualThreadUtils.isSupported()
+                ? VirtualThreadUtils.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(CONCURRENCY);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(CONCURRENCY);
+        AtomicLong successCount = new AtomicLong();
+        AtomicLong errorCount = new AtomicLong();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            clientExecutor.execute(() -> {
+                try {
+                    startLatch.await(); // 所有连接一起开始
+                    for (int j = 0; j < REQUESTS_PER_CONNECTION; j++) {
+                        if (request(url)) {
+                            successCount.incrementAndGet();
+                        } else {
+                            errorCount.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            });
+        }
+        long startTime = System.currentTimeMillis();
+        startLatch.countDown();
+        doneLatch.await(10, TimeUnit.MINUTES);
+        long costMillis = Math.max(1, System.currentTimeMillis() - startTime);
+        clientExecutor.shutdownNow();
+        // 实际生效的模式：开启了但是JDK不支持时退回普通线程
+        boolean virtualThreads = virtualThreadConfig.isEnabled() && VirtualThreadUtils.isSupported();
+        long requestsPerSecond = successCount.get() * 1000 / costMillis;
+        System.out.println("virtual threads: " + virtualThreads
+                + ", concurrency: " + CONCURRENCY + ", success: " + successCount.get() + ", error: " + errorCount.get()
+                + ", cost: " + costMillis + "ms, requests/sec: " + requestsPerSecond);
+        report(virtualThreads, requestsPerSecond, errorCount.get());
+    }
+
+    /**
+     * 记下这次的结果，另一种模式也测过的话打印对比
+     */
+    private static void report(boolean virtualThreads, long requestsPerSecond, long errors) throws IOException {
+        Path current = resultFile(virtualThreads);
+        Files.createDirectories(current.getParent());
+        Files.write(current, (requestsPerSecond + "," + errors).getBytes(StandardCharsets.UTF_8));
+        Path other = resultFile(!virtualThreads);
+        if (!Files.exists(other)) {
+            System.out.println("run again in the other mode to compare, see " + other);
+            return;
+        }
+        String[] otherResult = new String(Files.readAllBytes(other), StandardCharsets.UTF_8).split(",");
+        long platformRps = virtualThreads ? Long.parseLong(otherResult[0]) : requestsPerSecond;
+        long virtualRps = virtualThreads ? requestsPerSecond : Long.parseLong(otherResult[0]);
+        long platformErrors = virtualThreads ? Long.parseLong(otherResult[1]) : errors;
+        long virtualErrors = virtualThreads ? errors : Long.parseLong(otherResult[1]);
+        System.out.println("concurrency: " + CONCURRENCY + ", platform threads: " + platformRps + " req/s (" + platformErrors
+                + " errors), virtual threads: " + virtualRps + " req/s (" + virtualErrors + " errors)");
+    }
+
+    private static Path resultFile(boolean virtualThreads) {
+        return Paths.get("target", "concurrency-load-" + (virtualThreads ? "virtual" : "platform") + ".txt");
+    }
+
+    private boolean request(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(30000);
+            int code = connection.getResponseCode();
+            // 把响应读完，连接才能复用(keep-alive)
+            try (InputStream inputStream = code < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (inputStream != null) {
+                    byte[] buffer = new byte[8192];
+                    while (inputStream.read(buffer) != -1) {
+                        // 丢弃响应内容
+                    }
+                }
+            }
+            return code == 200;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.convert.TeamConverter;
+import com.xiaowc.partnermatch.convert.UserConverter;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.model.request.TeamUpdateRequest;
+import com.xiaowc.partnermatch.model.vo.TeamUserVO;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+
+import java.util.Date;
+
+/**
+ * 对象转换测试：生成的转换代码和原来BeanUtils.copyProperties的结果一致，脱敏后不包含密码
+ */
+public class ConverterTest {
+
+    @Test
+    void testSafetyUser() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("xiaowc");
+        user.setUserPassword("b0dd3697a192885d7c055db46155b26a");
+        user.setCreateTime(new Date(1000L));
+        user.setIsDelete(0);
+        user.setTags("[\"java\"]");
+        User safetyUser = UserConverter.INSTANCE.toSafetyUser(user);
+        Assertions.assertEquals(1L, safetyUser.getId());
+        Assertions.assertEquals("xiaowc", safetyUser.getUsername());
+        Assertions.assertEquals("[\"java\"]", safetyUser.getTags());
+        Assertions.assertEquals(new Date(1000L), safetyUser.getCreateTime());
+        Assertions.assertNull(safetyUser.getUserPassword());
+        Assertions.assertNull(safetyUser.getIsDelete());
+        Assertions.assertNull(UserConverter.INSTANCE.toSafetyUser(null));
+    }
+
+    @Test
+    void testSameAsBeanUtils() {
+        Team team = new Team();
+        team.setId(1L);
+        team.setName("xiaowc的队伍");
+        team.setMaxNum(5);
+        team.setExpireTime(new Date());
+        team.setUserId(2L);
+        team.setStatus(0);
+        team.setPassword("123456");
+        TeamUserVO expected = new TeamUserVO();
+        BeanUtils.copyProperties(team, expected);
+        Assertions.assertEquals(expected, TeamConverter.INSTANCE.toTeamUserVO(team));
+
+        TeamUpdateRequest teamUpdateRequest = new TeamUpdateRequest();
+        teamUpdateRequest.setId(1L);
+        teamUpdateRequest.setName("新的名字");
+        teamUpdateRequest.setStatus(2);
+        teamUpdateRequest.setPassword("123456");
+        Team expectedTeam = new Team();
+        BeanUtils.copyProperties(teamUpdateRequest, expectedTeam);
+        Assertions.assertEquals(expectedTeam, TeamConverter.INSTANCE.fromUpdateRequest(teamUpdateRequest));
+    }
+}
@@ -0,0 +1,101 @@
+package com.xiaowc.partnermatch.service;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.xiaowc.partnermatch.model.domain.Tag;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.model.domain.UserTeam;
+import com.xiaowc.partnermatch.once.dataset.DatasetGenerator;
+import com.xiaowc.partnermatch.once.dataset.TagVocabulary;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 测试数据生成器测试
+ */
+public class DatasetGeneratorTest {
+
+    private static final long REFERENCE_TIME = 1700000000000L;
+
+    @Test
+    void testDeterministic() {
+        DatasetGenerator a = new DatasetGenerator(42, 1000, REFERENCE_TIME, 1, 1);
+        DatasetGenerator b = new DatasetGenerator(42, 1000, REFERENCE_TIME, 1, 1);
+        DatasetGenerator c = new DatasetGenerator(43, 1000, REFERENCE_TIME, 1, 1);
+        // 第i个用户和生成顺序无关
+        Assertions.assertEquals(a.user(500), b.user(500));
+        Assertions.assertEquals(a.team(7), b.team(7));
+        Assertions.assertEquals(a.members(0, a.team(0)), b.members(0, b.team(0)));
+        Assertions.assertNotEquals(a.user(500).getTags(), c.user(500).getTags());
+    }
+
+    @Test
+    void testTagDistribution() {
+        TagVocabulary vocabulary = TagVocabulary.defaultVocabulary();
+        DatasetGenerator generator = new DatasetGenerator(42, 10000, REFERENCE_TIME, 1, 1, vocabulary);
+        Map<String, Integer> tagCount = new HashMap<>();
+        Gson gson = new Gson();
+        for (int i = 0; i < 10000; i++) {
+            User user = generator.user(i);
+            List<String> tags = gson.fromJson(user.getTags(), new TypeToken<List<String>>() {
+            }.getType());
+            Assertions.assertTrue(tags.size() >= 1 && tags.size() <= 8);
+            Assertions.assertEquals(tags.size(), new HashSet<>(tags).size());
+            // 互斥的分类最多一个标签
+            Assertions.assertFalse(tags.contains("男") && tags.contains("女"));
+            tags.forEach(tag -> tagCount.merge(tag, 1, Integer::sum));
+        }
+        // 齐夫分布：最热门的标签远多于最冷门的标签
+        int max = tagCount.values().stream().max(Integer::compare).orElse(0);
+        int min = tagCount.values().stream().min(Integer::compare).orElse(0);
+        Assertions.assertTrue(max > min * 10, "max: " + max + ", min: " + min);
+        // 标签表：父标签在前，子标签的parentId指向父标签
+        List<Tag> tags = generator.tags(100);
+        Assertions.assertEquals(vocabulary.getCategories().size() + vocabulary.leafCount(), tags.size());
+        Tag firstChild = tags.get(vocabulary.getCategories().size());
+        Assertions.assertEquals(0, firstChild.getIsParent());
+        Assertions.assertEquals(100L, firstChild.getParentId());
+    }
+
+    @Test
+    void testMembers() {
+        int users = 200;
+        DatasetGenerator generator = new DatasetGenerator(42, users, REFERENCE_TIME, 1000, 1);
+        Map<Long, Integer> joinedTeams = new HashMap<>();
+        for (int i = 0; i < 150; i++) {
+            Team team = generator.team(i);
+            Assertions.assertTrue(team.getMaxNum() >= 2 && team.getMaxNum() <= 20);
+            List<UserTeam> members = generator.members(i, team);
+            Assertions.assertEquals(team.getUserId(), members.get(0).getUserId());
+            Assertions.assertTrue(members.size() <= team.getMaxNum());
+            Set<Long> userIds = new HashSet<>();
+            for (UserTeam member : members) {
+                Assertions.assertTrue(userIds.add(member.getUserId()));
+                Assertions.assertTrue(member.getUserId() >= 1000 && member.getUserId() < 1000 + users);
+                joinedTeams.merge(member.getUserId(), 1, Integer::sum);
+            }
+        }
+        // 当队长也算在内，每个用户最多5个队伍；用户很少时活跃用户会加满
+        joinedTeams.values().forEach(count -> Assertions.assertTrue(count <= DatasetGenerator.MAX_TEAMS_PER_USER));
+        long fullUsers = joinedTeams.values().stream().filter(count -> count >= DatasetGenerator.MAX_TEAMS_PER_USER).count();
+        Assertions.assertTrue(fullUsers > 0);
+    }
+
+    @Test
+    void testTooManyTeams() {
+        // 20个用户最多只能有100个队伍名额，队伍太多时找不到有名额的队长
+        DatasetGenerator generator = new DatasetGenerator(42, 20, REFERENCE_TIME, 1, 1);
+        Assertions.assertThrows(IllegalStateException.class, () -> {
+            for (int i = 0; i < 101; i++) {
+                generator.members(i, generator.team(i));
+            }
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.event.DomainEventBus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 领域事件总线测试：事务提交之后才分发，其他服务器的消息要能解析出来
+ */
+public class DomainEventBusTest {
+
+    private final ApplicationEventPublisher applicationEventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+
+    private final StringRedisTemplate stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+
+    private DomainEventBus newBus() {
+        DomainEventBus domainEventBus = new DomainEventBus();
+        ReflectionTestUtils.setField(domainEventBus, "applicationEventPublisher", applicationEventPublisher);
+        ReflectionTestUtils.setField(domainEventBus, "stringRedisTemplate", stringRedisTemplate);
+        return domainEventBus;
+    }
+
+    @Test
+    void testPublishAfterCommit() {
+        DomainEventBus domainEventBus = newBus();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            domainEventBus.publish(DomainEvent.Type.TEAM_UPDATED, 1L);
+            // 事务还没提交，不分发
+            Mockito.verifyNoInteractions(applicationEventPublisher, stringRedisTemplate);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        ArgumentCaptor<DomainEvent> captor = ArgumentCaptor.forClass(DomainEvent.class);
+        Mockito.verify(applicationEventPublisher).publishEvent(captor.capture());
+        Assertions.assertEquals(DomainEvent.Type.TEAM_UPDATED, captor.getValue().getType());
+        Assertions.assertTrue(captor.getValue().isLocal());
+        Mockito.verify(stringRedisTemplate).convertAndSend(ArgumentMatchers.eq(DomainEventBus.CHANNEL),
+                ArgumentMatchers.endsWith(":TEAM_UPDATED:1"));
+    }
+
+    @Test
+    void testReceiveRemoteEvent() {
+        DomainEventBus domainEventBus = newBus();
+        domainEventBus.onMessage(message("other-node:USER_UPDATED:7"), null);
+        domainEventBus.onMessage(message("other-node:UNKNOWN:7"), null); // 格式不对的消息忽略
+        ArgumentCaptor<DomainEvent> captor = ArgumentCaptor.forClass(DomainEvent.class);
+        Mockito.verify(applicationEventPublisher).publishEvent(captor.capture());
+        Assertions.assertEquals(DomainEvent.Type.USER_UPDATED, captor.getValue().getType());
+        Assertions.assertEquals(7L, captor.getValue().getId());
+        Assertions.assertFalse(captor.getValue().isLocal());
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(DomainEventBus.CHANNEL.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
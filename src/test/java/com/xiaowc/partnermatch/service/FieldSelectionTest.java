@@ -0,0 +1,100 @@
+package com.xiaowc.partnermatch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.xiaowc.partnermatch.common.BaseResponse;
+import com.xiaowc.partnermatch.common.FieldSelection;
+import com.xiaowc.partnermatch.common.FieldSelectionAdvice;
+import com.xiaowc.partnermatch.common.ResultUtils;
+import com.xiaowc.partnermatch.constant.UserConstant;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.model.vo.TeamUserVO;
+import com.xiaowc.partnermatch.model.vo.UserVO;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 稀疏字段测试：要查的列只能是白名单中的，json中只输出请求的字段
+ */
+public class FieldSelectionTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setFilterProvider(new SimpleFilterProvider().setFailOnUnknownId(false));
+
+    @Test
+    void testColumns() {
+        Assertions.assertTrue(FieldSelection.parse(null).isAll());
+        Assertions.assertTrue(FieldSelection.parse(" , ").isAll());
+        Assertions.assertArrayEquals(UserConstant.SAFE_COLUMNS, FieldSelection.ALL.columns(UserConstant.SAFE_COLUMNS, "id"));
+        FieldSelection fieldSelection = FieldSelection.parse("username, userPassword,avatarUrl,id;drop table user");
+        // 不在白名单中的列(密码、拼接的sql)不查，必须要查的列放在前面
+        Assertions.assertEquals(Arrays.asList("id", "tags", "username", "avatarUrl"),
+                Arrays.asList(fieldSelection.columns(UserConstant.SAFE_COLUMNS, "id", "tags")));
+        Assertions.assertEquals("avatarUrl,id;drop table user,userPassword,username", fieldSelection.toString());
+        Assertions.assertFalse(fieldSelection.contains("tags"));
+    }
+
+    @Test
+    void testSerializeSelectedFields() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("xiaowc");
+        user.setTags("[\"java\"]");
+        String json = write("userList", "id,username", ResultUtils.success(Collections.singletonList(user)));
+        Assertions.assertTrue(json.contains("\"data\":[{\"id\":1,\"username\":\"xiaowc\"}]"), json);
+        // 没有带fields参数，输出全部字段
+        Assertions.assertTrue(write("userList", null, ResultUtils.success(Collections.singletonList(user))).contains("\"tags\""));
+    }
+
+    @Test
+    void testNestedTypeNotFiltered() throws Exception {
+        UserVO createUser = new UserVO();
+        createUser.setId(2L);
+        createUser.setUsername("leader");
+        TeamUserVO team = new TeamUserVO();
+        team.setId(1L);
+        team.setName("team");
+        team.setCreateUser(createUser);
+        String json = write("teamList", "id,createUser", ResultUtils.success(Collections.singletonList(team)));
+        Assertions.assertFalse(json.contains("\"name\""), json);
+        Assertions.assertTrue(json.contains("\"username\":\"leader\""), json);
+    }
+
+    private String write(String methodName, String fields, Object body) throws Exception {
+        MethodParameter returnType = new MethodParameter(getClass().getDeclaredMethod(methodName), -1);
+        FieldSelectionAdvice advice = new FieldSelectionAdvice();
+        Assertions.assertTrue(advice.supports(returnType, MappingJackson2HttpMessageConverter.class));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/list");
+        if (fields != null) {
+            request.addParameter(FieldSelectionAdvice.FIELDS_PARAM, fields);
+        }
+        Object value = advice.beforeBodyWrite(body, returnType, MediaType.APPLICATION_JSON,
+                MappingJackson2HttpMessageConverter.class, new ServletServerHttpRequest(request),
+                new ServletServerHttpResponse(new MockHttpServletResponse()));
+        MappingJacksonValue container = (MappingJacksonValue) value;
+        if (container.getFilters() == null) {
+            return objectMapper.writeValueAsString(container.getValue());
+        }
+        return objectMapper.writer(container.getFilters()).writeValueAsString(container.getValue());
+    }
+
+    private BaseResponse<List<User>> userList() {
+        return null;
+    }
+
+    private BaseResponse<List<TeamUserVO>> teamList() {
+        return null;
+    }
+}
@@ -0,0 +1,40 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.once.importuser.ImportCheckpoint;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+/**
+ * 导入检查点测试
+ */
+public class ImportCheckpointTest {
+
+    @Test
+    void testWatermarkAndResume(@TempDir Path dir) {
+        Path file = dir.resolve("users.xlsx.checkpoint");
+        ImportCheckpoint checkpoint = new ImportCheckpoint(file);
+        Assertions.assertEquals(-1, checkpoint.getStartRowIndex());
+        // 后面的批次先写完，检查点不能往后移动
+        checkpoint.complete(1, 100, 200);
+        Assertions.assertEquals(-1, checkpoint.getCommittedRowIndex());
+        checkpoint.complete(0, -1, 100);
+        Assertions.assertEquals(200, checkpoint.getCommittedRowIndex());
+        checkpoint.complete(3, 300, 400);
+        Assertions.assertEquals(200, checkpoint.getCommittedRowIndex());
+        // 重新启动，从检查点继续，水位线之后已经写完的批次也要跳过
+        ImportCheckpoint resumed = new ImportCheckpoint(file);
+        Assertions.assertEquals(200, resumed.getStartRowIndex());
+        Assertions.assertTrue(resumed.isImported(200));
+        Assertions.assertFalse(resumed.isImported(201));
+        Assertions.assertFalse(resumed.isImported(300));
+        Assertions.assertTrue(resumed.isImported(301));
+        Assertions.assertTrue(resumed.isImported(400));
+        Assertions.assertFalse(resumed.isImported(401));
+        // 这次又在写到跳过的范围之前中断了，范围还要保留
+        resumed.complete(0, 200, 300);
+        Assertions.assertTrue(new ImportCheckpoint(file).isImported(350));
+    }
+}
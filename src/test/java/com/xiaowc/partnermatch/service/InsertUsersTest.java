@@ -2,6 +2,8 @@ package com.xiaowc.partnermatch.service;
 
 import com.xiaowc.partnermatch.mapper.UserMapper;
 import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.once.importuser.InsertUsers;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.util.StopWatch;
@@ -21,6 +23,9 @@ public class InsertUsersTest {
     @Resource
     private UserService userService;
 
+    @Resource
+    private InsertUsers insertUsers;
+
     // 创建一个线程池
     // CPU 密集型：分配的核心线程数 = CPU - 1
     // IO 密集型：分配的核心线程数可以大于CPU核数
@@ -121,4 +126,21 @@ public class InsertUsersTest {
         stopWatch.stop();
         System.out.println(stopWatch.getTotalTimeMillis());
     }
+
+    /**
+     * 批量插入用户(多行insert语句)，和上面的saveBatch()对比，同样插入10万条数据
+     */
+    @Test
+    public void doBulkLoadUsers() {
+        insertUsers.doBulkLoadUsers(100000);
+    }
+
+    /**
+     * 批量插入1000万条用户，数据边生成边写入，耗时较长，需要的时候手动执行
+     */
+    @Test
+    @Disabled
+    public void doBulkLoadTenMillionUsers() {
+        insertUsers.doBulkLoadUsers(10000000);
+    }
 }
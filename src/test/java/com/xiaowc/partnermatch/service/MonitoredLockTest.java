@@ -0,0 +1,32 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.monitor.MonitoredLock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.redisson.api.RLock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带监控的分布式锁测试，用mock的redisson锁模拟第一次没抢到锁
+ */
+public class MonitoredLockTest {
+
+    @Test
+    void testContendedLock() throws InterruptedException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RLock rLock = Mockito.mock(RLock.class);
+        Mockito.when(rLock.tryLock(0, -1, TimeUnit.SECONDS)).thenReturn(false);
+        Mockito.when(rLock.tryLock(10, -1, TimeUnit.SECONDS)).thenReturn(true);
+        MonitoredLock lock = new MonitoredLock(rLock, "xiaowc:join_team", meterRegistry);
+        Assertions.assertTrue(lock.tryLock(10, -1, TimeUnit.SECONDS));
+        Assertions.assertTrue(lock.isContended());
+        lock.unlock();
+        Mockito.verify(rLock).unlock();
+        Assertions.assertEquals(1, meterRegistry.get("xiaowc.lock.contention").counter().count());
+        Assertions.assertEquals(1, meterRegistry.get("xiaowc.lock.wait").tag("acquired", "true").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("xiaowc.lock.hold").timer().count());
+    }
+}
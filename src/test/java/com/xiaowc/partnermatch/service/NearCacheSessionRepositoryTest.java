@@ -0,0 +1,126 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.constant.UserConstant;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.session.NearCacheSessionRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.session.MapSession;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.SessionRepository;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * session近端缓存测试，用内存中的session仓库代替redis，记录访问了几次"redis"
+ */
+public class NearCacheSessionRepositoryTest {
+
+    /**
+     * 记录findById和save调用次数的session仓库
+     */
+    private static class CountingSessionRepository implements SessionRepository<MapSession> {
+
+        private final MapSessionRepository delegate = new MapSessionRepository(new ConcurrentHashMap<>());
+
+        private final AtomicInteger findCount = new AtomicInteger();
+
+        private final AtomicInteger saveCount = new AtomicInteger();
+
+        @Override
+        public MapSession createSession() {
+            return delegate.createSession();
+        }
+
+        @Override
+        public void save(MapSession session) {
+            saveCount.incrementAndGet();
+            delegate.save(session);
+        }
+
+        @Override
+        public MapSession findById(String id) {
+            findCount.incrementAndGet();
+            return delegate.findById(id);
+        }
+
+        @Override
+        public void deleteById(String id) {
+            delegate.deleteById(id);
+        }
+    }
+
+    @Test
+    void testReadFromNearCache() {
+        CountingSessionRepository redis = new CountingSessionRepository();
+        StringRedisTemplate stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        NearCacheSessionRepository<MapSession> repository =
+                new NearCacheSessionRepository<>(redis, stringRedisTemplate, 10, 100, 60);
+        // 登录：新建session并写入登录态
+        NearCacheSessionRepository<MapSession>.CachedSession session = repository.createSession();
+        User user = new User();
+        user.setId(1L);
+        session.setAttribute(UserConstant.USER_LOGIN_STATE, user);
+        repository.save(session);
+        Assertions.assertEquals(1, redis.saveCount.get());
+        // 后面的请求都从本地缓存中读，最后访问时间也不会每次都写回
+        for (int i = 0; i < 10; i++) {
+            NearCacheSessionRepository<MapSession>.CachedSession found = repository.findById(session.getId());
+            User loginUser = found.getAttribute(UserConstant.USER_LOGIN_STATE);
+            Assertions.assertEquals(1L, loginUser.getId());
+            found.setLastAccessedTime(Instant.now());
+            repository.save(found);
+        }
+        Assertions.assertEquals(0, redis.findCount.get());
+        Assertions.assertEquals(1, redis.saveCount.get());
+    }
+
+    @Test
+    void testAttributeChangeWriteBackAndEvict() {
+        CountingSessionRepository redis = new CountingSessionRepository();
+        StringRedisTemplate stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        NearCacheSessionRepository<MapSession> repository =
+                new NearCacheSessionRepository<>(redis, stringRedisTemplate, 10, 100, 60);
+        NearCacheSessionRepository<MapSession>.CachedSession session = repository.createSession();
+        session.setAttribute(UserConstant.USER_LOGIN_STATE, new User());
+        repository.save(session);
+        // 退出登录：属性变化要写回redis，并通知其他服务器
+        NearCacheSessionRepository<MapSession>.CachedSession found = repository.findById(session.getId());
+        found.removeAttribute(UserConstant.USER_LOGIN_STATE);
+        repository.save(found);
+        Assertions.assertEquals(2, redis.saveCount.get());
+        Assertions.assertNull(redis.delegate.findById(session.getId()).getAttribute(UserConstant.USER_LOGIN_STATE));
+        Mockito.verify(stringRedisTemplate).convertAndSend(Mockito.eq(NearCacheSessionRepository.INVALIDATION_CHANNEL), Mockito.anyString());
+        // 本地缓存被删除后，会重新去redis中查
+        repository.evict(session.getId());
+        Assertions.assertNotNull(repository.findById(session.getId()));
+        Assertions.assertEquals(2, redis.findCount.get());
+    }
+
+    @Test
+    void testStaleSaveDoesNotRestoreLoginState() {
+        CountingSessionRepository redis = new CountingSessionRepository();
+        StringRedisTemplate stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        // 刷新间隔为0，每次保存都会写回最后访问时间
+        NearCacheSessionRepository<MapSession> repository =
+                new NearCacheSessionRepository<>(redis, stringRedisTemplate, 10, 100, 0);
+        NearCacheSessionRepository<MapSession>.CachedSession session = repository.createSession();
+        session.setAttribute(UserConstant.USER_LOGIN_STATE, new User());
+        repository.save(session);
+        // 只读的请求先读到登录时的快照
+        NearCacheSessionRepository<MapSession>.CachedSession stale = repository.findById(session.getId());
+        // 同时另一个请求退出登录
+        NearCacheSessionRepository<MapSession>.CachedSession logout = repository.findById(session.getId());
+        logout.removeAttribute(UserConstant.USER_LOGIN_STATE);
+        repository.save(logout);
+        // 只读的请求结束，保存时不能把旧的快照放回本地缓存
+        stale.setLastAccessedTime(Instant.now());
+        repository.save(stale);
+        Assertions.assertNull(repository.findById(session.getId()).getAttribute(UserConstant.USER_LOGIN_STATE));
+        Assertions.assertNull(redis.delegate.findById(session.getId()).getAttribute(UserConstant.USER_LOGIN_STATE));
+    }
+}
@@ -0,0 +1,155 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.datasource.ReadWriteContext;
+import com.xiaowc.partnermatch.datasource.ReadWriteRoutingDataSource;
+import com.xiaowc.partnermatch.datasource.ReadYourWritesFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 读写分离测试：select走从库，写和事务走主库，写过数据之后走主库，从库延迟太大时走主库，显式指定时走主库
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    private final Connection primaryConnection = Mockito.mock(Connection.class);
+
+    private final Connection replicaConnection = Mockito.mock(Connection.class);
+
+    private final ReadWriteRoutingDataSource routingDataSource = newRoutingDataSource();
+
+    @AfterEach
+    void clear() {
+        ReadWriteContext.endRequest();
+    }
+
+    @Test
+    void testRouteByReadHintAndLag() throws Exception {
+        // 没有标记为查询的走主库
+        Assertions.assertSame(primaryConnection, routingDataSource.getConnection());
+        ReadWriteContext.beginRead();
+        // 还没检查过延迟，从库不可用
+        Assertions.assertSame(primaryConnection, routingDataSource.getConnection());
+        routingDataSource.updateLag("replica-0", 0);
+        Assertions.assertSame(replicaConnection, routingDataSource.getConnection());
+        // 延迟超过阈值，改走主库
+        routingDataSource.updateLag("replica-0", 5000);
+        Assertions.assertSame(primaryConnection, routingDataSource.getConnection());
+        routingDataSource.updateLag("replica-0", 500);
+        Assertions.assertSame(replicaConnection, routingDataSource.getConnection());
+        // 写过数据之后走主库
+        ReadWriteContext.markWrite(System.currentTimeMillis(), 5000);
+        Assertions.assertSame(primaryConnection, routingDataSource.getConnection());
+        ReadWriteContext.endRead();
+    }
+
+    @Test
+    void testRouteByTransaction() throws Exception {
+        routingDataSource.updateLag("replica-0", 0);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            Assertions.assertSame(primaryConnection, routingDataSource.getConnection());
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            Assertions.assertSame(replicaConnection, routingDataSource.getConnection());
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    void testForcePrimary() throws Exception {
+        routingDataSource.updateLag("replica-0", 0);
+        ReadWriteContext.beginRead();
+        try {
+            Assertions.assertSame(replicaConnection, routingDataSource.getConnection());
+            // 刷新缓存、处理领域事件时显式走主库，嵌套调用结束之后才恢复
+            Connection connection = ReadWriteContext.callOnPrimary(() -> {
+                ReadWriteContext.runOnPrimary(() -> {
+                });
+                try {
+                    return routingDataSource.getConnection();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Assertions.assertSame(primaryConnection, connection);
+            Assertions.assertFalse(ReadWriteContext.isPrimaryForced());
+            Assertions.assertSame(replicaConnection, routingDataSource.getConnection());
+        } finally {
+            ReadWriteContext.endRead();
+        }
+    }
+
+    @Test
+    void testStickyCookie() throws Exception {
+        routingDataSource.updateLag("replica-0", 0);
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(5000);
+        // 写数据的请求，响应中设置cookie
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/user/update"), writeResponse,
+                new MockFilterChain(new HttpServlet() {
+                    @Override
+                    protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+                        ReadWriteContext.markWrite(System.currentTimeMillis(), 5000);
+                    }
+                }));
+        Cookie cookie = writeResponse.getCookie(ReadWriteContext.STICKY_COOKIE);
+        Assertions.assertNotNull(cookie);
+        // 带着cookie的查询走主库，不带的走从库
+        AtomicReference<Connection> connection = new AtomicReference<>();
+        HttpServlet readServlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+                ReadWriteContext.beginRead();
+                try {
+                    connection.set(routingDataSource.getConnection());
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    ReadWriteContext.endRead();
+                }
+            }
+        };
+        MockHttpServletRequest stickyRequest = new MockHttpServletRequest("GET", "/user/current");
+        stickyRequest.setCookies(cookie);
+        filter.doFilter(stickyRequest, new MockHttpServletResponse(), new MockFilterChain(readServlet));
+        Assertions.assertSame(primaryConnection, connection.get());
+        filter.doFilter(new MockHttpServletRequest("GET", "/user/current"), new MockHttpServletResponse(),
+                new MockFilterChain(readServlet));
+        Assertions.assertSame(replicaConnection, connection.get());
+    }
+
+    private ReadWriteRoutingDataSource newRoutingDataSource() {
+        try {
+            DataSource primary = Mockito.mock(DataSource.class);
+            Mockito.when(primary.getConnection()).thenReturn(primaryConnection);
+            DataSource replica = Mockito.mock(DataSource.class);
+            Mockito.when(replica.getConnection()).thenReturn(replicaConnection);
+            Map<String, DataSource> replicas = new LinkedHashMap<>();
+            replicas.put("replica-0", replica);
+            ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(primary, replicas, 1000,
+                    "SHOW SLAVE STATUS", "Seconds_Behind_Master");
+            dataSource.afterPropertiesSet();
+            return dataSource;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.xiaowc.partnermatch.service;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.xiaowc.partnermatch.cache.RecommendUserCache;
+import com.xiaowc.partnermatch.common.FieldSelection;
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.model.domain.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推荐用户缓存测试：用查询之前的版本号写缓存，版本号定期重新读
+ */
+public class RecommendUserCacheTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = Mockito.mock(RedisTemplate.class);
+
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, Object> valueOperations = Mockito.mock(ValueOperations.class);
+
+    private final StringRedisTemplate stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> stringValueOperations = Mockito.mock(ValueOperations.class);
+
+    private final RecommendUserCache recommendUserCache = new RecommendUserCache();
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        Mockito.when(stringRedisTemplate.opsForValue()).thenReturn(stringValueOperations);
+        ReflectionTestUtils.setField(recommendUserCache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(recommendUserCache, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(recommendUserCache, "ttlSeconds", 3600L);
+        ReflectionTestUtils.setField(recommendUserCache, "versionRefreshMillis", 60000L);
+    }
+
+    @Test
+    void testPutWithVersionBeforeQuery() {
+        Mockito.when(stringValueOperations.get(ArgumentMatchers.anyString())).thenReturn("1", "2");
+        String version = recommendUserCache.version();
+        Assertions.assertEquals("1", version);
+        // 查询期间其他用户修改了信息，版本号变了，查出来的结果不能写入缓存
+        recommendUserCache.onDomainEvent(new DomainEvent(DomainEvent.Type.USER_UPDATED, 7L, false));
+        recommendUserCache.put(version, 1L, 1, 20, FieldSelection.ALL, new Page<User>());
+        Mockito.verifyNoInteractions(valueOperations);
+        // 用新的版本号写，key中带的是新的版本号
+        String latest = recommendUserCache.version();
+        recommendUserCache.put(latest, 1L, 1, 20, FieldSelection.ALL, new Page<User>());
+        Mockito.verify(valueOperations).set(ArgumentMatchers.eq("xiaowc:user:recommend:2:1:1:20"),
+                ArgumentMatchers.any(), ArgumentMatchers.eq(3600L), ArgumentMatchers.eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testVersionRefreshWithoutEvent() {
+        Mockito.when(stringValueOperations.get(ArgumentMatchers.anyString())).thenReturn("1", "2");
+        Assertions.assertEquals("1", recommendUserCache.version());
+        Assertions.assertEquals("1", recommendUserCache.version()); // 还没到重新读的时间
+        // 失效消息丢了，到时间之后也会重新读
+        ReflectionTestUtils.setField(recommendUserCache, "versionRefreshMillis", 0L);
+        Assertions.assertEquals("2", recommendUserCache.version());
+    }
+}
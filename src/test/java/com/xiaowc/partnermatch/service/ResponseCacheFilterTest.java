@@ -0,0 +1,189 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.cache.ResponseCache;
+import com.xiaowc.partnermatch.cache.ResponseCacheFilter;
+import com.xiaowc.partnermatch.datasource.ReadWriteContext;
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.model.domain.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 响应缓存过滤器测试，用一个简单的servlet代替controller，记录被调用了几次
+ */
+public class ResponseCacheFilterTest {
+
+    private final ResponseCache responseCache = new ResponseCache(64 * 1024, 60, 1024);
+
+    private final LoginStateService loginStateService = Mockito.mock(LoginStateService.class);
+
+    private final ResponseCacheFilter filter = new ResponseCacheFilter(responseCache, loginStateService);
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     * servlet最近一次被调用时是不是走主库
+     */
+    private boolean primaryForced;
+
+    private String responseBody = "{\"code\":0,\"data\":[],\"message\":\"ok\",\"description\":\"\"}";
+
+    @Test
+    void testHitAndNotModified() throws Exception {
+        MockHttpServletResponse first = get("/team/get", null);
+        Assertions.assertEquals(200, first.getStatus());
+        Assertions.assertEquals(responseBody, first.getContentAsString());
+        String etag = first.getHeader("ETag");
+        Assertions.assertNotNull(etag);
+        // 命中缓存，不再调用controller
+        MockHttpServletResponse second = get("/team/get", null);
+        Assertions.assertEquals(responseBody, second.getContentAsString());
+        Assertions.assertEquals(etag, second.getHeader("ETag"));
+        // ETag没变，返回304
+        MockHttpServletResponse notModified = get("/team/get", etag);
+        Assertions.assertEquals(304, notModified.getStatus());
+        Assertions.assertEquals(0, notModified.getContentAsByteArray().length);
+        Assertions.assertEquals(1, calls.get());
+        // 队伍有变化，缓存失效
+        responseCache.onDomainEvent(DomainEvent.of(DomainEvent.Type.TEAM_UPDATED, 1L));
+        responseBody = "{\"code\":0,\"data\":[1],\"message\":\"ok\",\"description\":\"\"}";
+        MockHttpServletResponse changed = get("/team/get", etag);
+        Assertions.assertEquals(200, changed.getStatus());
+        Assertions.assertNotEquals(etag, changed.getHeader("ETag"));
+        Assertions.assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testPerUserAndErrorResponse() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        Mockito.when(loginStateService.getLoginUser(ArgumentMatchers.any())).thenReturn(user);
+        get("/team/list", null);
+        get("/team/list", null);
+        Assertions.assertEquals(1, calls.get());
+        user.setId(2L); // 不同的用户不共用缓存
+        get("/team/list", null);
+        Assertions.assertEquals(2, calls.get());
+        // 失败的响应不缓存
+        responseBody = "{\"code\":40100,\"data\":null,\"message\":\"未登录\",\"description\":\"\"}";
+        get("/user/recommend", null);
+        get("/user/recommend", null);
+        Assertions.assertEquals(4, calls.get());
+    }
+
+    @Test
+    void testGzip() throws Exception {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            data.append("\"team").append(i).append("\",");
+        }
+        responseBody = "{\"code\":0,\"data\":[" + data + "\"end\"],\"message\":\"ok\",\"description\":\"\"}";
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/team/get");
+        request.setServletPath("/team/get");
+        request.addParameter("id", "1");
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new JsonServlet()));
+        Assertions.assertEquals("gzip", response.getHeader("Content-Encoding"));
+        byte[] compressed = response.getContentAsByteArray();
+        Assertions.assertTrue(compressed.length < responseBody.length());
+        try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            Assertions.assertEquals(responseBody, new String(readAll(inputStream), StandardCharsets.UTF_8));
+        }
+        // 压缩和不压缩的响应ETag不同，拿不压缩的ETag来校验压缩的响应不能返回304
+        String gzipEtag = response.getHeader("ETag");
+        Assertions.assertTrue(gzipEtag.endsWith("-gzip\""));
+        MockHttpServletResponse identity = get("/team/get", null);
+        String identityEtag = identity.getHeader("ETag");
+        Assertions.assertNotEquals(gzipEtag, identityEtag);
+        Assertions.assertEquals(200, get("/team/get", gzipEtag).getStatus());
+        Assertions.assertEquals(304, get("/team/get", identityEtag).getStatus());
+        MockHttpServletRequest revalidate = new MockHttpServletRequest("GET", "/team/get");
+        revalidate.setServletPath("/team/get");
+        revalidate.addParameter("id", "1");
+        revalidate.addHeader("Accept-Encoding", "gzip");
+        revalidate.addHeader("If-None-Match", identityEtag);
+        MockHttpServletResponse gzipResponse = new MockHttpServletResponse();
+        filter.doFilter(revalidate, gzipResponse, new MockFilterChain(new JsonServlet()));
+        Assertions.assertEquals(200, gzipResponse.getStatus());
+        Assertions.assertEquals(gzipEtag, gzipResponse.getHeader("ETag"));
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testMissReadsPrimary() throws Exception {
+        // 没有命中，要放进缓存的数据从主库查
+        get("/team/get", null);
+        Assertions.assertTrue(primaryForced);
+        Assertions.assertFalse(ReadWriteContext.isPrimaryForced()); // 处理完恢复原来的路由
+        // 不缓存的接口还是可以走从库
+        get("/team/list/my/join", null);
+        Assertions.assertFalse(primaryForced);
+        Assertions.assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testByteBudget() throws Exception {
+        ResponseCache smallCache = new ResponseCache(4096, 60, 1024);
+        byte[] body = new byte[1000]; // 小于1024不压缩，每个占1000字节
+        long generation = smallCache.generation(ResponseCache.Route.TEAM_LIST);
+        for (long userId = 1; userId <= 10; userId++) {
+            smallCache.put(ResponseCache.Route.TEAM_LIST, "/team/list?&user=" + userId, generation, body, "application/json");
+        }
+        // 按字节淘汰，淘汰是异步的，等一下
+        long deadline = System.currentTimeMillis() + 5000;
+        while (smallCache.weightedSize() > 4096 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(smallCache.weightedSize() <= 4096);
+        Assertions.assertTrue(smallCache.weightedSize() >= 1000);
+    }
+
+    private MockHttpServletResponse get(String path, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        request.addParameter("id", "1");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new JsonServlet()));
+        return response;
+    }
+
+    private static byte[] readAll(GZIPInputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) > 0) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private class JsonServlet extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            calls.incrementAndGet();
+            primaryForced = ReadWriteContext.isPrimaryForced();
+            resp.setContentType("application/json");
+            resp.getOutputStream().write(responseBody.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.monitor.SqlTimingInterceptor;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+/**
+ * sql耗时拦截器测试
+ */
+public class SqlTimingInterceptorTest {
+
+    @Test
+    void testRecordTimer() throws Throwable {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // 阈值为0，每条sql都会打印慢sql日志
+        SqlTimingInterceptor interceptor = new SqlTimingInterceptor(meterRegistry, 0);
+        Configuration configuration = new Configuration();
+        MappedStatement mappedStatement = new MappedStatement.Builder(configuration, "UserMapper.updateById",
+                new StaticSqlSource(configuration, "update user set username = ?"), SqlCommandType.UPDATE).build();
+        Executor executor = Mockito.mock(Executor.class);
+        Mockito.when(executor.update(Mockito.any(), Mockito.any())).thenReturn(1);
+        Invocation invocation = new Invocation(executor,
+                Executor.class.getMethod("update", MappedStatement.class, Object.class), new Object[]{mappedStatement, "xiaowc"});
+        Assertions.assertEquals(1, interceptor.intercept(invocation));
+        Timer timer = meterRegistry.get("xiaowc.sql").tag("statement", "UserMapper.updateById").tag("type", "UPDATE").timer();
+        Assertions.assertEquals(1, timer.count());
+    }
+}
@@ -0,0 +1,122 @@
+package com.xiaowc.partnermatch.service;
+
+import com.google.gson.Gson;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.tag.TagCodec;
+import com.xiaowc.partnermatch.utils.AlgorithmUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 标签编解码测试
+ */
+public class TagCodecTest {
+
+    private static final Gson GSON = new Gson();
+
+    @Test
+    void testParse() {
+        TagCodec tagCodec = new TagCodec(100, 100);
+        int[] ids = tagCodec.parse("[\"java\",\"男\",\"大二\"]");
+        Assertions.assertArrayEquals(new int[]{tagCodec.idOf("java"), tagCodec.idOf("男"), tagCodec.idOf("大二")}, ids);
+        // 同样的标签id相同
+        Assertions.assertEquals(ids[0], tagCodec.parse("[\"python\",\"java\"]")[1]);
+        // 为空或者格式不对返回空数组
+        Assertions.assertEquals(0, tagCodec.parse(null).length);
+        Assertions.assertEquals(0, tagCodec.parse("[]").length);
+        Assertions.assertEquals(0, tagCodec.parse("{\"a\":1}").length);
+        Assertions.assertEquals(0, tagCodec.parse("[\"java\"").length);
+        Assertions.assertTrue(TagCodec.containsAll(ids, tagCodec.idsOf(Arrays.asList("男", "java"))));
+        Assertions.assertFalse(TagCodec.containsAll(ids, tagCodec.idsOf(Arrays.asList("男", "python"))));
+    }
+
+    @Test
+    void testCacheByUpdateTime() {
+        TagCodec tagCodec = new TagCodec(100, 100);
+        User user = new User();
+        user.setId(1L);
+        user.setTags("[\"java\"]");
+        user.setUpdateTime(new Date(1000L));
+        int[] first = tagCodec.get(user);
+        // 没有修改过的用户直接返回缓存的结果
+        Assertions.assertSame(first, tagCodec.get(user));
+        // 修改了标签之后重新解析
+        user.setTags("[\"java\",\"python\"]");
+        user.setUpdateTime(new Date(2000L));
+        Assertions.assertEquals(2, tagCodec.get(user).length);
+        // 同一秒内又修改了一次，更新时间没变，也要重新解析
+        user.setTags("[\"go\"]");
+        int[] reparsed = tagCodec.get(user);
+        Assertions.assertArrayEquals(new int[]{tagCodec.idOf("go")}, reparsed);
+    }
+
+    @Test
+    void testMinDistanceSameAsTagList() {
+        TagCodec tagCodec = new TagCodec(100, 100);
+        List<String> tags = Arrays.asList("java", "python", "男", "女", "大一", "大二", "go", "c++");
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            List<String> tagList1 = randomTags(random, tags);
+            List<String> tagList2 = randomTags(random, tags);
+            Assertions.assertEquals(AlgorithmUtils.minDistance(tagList1, tagList2),
+                    AlgorithmUtils.minDistance(tagCodec.parse(GSON.toJson(tagList1)), tagCodec.parse(GSON.toJson(tagList2))));
+        }
+    }
+
+    @Test
+    void testDictionaryLimit() {
+        TagCodec tagCodec = new TagCodec(100, 2);
+        // 搜索条件中的标签不会加入字典
+        TagCodec.TagQuery unknownQuery = tagCodec.query(Arrays.asList("a", "b", "c"));
+        Assertions.assertEquals(TagCodec.UNKNOWN, tagCodec.idOf("a"));
+        Assertions.assertArrayEquals(new int[]{0, 1}, tagCodec.parse("[\"java\",\"python\"]"));
+        // 字典满了之后，新标签的id是负数，每次都不一样，不会和其他标签冲突
+        int[] first = tagCodec.parse("[\"go\"]");
+        int[] second = tagCodec.parse("[\"go\"]");
+        Assertions.assertTrue(first[0] < 0);
+        Assertions.assertNotEquals(first[0], second[0]);
+        Assertions.assertEquals(TagCodec.UNKNOWN, tagCodec.idOf("go"));
+        Assertions.assertFalse(unknownQuery.matches(user(1L, "[\"java\"]")));
+    }
+
+    @Test
+    void testQueryWhenDictionaryFull() {
+        TagCodec tagCodec = new TagCodec(100, 2);
+        User javaUser = user(1L, "[\"java\",\"python\"]");
+        User goUser = user(2L, "[\"go\",\"java\"]");
+        User rustUser = user(3L, "[\"rust\"]");
+        // 重启之后字典是空的，要求的标签还不在字典中，解析用户之后才能对上
+        TagCodec.TagQuery javaQuery = tagCodec.query(Collections.singletonList("java"));
+        Assertions.assertTrue(javaQuery.matches(javaUser));
+        Assertions.assertTrue(javaQuery.matches(goUser));
+        Assertions.assertFalse(javaQuery.matches(rustUser));
+        // go和rust都是溢出标签，按字符串比较，不会因为id冲突查出没有这个标签的用户
+        TagCodec.TagQuery goQuery = tagCodec.query(Arrays.asList("go", "java"));
+        Assertions.assertTrue(goQuery.matches(goUser));
+        Assertions.assertFalse(goQuery.matches(rustUser));
+        Assertions.assertFalse(goQuery.matches(javaUser));
+        Assertions.assertFalse(tagCodec.query(Collections.singletonList("c++")).matches(rustUser));
+    }
+
+    private static User user(long id, String tags) {
+        User user = new User();
+        user.setId(id);
+        user.setTags(tags);
+        user.setUpdateTime(new Date(1000L));
+        return user;
+    }
+
+    private List<String> randomTags(Random random, List<String> tags) {
+        String[] result = new String[random.nextInt(6)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = tags.get(random.nextInt(tags.size()));
+        }
+        return Arrays.asList(result);
+    }
+}
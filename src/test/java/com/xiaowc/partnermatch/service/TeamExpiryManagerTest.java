@@ -0,0 +1,88 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.event.DomainEvent;
+import com.xiaowc.partnermatch.job.TeamExpiryJob;
+import com.xiaowc.partnermatch.model.domain.Team;
+import com.xiaowc.partnermatch.team.TeamExpiryManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队伍过期时间轮测试，刻度设置得很小，不用真的等很久
+ */
+public class TeamExpiryManagerTest {
+
+    private final TeamExpiryManager teamExpiryManager = new TeamExpiryManager(10, 64, 60000);
+
+    @AfterEach
+    void stop() {
+        teamExpiryManager.stop();
+    }
+
+    @Test
+    void testExpireAndCancel() throws InterruptedException {
+        List<Long> expired = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        teamExpiryManager.addListener(teamId -> {
+            expired.add(teamId);
+            latch.countDown();
+        });
+        long now = System.currentTimeMillis();
+        teamExpiryManager.schedule(1L, new Date(now + 50));
+        teamExpiryManager.schedule(2L, new Date(now + 50));
+        teamExpiryManager.schedule(3L, new Date(now - 1000)); // 已经过期的马上通知
+        teamExpiryManager.schedule(4L, new Date(now + 3600000)); // 超出范围，不放入时间轮
+        teamExpiryManager.schedule(5L, null); // 永不过期
+        teamExpiryManager.cancel(2L); // 删除了的队伍不通知
+        Assertions.assertEquals(2, teamExpiryManager.pending());
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        Assertions.assertEquals(2, expired.size());
+        Assertions.assertTrue(expired.contains(1L));
+        Assertions.assertTrue(expired.contains(3L));
+        Assertions.assertEquals(0, teamExpiryManager.pending());
+    }
+
+    @Test
+    void testReschedule() throws InterruptedException {
+        List<Long> expired = new CopyOnWriteArrayList<>();
+        teamExpiryManager.addListener(expired::add);
+        long now = System.currentTimeMillis();
+        teamExpiryManager.schedule(1L, new Date(now + 50));
+        // 延长了过期时间，原来的时间到了不通知
+        teamExpiryManager.schedule(1L, new Date(now + 30000));
+        Thread.sleep(200);
+        Assertions.assertTrue(expired.isEmpty());
+        Assertions.assertEquals(1, teamExpiryManager.pending());
+    }
+
+    @Test
+    void testScheduleFromDomainEvents() {
+        TeamService teamService = Mockito.mock(TeamService.class);
+        TeamExpiryJob teamExpiryJob = new TeamExpiryJob();
+        ReflectionTestUtils.setField(teamExpiryJob, "teamService", teamService);
+        ReflectionTestUtils.setField(teamExpiryJob, "teamExpiryManager", teamExpiryManager);
+        Team team = new Team();
+        team.setId(1L);
+        team.setExpireTime(new Date(System.currentTimeMillis() + 30000));
+        Mockito.when(teamService.getOne(ArgumentMatchers.any())).thenReturn(team);
+        // 其他服务器创建的队伍，收到事件后也要放入本服务器的时间轮
+        teamExpiryJob.onDomainEvent(new DomainEvent(DomainEvent.Type.TEAM_CREATED, 1L, false));
+        Assertions.assertEquals(1, teamExpiryManager.pending());
+        // 加入退出不影响过期时间
+        teamExpiryJob.onDomainEvent(new DomainEvent(DomainEvent.Type.TEAM_MEMBERS_CHANGED, 1L, false));
+        Mockito.verify(teamService, Mockito.times(1)).getOne(ArgumentMatchers.any());
+        teamExpiryJob.onDomainEvent(new DomainEvent(DomainEvent.Type.TEAM_DELETED, 1L, false));
+        Assertions.assertEquals(0, teamExpiryManager.pending());
+    }
+}
@@ -0,0 +1,47 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.utils.TokenUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 登录令牌工具类测试
+ */
+public class TokenUtilsTest {
+
+    private static final String SECRET = "test-secret";
+
+    @Test
+    void testSignAndVerify() {
+        TokenUtils.TokenPayload payload = new TokenUtils.TokenPayload(1L, 1, 2000L, "abc");
+        String token = TokenUtils.sign(payload, SECRET);
+        Assertions.assertEquals(payload, TokenUtils.verify(token, SECRET, 1000L));
+    }
+
+    @Test
+    void testInvalidToken() {
+        String token = TokenUtils.sign(new TokenUtils.TokenPayload(1L, 0, 2000L, "abc"), SECRET);
+        // 已过期
+        Assertions.assertNull(TokenUtils.verify(token, SECRET, 2000L));
+        // 密钥不对
+        Assertions.assertNull(TokenUtils.verify(token, "other-secret", 1000L));
+        // 篡改了角色
+        String forged = TokenUtils.sign(new TokenUtils.TokenPayload(1L, 1, 2000L, "abc"), "other-secret");
+        Assertions.assertNull(TokenUtils.verify(forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.')), SECRET, 1000L));
+        // 格式错误
+        Assertions.assertNull(TokenUtils.verify("abc", SECRET, 1000L));
+        Assertions.assertNull(TokenUtils.verify("a.b", SECRET, 1000L));
+        Assertions.assertNull(TokenUtils.verify("###.###", SECRET, 1000L));
+    }
+
+    @Test
+    void testCheckSecret() {
+        // 为空、是占位符或者太短时启动失败
+        Assertions.assertThrows(IllegalStateException.class, () -> TokenUtils.checkSecret(null));
+        Assertions.assertThrows(IllegalStateException.class, () -> TokenUtils.checkSecret("  "));
+        Assertions.assertThrows(IllegalStateException.class, () -> TokenUtils.checkSecret("xxxxxx"));
+        Assertions.assertThrows(IllegalStateException.class, () -> TokenUtils.checkSecret("xiaowc-partner-match-dev-secret"));
+        Assertions.assertThrows(IllegalStateException.class, () -> TokenUtils.checkSecret("0123456789abcdef0123456789abcde"));
+        TokenUtils.checkSecret("0123456789abcdef0123456789abcdef");
+    }
+}
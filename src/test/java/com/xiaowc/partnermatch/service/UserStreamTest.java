@@ -0,0 +1,126 @@
+package com.xiaowc.partnermatch.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.xiaowc.partnermatch.common.FieldSelection;
+import com.xiaowc.partnermatch.mapper.UserMapper;
+import com.xiaowc.partnermatch.model.domain.User;
+import com.xiaowc.partnermatch.service.impl.UserServiceImpl;
+import com.xiaowc.partnermatch.tag.TagCodec;
+import com.xiaowc.partnermatch.utils.AlgorithmUtils;
+import com.xiaowc.partnermatch.utils.NdjsonWriter;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 流式查询测试：边读边处理，结果要和一次全部查出来的一样
+ */
+public class UserStreamTest {
+
+    private static final String[] TAGS = {"java", "python", "c++", "go", "男", "女", "大一", "大二"};
+
+    private final UserMapper userMapper = Mockito.mock(UserMapper.class);
+
+    private final TagCodec tagCodec = new TagCodec(1000, 100);
+
+    private final List<User> users = new ArrayList<>();
+
+    private UserServiceImpl newService() {
+        Random random = new Random(42);
+        for (long id = 1; id <= 300; id++) {
+            User user = new User();
+            user.setId(id);
+            user.setUsername("user" + id);
+            user.setUpdateTime(new Date(1000L));
+            List<String> tags = new ArrayList<>();
+            for (String tag : TAGS) {
+                if (random.nextInt(3) == 0) {
+                    tags.add("\"" + tag + "\"");
+                }
+            }
+            user.setTags("[" + String.join(",", tags) + "]");
+            users.add(user);
+        }
+        // 用列表模拟数据库的流式查询，一行一行交给ResultHandler
+        Mockito.doAnswer(invocation -> {
+            ResultHandler<User> resultHandler = invocation.getArgument(1);
+            DefaultResultContext<User> resultContext = new DefaultResultContext<>();
+            for (User user : users) {
+                resultContext.nextResultObject(user);
+                resultHandler.handleResult(resultContext);
+            }
+            return null;
+        }).when(userMapper).scanUsers(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Mockito.when(userMapper.selectList(ArgumentMatchers.any())).thenReturn(users);
+        UserServiceImpl userService = new UserServiceImpl();
+        ReflectionTestUtils.setField(userService, "userMapper", userMapper);
+        ReflectionTestUtils.setField(userService, "baseMapper", userMapper);
+        ReflectionTestUtils.setField(userService, "tagCodec", tagCodec);
+        return userService;
+    }
+
+    @Test
+    void testMatchUsersKeepsTopN() {
+        UserServiceImpl userService = newService();
+        User loginUser = users.get(0);
+        int[] loginTagIds = tagCodec.get(loginUser);
+        // 全部排序之后取前10个，距离一样时id小的在前
+        List<Long> expected = users.stream()
+                .filter(user -> !user.getId().equals(loginUser.getId()) && !"[]".equals(user.getTags()))
+                .sorted(Comparator.<User>comparingLong(user -> AlgorithmUtils.minDistance(loginTagIds, tagCodec.get(user)))
+                        .thenComparingLong(User::getId))
+                .limit(10)
+                .map(User::getId)
+                .collect(Collectors.toList());
+        List<Long> actual = userService.matchUsers(10, loginUser, FieldSelection.ALL).stream()
+                .map(User::getId)
+                .collect(Collectors.toList());
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    void testStreamUsersByTags() {
+        UserServiceImpl userService = newService();
+        List<String> tagNameList = Arrays.asList("java", "男");
+        List<Long> expected = userService.searchUsersByTags(tagNameList).stream()
+                .map(User::getId)
+                .collect(Collectors.toList());
+        List<Long> actual = new ArrayList<>();
+        long count = userService.streamUsersByTags(tagNameList, FieldSelection.ALL, user -> actual.add(user.getId()));
+        Assertions.assertFalse(actual.isEmpty());
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertEquals(expected.size(), count);
+    }
+
+    @Test
+    void testNdjsonWriter() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .setFilterProvider(new SimpleFilterProvider().setFailOnUnknownId(false));
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("xiaowc");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        FieldSelection fieldSelection = FieldSelection.parse("id,username");
+        try (NdjsonWriter writer = new NdjsonWriter(outputStream,
+                objectMapper.writer(fieldSelection.filters(FieldSelection.USER_FILTER)), 100)) {
+            writer.write(user);
+            // 第一行马上flush
+            Assertions.assertEquals("{\"id\":1,\"username\":\"xiaowc\"}\n", outputStream.toString(StandardCharsets.UTF_8.name()));
+            user.setId(2L);
+            writer.write(user);
+            Assertions.assertEquals(2, writer.getCount());
+        }
+        Assertions.assertEquals("{\"id\":1,\"username\":\"xiaowc\"}\n{\"id\":2,\"username\":\"xiaowc\"}\n",
+                outputStream.toString(StandardCharsets.UTF_8.name()));
+    }
+}
@@ -0,0 +1,65 @@
+package com.xiaowc.partnermatch.service;
+
+import com.xiaowc.partnermatch.datasource.Workload;
+import com.xiaowc.partnermatch.datasource.WorkloadContext;
+import com.xiaowc.partnermatch.datasource.WorkloadRoutingDataSource;
+import com.xiaowc.partnermatch.datasource.WorkloadTaskDecorator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 工作负载隔离测试：不同的工作负载使用各自的连接池，线程池中的任务以线程池的工作负载执行
+ */
+public class WorkloadRoutingDataSourceTest {
+
+    @Test
+    void testRouteByWorkload() throws Exception {
+        Map<Workload, Connection> connections = new EnumMap<>(Workload.class);
+        Map<Workload, DataSource> dataSources = new EnumMap<>(Workload.class);
+        for (Workload workload : new Workload[]{Workload.INTERACTIVE, Workload.BATCH}) {
+            Connection connection = Mockito.mock(Connection.class);
+            DataSource dataSource = Mockito.mock(DataSource.class);
+            Mockito.when(dataSource.getConnection()).thenReturn(connection);
+            connections.put(workload, connection);
+            dataSources.put(workload, dataSource);
+        }
+        WorkloadRoutingDataSource routingDataSource = new WorkloadRoutingDataSource(dataSources);
+        routingDataSource.afterPropertiesSet();
+        Assertions.assertSame(connections.get(Workload.INTERACTIVE), routingDataSource.getConnection());
+        WorkloadContext.run(Workload.BATCH, () -> {
+            Connection connection = getConnection(routingDataSource);
+            Assertions.assertSame(connections.get(Workload.BATCH), connection);
+            // 没有配置连接池的工作负载使用接口请求的连接池
+            connection = WorkloadContext.call(Workload.PRECOMPUTE, () -> getConnection(routingDataSource));
+            Assertions.assertSame(connections.get(Workload.INTERACTIVE), connection);
+            // 嵌套执行完恢复原来的工作负载
+            Assertions.assertEquals(Workload.BATCH, WorkloadContext.current());
+        });
+        Assertions.assertEquals(Workload.INTERACTIVE, WorkloadContext.current());
+    }
+
+    @Test
+    void testTaskDecorator() {
+        AtomicReference<Workload> workload = new AtomicReference<>();
+        Runnable task = new WorkloadTaskDecorator(Workload.PRECOMPUTE).decorate(() -> workload.set(WorkloadContext.current()));
+        // 由提交任务的线程自己执行(队列满了)时也是预计算
+        task.run();
+        Assertions.assertEquals(Workload.PRECOMPUTE, workload.get());
+        Assertions.assertEquals(Workload.INTERACTIVE, WorkloadContext.current());
+    }
+
+    private static Connection getConnection(DataSource dataSource) {
+        try {
+            return dataSource.getConnection();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+-- 离线压测使用的建表语句(h2数据库，mysql模式)，和sql/create_table.sql中的表结构保持一致
+create table if not exists `user`
+(
+    id           bigint auto_increment primary key,
+    username     varchar(256)                       null,
+    userAccount  varchar(256)                       null,
+    avatarUrl    varchar(1024)                      null,
+    gender       tinyint                            null,
+    userPassword varchar(512)                       not null,
+    email        varchar(512)                       null,
+    userStatus   int      default 0                 not null,
+    phone        varchar(128)                       null,
+    createTime   datetime default CURRENT_TIMESTAMP null,
+    updateTime   datetime default CURRENT_TIMESTAMP on update CURRENT_TIMESTAMP null,
+    isDelete     tinyint  default 0                 not null,
+    userRole     int      default 0                 null,
+    planetCode   varchar(512)                       null,
+    tags         varchar(1024)                      null,
+    profile      varchar(1024)                      null
+);
+
+create table if not exists tag
+(
+    id         bigint auto_increment primary key,
+    tagName    varchar(256)                       null,
+    userId     bigint                             null,
+    parentId   bigint                             null,
+    isParent   tinyint                            null,
+    createTime datetime default CURRENT_TIMESTAMP null,
+    updateTime datetime default CURRENT_TIMESTAMP on update CURRENT_TIMESTAMP null,
+    isDelete   tinyint  default 0                 not null
+);
+
+create table if not exists team
+(
+    id          bigint auto_increment primary key,
+    name        varchar(256)                       not null,
+    description varchar(1024)                      null,
+    maxNum      int      default 1                 not null,
+    expireTime  datetime                           null,
+    userId      bigint                             null,
+    status      int      default 0                 not null,
+    password    varchar(512)                       null,
+    avatarUrl   varchar(1024)                      null,
+    createTime  datetime default CURRENT_TIMESTAMP null,
+    updateTime  datetime default CURRENT_TIMESTAMP on update CURRENT_TIMESTAMP null,
+    isDelete    tinyint  default 0                 not null
+);
+
+create table if not exists user_team
+(
+    id         bigint auto_increment primary key,
+    userId     bigint                             null,
+    teamId     bigint                             null,
+    joinTime   datetime                           null,
+    createTime datetime default CURRENT_TIMESTAMP null,
+    updateTime datetime default CURRENT_TIMESTAMP on update CURRENT_TIMESTAMP null,
+    isDelete   tinyint  default 0                 not null
+);